@@ -0,0 +1,130 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.TimeUnit;
+
+import com.sun.javadoc.LanguageVersion;
+import com.sun.javadoc.RootDoc;
+
+/**
+ * Runs JAVADOC on a source tree and provides the resulting {@link RootDoc} until it is {@link #close() closed}.
+ * <p>
+ *   A {@link RootDoc} is only usable while its doclet is running (afterwards, the file manager is closed, and
+ *   lazily-completed symbols would fail to load), so JAVADOC runs in a background thread with a doclet that hands the
+ *   {@link RootDoc} over, and then blocks until the fixture is closed. Only one fixture may be open at a time.
+ * </p>
+ */
+final
+class JavadocFixture implements Closeable {
+
+    private static final SynchronousQueue<RootDoc> ROOT_DOCS = new SynchronousQueue<RootDoc>();
+    private static final Semaphore                 RELEASE   = new Semaphore(0);
+
+    /**
+     * The result of the JAVADOC run; only valid until the fixture is {@link #close() closed}.
+     */
+    final RootDoc rootDoc;
+
+    private final Thread javadocThread;
+
+    /**
+     * Runs JAVADOC on the given package in the <var>sourceDirectory</var>. The current class path is used as
+     * JAVADOC's class path.
+     */
+    JavadocFixture(File sourceDirectory, String packageName) throws IOException, InterruptedException {
+
+        final String[] args = {
+            "-doclet",      CapturingDoclet.class.getName(),
+            "-sourcepath",  sourceDirectory.getPath(),
+            "-classpath",   System.getProperty("java.class.path"),
+            "-encoding",    "UTF-8",
+            "-quiet",
+            packageName,
+        };
+
+        this.javadocThread = new Thread("javadoc") {
+
+            @Override public void
+            run() {
+
+                // Make JAVADOC load the doclet through THIS class loader, so that it sees the same "ROOT_DOCS" and
+                // "RELEASE".
+                com.sun.tools.javadoc.Main.execute(CapturingDoclet.class.getClassLoader(), args);
+            }
+        };
+        this.javadocThread.setDaemon(true);
+        this.javadocThread.start();
+
+        RootDoc rd;
+        while ((rd = JavadocFixture.ROOT_DOCS.poll(100, TimeUnit.MILLISECONDS)) == null) {
+            if (!this.javadocThread.isAlive()) throw new IOException("JAVADOC failed; see the error messages above");
+        }
+        this.rootDoc = rd;
+    }
+
+    @Override public void
+    close() throws IOException {
+        JavadocFixture.RELEASE.release();
+        try {
+            this.javadocThread.join();
+        } catch (InterruptedException ie) {
+            throw new IOException(null, ie);
+        }
+    }
+
+    /**
+     * The doclet that hands over the {@link RootDoc} to the {@link JavadocFixture}.
+     */
+    public static final
+    class CapturingDoclet {
+
+        private CapturingDoclet() {}
+
+        /**
+         * See <a href="https://docs.oracle.com/javase/8/docs/technotes/guides/javadoc/doclet/overview.html">"Doclet
+         * Overview"</a>.
+         */
+        public static LanguageVersion languageVersion() { return LanguageVersion.JAVA_1_5; }
+
+        /**
+         * See <a href="https://docs.oracle.com/javase/8/docs/technotes/guides/javadoc/doclet/overview.html">"Doclet
+         * Overview"</a>.
+         */
+        public static boolean
+        start(RootDoc rootDoc) throws InterruptedException {
+            JavadocFixture.ROOT_DOCS.put(rootDoc);
+            JavadocFixture.RELEASE.acquire();
+            return true;
+        }
+    }
+}
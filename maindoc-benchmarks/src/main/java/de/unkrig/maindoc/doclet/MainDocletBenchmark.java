@@ -0,0 +1,240 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.RootDoc;
+
+import de.unkrig.commons.doclet.html.Html;
+import de.unkrig.commons.lang.protocol.Longjump;
+
+/**
+ * Benchmarks the phases of a {@link MainDoclet} run, on a {@link SyntheticSources synthetic source tree}.
+ * <p>
+ *   The size of the source tree is configured through the JMH parameters "{@code classes}", "{@code options}" and
+ *   "{@code depth}", e.g. "{@code java -jar target/benchmarks.jar -p classes=100 -p depth=5}".
+ * </p>
+ * <p>
+ *   This class lives in the doclet's package, because it benchmarks package-private methods of the {@link
+ *   MainDoclet}.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MainDocletBenchmark {
+
+    /** The number of "tool" classes, i.e. of generated documents. */
+    @Param("20") public int classes;
+
+    /** The number of command line options declared by each class. */
+    @Param("20") public int options;
+
+    /** The number of superclasses of each tool class. */
+    @Param("3") public int depth;
+
+    private File           tempDirectory;
+    private JavadocFixture fixture;
+    private RootDoc        rootDoc;
+
+    /** The targets of the "@see" tags of the option setters; run-scoped, like in a doclet run. */
+    private ReferenceCache<ClassDoc, Doc> seeTagTargets;
+
+    /** All classes of the synthetic package. */
+    private final List<ClassDoc> allClasses = new ArrayList<ClassDoc>();
+
+    /** The "main(String[])" methods of the tool classes. */
+    private final List<MethodDoc> mainMethods = new ArrayList<MethodDoc>();
+
+    /** The command line options of all classes. */
+    private final List<CommandLineOptionDoc> allOptions = new ArrayList<CommandLineOptionDoc>();
+
+    private final MainDoclet doclet = new MainDoclet();
+    private final Html       html   = new Html(Html.STANDARD_LINK_MAKER);
+
+    /** The HTML text generated for the first tool class. */
+    private String htmlText;
+
+    /** The {@link #htmlText}, wrapped in an HTML document. */
+    private String htmlDocument;
+
+    private File htmlOutputFile;
+    private File unchangedHtmlOutputFile;
+
+    @Setup(Level.Trial) public void
+    setUp() throws Exception {
+
+        this.tempDirectory = Files.createTempDirectory("maindoc-benchmarks").toFile();
+
+        File sourceDirectory = new File(this.tempDirectory, "src");
+        SyntheticSources.generate(sourceDirectory, this.classes, this.options, this.depth);
+
+        this.fixture = new JavadocFixture(sourceDirectory, SyntheticSources.PACKAGE_NAME);
+        this.rootDoc = this.fixture.rootDoc;
+
+        this.seeTagTargets = new ReferenceCache<ClassDoc, Doc>();
+
+        for (ClassDoc cd : this.rootDoc.classes()) {
+            this.allClasses.add(cd);
+            this.allOptions.addAll(CommandLineOptionDoc.declaredBy(cd, this.seeTagTargets, this.rootDoc));
+            for (MethodDoc md : cd.methods()) {
+                if ("main".equals(md.name())) this.mainMethods.add(md);
+            }
+        }
+        if (this.mainMethods.isEmpty()) throw new IllegalStateException("No tool classes");
+
+        this.htmlText       = this.doclet.convertDoc2(this.mainMethods.get(0), this.rootDoc);
+        this.htmlDocument   = this.doclet.htmlDocument(this.htmlText);
+        this.htmlOutputFile = new File(this.tempDirectory, "main(String[]).html");
+
+        this.unchangedHtmlOutputFile = new File(this.tempDirectory, "unchanged.html");
+        this.doclet.writeFile(this.htmlDocument, this.unchangedHtmlOutputFile, StandardCharsets.UTF_8);
+    }
+
+    @TearDown(Level.Trial) public void
+    tearDown() throws IOException {
+
+        this.fixture.close();
+
+        MainDocletBenchmark.delete(this.tempDirectory);
+    }
+
+    /**
+     * Builds the option model ({@link CommandLineOptionDoc}s) of all classes.
+     */
+    @Benchmark public void
+    optionModel(Blackhole blackhole) throws Longjump {
+        for (ClassDoc cd : this.allClasses) {
+            blackhole.consume(CommandLineOptionDoc.declaredBy(cd, this.seeTagTargets, this.rootDoc));
+        }
+    }
+
+    /**
+     * Renders the doc comments of all "main(String[])" methods, including the expansion of their {@value
+     * MainDoclet#IT_main_commandLineOptions} tags, with a new doclet, i.e. like a doclet run does.
+     */
+    @Benchmark public void
+    commandLineOptionsExpansion(Blackhole blackhole) {
+        MainDoclet doclet = new MainDoclet();
+        for (MethodDoc md : this.mainMethods) {
+            blackhole.consume(doclet.convertDoc2(md, this.rootDoc));
+        }
+    }
+
+    /**
+     * Like {@link #commandLineOptionsExpansion(Blackhole)}, but with one doclet for all invocations, so that its
+     * caches are warm.
+     */
+    @Benchmark public void
+    commandLineOptionsExpansionCached(Blackhole blackhole) {
+        for (MethodDoc md : this.mainMethods) {
+            blackhole.consume(this.doclet.convertDoc2(md, this.rootDoc));
+        }
+    }
+
+    /**
+     * Renders the {@code <dt>} elements of all command line options.
+     */
+    @Benchmark public int
+    attributeTerm() throws Longjump {
+
+        StringBuilder sb = new StringBuilder();
+        for (CommandLineOptionDoc option : this.allOptions) {
+            MainDoclet.attributeTerm(option, sb, this.html, this.rootDoc);
+        }
+
+        return sb.length();
+    }
+
+    /**
+     * Wraps the HTML text of one document in an HTML document, and writes it to a new file.
+     */
+    @Benchmark public void
+    htmlWriting() throws IOException {
+        this.doclet.writeFile(this.doclet.htmlDocument(this.htmlText), this.htmlOutputFile, StandardCharsets.UTF_8);
+        if (!this.htmlOutputFile.delete()) throw new IOException("Could not delete \"" + this.htmlOutputFile + "\"");
+    }
+
+    /**
+     * Like {@link #htmlWriting()}, but the file exists and has the same content already, so it is not rewritten.
+     */
+    @Benchmark public void
+    htmlWritingUnchanged() throws IOException {
+        this.doclet.writeFile(
+            this.doclet.htmlDocument(this.htmlText),
+            this.unchangedHtmlOutputFile,
+            StandardCharsets.UTF_8
+        );
+    }
+
+    /**
+     * Converts one HTML document into plain text.
+     */
+    @Benchmark public String
+    html2Txt() throws IOException {
+        return this.doclet.html2txt(this.htmlDocument);
+    }
+
+    private static void
+    delete(File file) throws IOException {
+
+        File[] members = file.listFiles();
+        if (members != null) {
+            for (File member : members) MainDocletBenchmark.delete(member);
+        }
+
+        if (!file.delete()) throw new IOException("Could not delete \"" + file + "\"");
+    }
+}
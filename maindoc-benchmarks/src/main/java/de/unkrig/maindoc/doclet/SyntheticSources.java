@@ -0,0 +1,202 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Generates a source tree with a configurable number of "tool" classes, command line options per class and
+ * superclasses per tool class, which exercises all the features of the {@link MainDoclet}.
+ * <p>
+ *   The generated package "{@value #PACKAGE_NAME}" contains:
+ * </p>
+ * <ul>
+ *   <li>An enum type "{@code Mode}", for enum-typed options</li>
+ *   <li>
+ *     A chain of classes "{@code Base0}", "{@code Base1}" (which extends "{@code Base0}"), ... which all declare
+ *     command line options
+ *   </li>
+ *   <li>
+ *     Classes "{@code Tool0}", "{@code Tool1}", ..., which extend the last "{@code Base...}" class, declare command line
+ *     options, and have a "{@code main(String[])}" method with {@value MainDoclet#IT_main_commandLineOptions} tags
+ *   </li>
+ * </ul>
+ * <p>
+ *   The options come in five flavors (in rotation): Flags, multiple-occurrence string options, enum-typed options,
+ *   options in a {@value MainDoclet#BT_main_commandLineOptionGroup} with a {@value
+ *   MainDoclet#BT_main_commandLineOptionComment}, and "companions" of these.
+ * </p>
+ */
+final
+class SyntheticSources {
+
+    private SyntheticSources() {}
+
+    /**
+     * The name of the package that {@link #generate(File, int, int, int)} generates.
+     */
+    static final String PACKAGE_NAME = "synthetic";
+
+    /**
+     * The name of the group of the "grouped" options.
+     */
+    static final String GROUP = "Advanced";
+
+    /**
+     * Generates the source tree under the <var>sourceDirectory</var>.
+     *
+     * @param classes The number of "tool" classes (those with a "{@code main(String[])}" method)
+     * @param options The number of command line options declared by each tool class and by each of its superclasses
+     * @param depth   The number of superclasses (besides {@link Object}) of each tool class
+     */
+    static void
+    generate(File sourceDirectory, int classes, int options, int depth) throws IOException {
+
+        File packageDirectory = new File(sourceDirectory, SyntheticSources.PACKAGE_NAME);
+        if (!packageDirectory.isDirectory() && !packageDirectory.mkdirs()) {
+            throw new IOException("Could not create directory \"" + packageDirectory + "\"");
+        }
+
+        try (PrintWriter pw = SyntheticSources.sourceFile(packageDirectory, "Mode")) {
+            pw.println("/** The modes of operation. */");
+            pw.println("public enum Mode { FAST, SAFE, VERBOSE }");
+        }
+
+        for (int d = 0; d < depth; d++) {
+            String className = "Base" + d;
+            try (PrintWriter pw = SyntheticSources.sourceFile(packageDirectory, className)) {
+                pw.println("/** Synthetic base class #" + d + ". */");
+                pw.println("public class " + className + (d == 0 ? "" : " extends Base" + (d - 1)) + " {");
+                SyntheticSources.options(pw, className, options);
+                pw.println("}");
+            }
+        }
+
+        for (int i = 0; i < classes; i++) {
+            String className = "Tool" + i;
+            try (PrintWriter pw = SyntheticSources.sourceFile(packageDirectory, className)) {
+                pw.println("/** Synthetic tool #" + i + ". */");
+                pw.println("public class " + className + (depth == 0 ? "" : " extends Base" + (depth - 1)) + " {");
+                pw.println();
+                pw.println("    /**");
+                pw.println("     * Does what tool #" + i + " does. See also {@code " + className + "}.");
+                pw.println("     *");
+                pw.println("     * <h2>Options:</h2>");
+                pw.println("     * <dl>");
+                pw.println("     * {@main.commandLineOptions}");
+                pw.println("     * </dl>");
+                pw.println("     *");
+                pw.println("     * <h2>" + SyntheticSources.GROUP + " options:</h2>");
+                pw.println("     * <dl>");
+                pw.println("     * {@main.commandLineOptions " + SyntheticSources.GROUP + "}");
+                pw.println("     * </dl>");
+                pw.println("     */");
+                pw.println("    public static void main(String[] args) {}");
+                SyntheticSources.options(pw, className, options);
+                pw.println("}");
+            }
+        }
+    }
+
+    private static void
+    options(PrintWriter pw, String className, int n) {
+
+        for (int j = 0; j < n; j++) {
+
+            // Make the option names unique throughout the class hierarchy.
+            String suffix = className + "Option" + j;
+
+            pw.println();
+            switch (j % 5) {
+
+            case 0:
+                pw.println("    /** Enables the {@code " + suffix + "} feature. */");
+                pw.println("    @CommandLineOption public void setFlag" + suffix + "() {}");
+                break;
+
+            case 1:
+                pw.println("    /**");
+                pw.println("     * Adds a <var>value</var> to the {@code " + suffix + "} list.");
+                pw.println("     *");
+                pw.println("     * @param value <var>text</var>");
+                pw.println("     */");
+                pw.println("    @CommandLineOption(cardinality = CommandLineOption.Cardinality.ANY)");
+                pw.println("    public void addValue" + suffix + "(String value) {}");
+                break;
+
+            case 2:
+                pw.println("    /** Sets the mode of the {@code " + suffix + "} feature. */");
+                pw.println("    @CommandLineOption public void setMode" + suffix + "(Mode mode) {}");
+                break;
+
+            case 3:
+                pw.println("    /**");
+                pw.println("     * Limits the {@code " + suffix + "} feature.");
+                pw.println("     * <p>");
+                pw.println("     *   A second paragraph,");
+                pw.println("     *   which spans multiple lines.");
+                pw.println("     * </p>");
+                pw.println("     *");
+                pw.println("     * " + MainDoclet.BT_main_commandLineOptionGroup + " " + SyntheticSources.GROUP);
+                pw.println("     * " + MainDoclet.BT_main_commandLineOptionComment + " (Default: 7.)");
+                pw.println("     */");
+                pw.println("    @CommandLineOption public void setLimit" + suffix + "(int limit) {}");
+                break;
+
+            case 4:
+
+                // A companion of the preceding option.
+                String target = className + "Option" + (j - 1);
+                pw.println("    /** @see #setLimit" + target + "(int) */");
+                pw.println("    @CommandLineOption(name = { \"L" + suffix + "\", \"limit-alias-" + suffix + "\" })");
+                pw.println("    public void setLimitAlias" + suffix + "(int limit) {}");
+                break;
+            }
+        }
+    }
+
+    private static PrintWriter
+    sourceFile(File packageDirectory, String className) throws IOException {
+
+        PrintWriter pw = new PrintWriter(new OutputStreamWriter(
+            new FileOutputStream(new File(packageDirectory, className + ".java")),
+            StandardCharsets.UTF_8
+        ));
+
+        pw.println("package " + SyntheticSources.PACKAGE_NAME + ";");
+        pw.println();
+        pw.println("import de.unkrig.commons.util.annotation.CommandLineOption;");
+        pw.println();
+
+        return pw;
+    }
+}
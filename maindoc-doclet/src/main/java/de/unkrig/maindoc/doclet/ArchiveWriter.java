@@ -0,0 +1,206 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.jar.Attributes;
+import java.util.jar.JarOutputStream;
+import java.util.jar.Manifest;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Writes documents into one JAR or ZIP file, instead of into many small files.
+ * <p>
+ *   The entries are named like the files in a destination directory would be, so the archive can be put on a
+ *   classpath like that directory, and the documents can be loaded as resources. If the archive file name ends with
+ *   "{@code .jar}", then the archive also gets a manifest.
+ * </p>
+ * <p>
+ *   The documents may be {@link #put(int, Map) put} concurrently and in any order. They are streamed into the archive
+ *   in the order of their {@link #nextDocumentNumber() document numbers}, as soon as all documents with lower numbers
+ *   are there. All entries have the same timestamp, so the archive is byte-for-byte identical iff its documents are.
+ *   That lets {@link #close()} leave an unchanged archive file alone.
+ * </p>
+ */
+public final
+class ArchiveWriter {
+
+    /**
+     * The timestamp of all entries. (ZIP timestamps before 1980 are not representable.)
+     */
+    private static final long ENTRY_TIME = new GregorianCalendar(1980, Calendar.FEBRUARY, 1).getTimeInMillis();
+
+    private final File            file;
+    private final File            tmp;
+    private final ZipOutputStream zos;
+    private final OutputFiles     outputFiles;
+
+    /** The directory entries that were written so far. */
+    private final Set<String> directories = new HashSet<String>();
+
+    /** The documents that were put, but cannot be written yet, by document number. */
+    private final Map<Integer, Map<String, byte[]>> pending = new HashMap<Integer, Map<String, byte[]>>();
+
+    private int nextDocumentNumber;
+    private int nextDocumentToWrite;
+
+    /**
+     * Starts writing the archive into a temporary file next to the <var>file</var>.
+     *
+     * @param outputFiles Replaces the <var>file</var> with the temporary file on {@link #close()}
+     */
+    public
+    ArchiveWriter(File file, OutputFiles outputFiles) throws IOException {
+
+        File directory = file.getAbsoluteFile().getParentFile();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Could not create directory \"" + directory + "\"");
+        }
+
+        this.file        = file;
+        this.outputFiles = outputFiles;
+        this.tmp         = File.createTempFile("." + file.getName() + ".", ".tmp", directory);
+
+        BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(this.tmp));
+        if (file.getName().endsWith(".jar")) {
+
+            // Not "new JarOutputStream(os, manifest)", because that would stamp the manifest entry with the current
+            // time.
+            this.zos = new JarOutputStream(os);
+
+            Manifest manifest = new Manifest();
+            manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+
+            this.putDirectories("META-INF/MANIFEST.MF");
+            this.zos.putNextEntry(ArchiveWriter.entry("META-INF/MANIFEST.MF"));
+            manifest.write(this.zos);
+            this.zos.closeEntry();
+        } else {
+            this.zos = new ZipOutputStream(os);
+        }
+    }
+
+    /**
+     * @return The number of the next document; the numbers determine the order of the documents in the archive
+     */
+    public synchronized int
+    nextDocumentNumber() { return this.nextDocumentNumber++; }
+
+    /**
+     * Adds one document, which may consist of several entries, e.g. an {@code .html} and a {@code .txt} entry.
+     *
+     * @param documentNumber The value that {@link #nextDocumentNumber()} returned for the document
+     * @param entries        The names (with "{@code /}" as the separator) and the contents of the entries
+     */
+    public synchronized void
+    put(int documentNumber, Map<String, byte[]> entries) throws IOException {
+
+        this.pending.put(documentNumber, entries);
+
+        for (;;) {
+            Map<String, byte[]> document = this.pending.remove(this.nextDocumentToWrite);
+            if (document == null) break;
+
+            for (Entry<String, byte[]> e : document.entrySet()) {
+                this.putDirectories(e.getKey());
+                this.zos.putNextEntry(ArchiveWriter.entry(e.getKey()));
+                this.zos.write(e.getValue());
+                this.zos.closeEntry();
+            }
+
+            this.nextDocumentToWrite++;
+        }
+    }
+
+    /**
+     * Completes the archive, and replaces the archive file with it, unless their contents are equal.
+     *
+     * @return                       Whether the archive file was replaced
+     * @throws IllegalStateException Not all documents were {@link #put(int, Map) put}
+     */
+    public synchronized boolean
+    close() throws IOException {
+
+        if (this.nextDocumentToWrite != this.nextDocumentNumber) {
+            throw new IllegalStateException(
+                (this.nextDocumentNumber - this.nextDocumentToWrite)
+                + " document(s) are missing in \""
+                + this.file
+                + "\""
+            );
+        }
+
+        this.zos.close();
+
+        return this.outputFiles.replace(this.tmp, this.file);
+    }
+
+    /**
+     * Discards the temporary file; a no-op after {@link #close()}.
+     */
+    public synchronized void
+    abort() {
+
+        // The temporary file is discarded anyway.
+        try { this.zos.close(); } catch (IOException ioe) {}
+
+        if (this.tmp.exists()) this.tmp.delete();
+    }
+
+    /**
+     * Writes entries for all the directories of the <var>name</var> that were not written yet.
+     */
+    private void
+    putDirectories(String name) throws IOException {
+
+        for (int idx = name.indexOf('/'); idx != -1; idx = name.indexOf('/', idx + 1)) {
+            String directory = name.substring(0, idx + 1);
+            if (this.directories.add(directory)) {
+                this.zos.putNextEntry(ArchiveWriter.entry(directory));
+                this.zos.closeEntry();
+            }
+        }
+    }
+
+    private static ZipEntry
+    entry(String name) {
+        ZipEntry result = new ZipEntry(name);
+        result.setTime(ArchiveWriter.ENTRY_TIME);
+        return result;
+    }
+}
@@ -0,0 +1,205 @@
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.sun.javadoc.AnnotationDesc;
+import com.sun.javadoc.AnnotationDesc.ElementValuePair;
+import com.sun.javadoc.ClassDoc;
+import com.sun.javadoc.Doc;
+import com.sun.javadoc.FieldDoc;
+import com.sun.javadoc.MethodDoc;
+import com.sun.javadoc.RootDoc;
+import com.sun.javadoc.Tag;
+
+import de.unkrig.commons.doclet.Annotations;
+import de.unkrig.commons.lang.protocol.Longjump;
+import de.unkrig.commons.text.Notations;
+import de.unkrig.commons.util.annotation.CommandLineOption;
+import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
+
+/**
+ * Everything about one {@link CommandLineOption}-annotated setter method that does not depend on the document being
+ * generated; computed only once per class and doclet run.
+ */
+final
+class CommandLineOptionDoc {
+
+    /** The {@link CommandLineOption}-annotated setter method. */
+    final MethodDoc methodDoc;
+
+    /** The names of the command line option, as configured or as derived from the method name. */
+    final String[] names;
+
+    /** The "cardinality" element of the {@link CommandLineOption} annotation of the {@link #methodDoc}. */
+    final Cardinality cardinality;
+
+    /** The texts of the {@value MainDoclet#BT_main_commandLineOptionGroup} block tags of the {@link #methodDoc}. */
+    final List<String> groups;
+
+    /**
+     * Whether this option is a "companion" of another option, i.e. has NO text and a {@code @see} block tag, and is
+     * documented TOGETHER with that other option.
+     */
+    final boolean isCompanion;
+
+    /** The options of the same class which are "companions" of this option. */
+    final List<CommandLineOptionDoc> companions = new ArrayList<CommandLineOptionDoc>();
+
+    private
+    CommandLineOptionDoc(
+        MethodDoc    methodDoc,
+        String[]     names,
+        Cardinality  cardinality,
+        List<String> groups,
+        boolean      isCompanion
+    ) {
+        this.methodDoc   = methodDoc;
+        this.names       = names;
+        this.cardinality = cardinality;
+        this.groups      = groups;
+        this.isCompanion = isCompanion;
+    }
+
+    /**
+     * @return The command line options declared by the class <var>cd</var> (but not by its supertypes), in
+     *         declaration order, with the companion options linked to the options they accompany
+     */
+    static List<CommandLineOptionDoc>
+    declaredBy(ClassDoc cd, ReferenceCache<ClassDoc, Doc> seeTagTargets, RootDoc rootDoc) throws Longjump {
+
+        List<CommandLineOptionDoc> result = new ArrayList<CommandLineOptionDoc>();
+
+        Map<MethodDoc, CommandLineOptionDoc> byMethod    = new HashMap<MethodDoc, CommandLineOptionDoc>();
+        Map<CommandLineOptionDoc, MethodDoc> companionOf = new HashMap<CommandLineOptionDoc, MethodDoc>();
+
+        for (MethodDoc md : cd.methods()) {
+
+            // We're only interested in those with a "@CommandLineOption" annotation.
+            AnnotationDesc cload = Annotations.get(md, CommandLineOption.class, rootDoc);
+            if (cload == null) continue;
+
+            MethodDoc target;
+            try {
+                target = MainDoclet.getCompanionOf(md, seeTagTargets, rootDoc);
+            } catch (Longjump l) {
+
+                // The problem was already reported; document the option as a "normal" option.
+                target = null;
+            }
+
+            CommandLineOptionDoc option = new CommandLineOptionDoc(
+                md,
+                CommandLineOptionDoc.names(md, cload),
+                CommandLineOptionDoc.cardinality(cload),
+                CommandLineOptionDoc.groups(md, rootDoc),
+                target != null
+            );
+
+            result.add(option);
+            byMethod.put(md, option);
+            if (target != null) companionOf.put(option, target);
+        }
+
+        // Link the companions to the options they accompany.
+        for (CommandLineOptionDoc option : result) {
+            MethodDoc target = companionOf.get(option);
+            if (target == null) continue;
+
+            CommandLineOptionDoc targetOption = byMethod.get(target);
+            if (targetOption != null) targetOption.companions.add(option);
+        }
+
+        return result;
+    }
+
+    private static String[]
+    names(MethodDoc md, AnnotationDesc cload) throws Longjump {
+
+        String[] names = Annotations.getElementValue(cload, "name", String[].class);
+        if (names != null) return names;
+
+        String n = md.name();
+        if (n.startsWith("set")) {
+            n = n.substring(3);
+        } else
+        if (n.startsWith("add")) {
+            n = n.substring(3);
+        } else
+        if (n.startsWith("is")) {
+            n = n.substring(2);
+        }
+        return new String[] { Notations.fromCamelCase(n).toLowerCaseHyphenated() };
+    }
+
+    private static Cardinality
+    cardinality(AnnotationDesc cload) {
+
+        Cardinality cardinality = Cardinality.OPTIONAL;
+        for (ElementValuePair ev : cload.elementValues()) {
+            if (ev.element().name().equals("cardinality")) {
+                cardinality = Cardinality.valueOf(((FieldDoc) ev.value().value()).name());
+            }
+        }
+
+        return cardinality;
+    }
+
+    private static List<String>
+    groups(MethodDoc md, RootDoc rootDoc) {
+
+        Tag[] clogts = md.tags(MainDoclet.BT_main_commandLineOptionGroup);
+
+        // Backwards compatibility:
+        if (clogts.length == 0) {
+
+            // Discouraged, because the tag name lacks a ".".
+            clogts = md.tags("@command-line-option-group");
+            if (clogts.length > 0) {
+                rootDoc.printWarning(
+                    md.position(),
+                    (
+                        "\"@command-line-option-group\" is deprecated; "
+                        + "use \""
+                        + MainDoclet.BT_main_commandLineOptionGroup
+                        + "\"\" instead"
+                    )
+                );
+            }
+        }
+
+        if (clogts.length == 0) return Collections.emptyList();
+
+        List<String> result = new ArrayList<String>(clogts.length);
+        for (Tag clogt : clogts) result.add(clogt.text());
+        return result;
+    }
+}
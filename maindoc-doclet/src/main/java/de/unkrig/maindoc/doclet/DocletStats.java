@@ -0,0 +1,347 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Measures the time (and, where the JVM supports it, the heap memory allocation) that a doclet run spends in each of
+ * its {@link Phase phases}.
+ * <p>
+ *   A phase is measured by a {@link #begin(Phase, Object)} / {@link #end(Measurement)} pair. Phases nest (e.g. the
+ *   rendering of a doc comment includes the expansion of its inline tags, which may again render other doc comments),
+ *   but only the outermost measurement of each phase on each thread counts, so that no time is counted twice.
+ *   Measurements may happen concurrently on several threads.
+ * </p>
+ * <p>
+ *   If neither statistics nor a {@link Listener} are requested, {@link #begin(Phase, Object)} returns {@code null}
+ *   and costs virtually nothing.
+ * </p>
+ */
+public final
+class DocletStats {
+
+    /**
+     * The phases of a doclet run.
+     */
+    public
+    enum Phase {
+
+        /** The application of the doclet options. */
+        OPTIONS("Option application"),
+
+        /** The collection of the classes to process. */
+        CLASS_COLLECTION("Class collection"),
+
+        /** The identification of the methods to document. */
+        METHOD_MATCHING("Method matching"),
+
+        /** The rendering of a doc comment into HTML text. */
+        RENDERING("Rendering"),
+
+        /** The expansion of one inline tag. */
+        TAG_EXPANSION("Tag expansion"),
+
+        /** The wrapping of HTML text in an HTML document, and the writing of the {@code .html} file. */
+        HTML_WRITING("HTML writing"),
+
+        /** The conversion of an HTML document into plain text, and the writing of the {@code .txt} file. */
+        HTML2TXT("HTML-to-txt conversion"),
+
+        /** The emitting of a document in another {@link OutputFormat}, and the writing of its file. */
+        OTHER_FORMATS("Other output formats");
+
+        /** A human-readable title of the phase. */
+        public final String title;
+
+        Phase(String title) { this.title = title; }
+    }
+
+    /**
+     * Is notified at the beginning and the end of each measurement, e.g. to emit JFR events.
+     */
+    public
+    interface Listener {
+
+        /**
+         * @param subject The object that is processed in the phase, e.g. a class, a method or a tag
+         * @return        An arbitrary token, which is passed to {@link #end(Object)}
+         */
+        @Nullable Object begin(Phase phase, Object subject);
+
+        /**
+         * @param token The value returned by the corresponding {@link #begin(Phase, Object)} invocation
+         */
+        void end(@Nullable Object token);
+    }
+
+    /**
+     * The state of one measurement, from {@link DocletStats#begin(Phase, Object)} to {@link
+     * DocletStats#end(Measurement)}.
+     */
+    public static final
+    class Measurement {
+
+        final Phase            phase;
+        final boolean          outermost;
+        final long             startNanos;
+        final long             startAllocatedBytes;
+        @Nullable final Object token;
+
+        Measurement(
+            Phase            phase,
+            boolean          outermost,
+            long             startNanos,
+            long             startAllocatedBytes,
+            @Nullable Object token
+        ) {
+            this.phase               = phase;
+            this.outermost           = outermost;
+            this.startNanos          = startNanos;
+            this.startAllocatedBytes = startAllocatedBytes;
+            this.token               = token;
+        }
+    }
+
+    @Nullable private static final com.sun.management.ThreadMXBean
+    THREAD_MX_BEAN = DocletStats.allocationMeasuringThreadMxBean();
+
+    private final boolean            collect;
+    @Nullable private final Listener listener;
+    private final long               startNanos = System.nanoTime();
+
+    // Indexed by "Phase.ordinal()".
+    private final AtomicLongArray counts         = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray nanos          = new AtomicLongArray(Phase.values().length);
+    private final AtomicLongArray allocatedBytes = new AtomicLongArray(Phase.values().length);
+
+    /**
+     * The nesting depths of the phases on the current thread, indexed by "{@link Phase#ordinal()}".
+     */
+    private final ThreadLocal<int[]> depths = new ThreadLocal<int[]>() {
+        @Override protected int[] initialValue() { return new int[Phase.values().length]; }
+    };
+
+    /**
+     * @param collect  Whether to collect statistics; if {@code false}, then only the <var>listener</var> is notified
+     * @param listener Is notified at the beginning and the end of each measurement
+     */
+    public
+    DocletStats(boolean collect, @Nullable Listener listener) {
+        this.collect  = collect;
+        this.listener = listener;
+    }
+
+    /**
+     * Begins the measurement of one <var>phase</var>; must be followed by exactly one {@link #end(Measurement)}, even
+     * if the phase completes abruptly.
+     *
+     * @param subject The object that is processed in the phase; only passed to the {@link Listener}
+     * @return        {@code null} iff neither statistics are collected nor a {@link Listener} is configured
+     */
+    @Nullable public Measurement
+    begin(Phase phase, Object subject) {
+
+        if (!this.collect && this.listener == null) return null;
+
+        boolean outermost = false;
+        long    nanos = 0, allocatedBytes = 0;
+        if (this.collect) {
+            outermost = this.depths.get()[phase.ordinal()]++ == 0;
+            if (outermost) {
+                allocatedBytes = DocletStats.currentThreadAllocatedBytes();
+                nanos          = System.nanoTime();
+            }
+        }
+
+        Listener l = this.listener;
+        return new Measurement(phase, outermost, nanos, allocatedBytes, l == null ? null : l.begin(phase, subject));
+    }
+
+    /**
+     * Ends the <var>measurement</var>.
+     *
+     * @param measurement The value returned by {@link #begin(Phase, Object)}
+     */
+    public void
+    end(@Nullable Measurement measurement) {
+
+        if (measurement == null) return;
+
+        Listener l = this.listener;
+        if (l != null) l.end(measurement.token);
+
+        if (!this.collect) return;
+
+        int ordinal = measurement.phase.ordinal();
+        this.depths.get()[ordinal]--;
+        if (!measurement.outermost) return;
+
+        long nanos = System.nanoTime() - measurement.startNanos;
+
+        long allocatedBytes = -1;
+        if (measurement.startAllocatedBytes != -1) {
+            allocatedBytes = DocletStats.currentThreadAllocatedBytes() - measurement.startAllocatedBytes;
+        }
+
+        this.record(measurement.phase, nanos, allocatedBytes);
+    }
+
+    /**
+     * Records a measurement of the <var>phase</var> that was taken by other means than {@link #begin(Phase, Object)}
+     * and {@link #end(Measurement)}, e.g. before this object was created.
+     *
+     * @param allocatedBytes -1 means "unknown"
+     */
+    public void
+    record(Phase phase, long nanos, long allocatedBytes) {
+
+        if (!this.collect) return;
+
+        int ordinal = phase.ordinal();
+        this.counts.incrementAndGet(ordinal);
+        this.nanos.addAndGet(ordinal, nanos);
+        if (allocatedBytes != -1 && DocletStats.THREAD_MX_BEAN != null) {
+            this.allocatedBytes.addAndGet(ordinal, allocatedBytes);
+        }
+    }
+
+    /**
+     * @return The number of bytes allocated by the current thread so far, or -1 iff the JVM cannot measure that
+     */
+    public static long
+    currentThreadAllocatedBytes() {
+        com.sun.management.ThreadMXBean tmxb = DocletStats.THREAD_MX_BEAN;
+        return tmxb == null ? -1 : tmxb.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Prints a human-readable summary of the statistics.
+     */
+    public void
+    printSummary(PrintWriter pw) {
+
+        boolean withAllocation = DocletStats.THREAD_MX_BEAN != null;
+
+        pw.printf(Locale.US, "%-24s %8s %12s %12s%s%n", "Phase", "Count", "Total [ms]", "Avg [us]", (
+            withAllocation ? String.format(Locale.US, " %14s", "Allocated [kB]") : ""
+        ));
+        for (Phase phase : Phase.values()) {
+            int  ordinal = phase.ordinal();
+            long count   = this.counts.get(ordinal);
+            long nanos   = this.nanos.get(ordinal);
+            pw.printf(
+                Locale.US,
+                "%-24s %8d %12.1f %12.1f%s%n",
+                phase.title,
+                count,
+                nanos / 1E6,
+                count == 0 ? 0.0 : nanos / 1E3 / count,
+                withAllocation ? String.format(Locale.US, " %14d", this.allocatedBytes.get(ordinal) / 1024) : ""
+            );
+        }
+        pw.printf(Locale.US, "%-24s %8s %12.1f%n", "Wall time", "", (System.nanoTime() - this.startNanos) / 1E6);
+        pw.flush();
+    }
+
+    /**
+     * Writes the statistics in JSON format, e.g.
+     * <pre>
+     * {
+     *   "wallTimeNanos": 123456789,
+     *   "phases": {
+     *     "RENDERING": { "title": "Rendering", "count": 17, "nanos": 12345678, "allocatedBytes": 1234567 },
+     *     ...
+     *   }
+     * }
+     * </pre>
+     * {@code "allocatedBytes"} is -1 iff the JVM cannot measure allocation.
+     */
+    public void
+    writeJson(Writer w) throws IOException {
+
+        boolean withAllocation = DocletStats.THREAD_MX_BEAN != null;
+
+        PrintWriter pw = new PrintWriter(w);
+        pw.println("{");
+        pw.println("  \"wallTimeNanos\": " + (System.nanoTime() - this.startNanos) + ",");
+        pw.println("  \"phases\": {");
+        Phase[] phases = Phase.values();
+        for (int i = 0; i < phases.length; i++) {
+            Phase phase   = phases[i];
+            int   ordinal = phase.ordinal();
+            pw.println(
+                "    \""
+                + phase.name()
+                + "\": { \"title\": \""
+                + phase.title
+                + "\", \"count\": "
+                + this.counts.get(ordinal)
+                + ", \"nanos\": "
+                + this.nanos.get(ordinal)
+                + ", \"allocatedBytes\": "
+                + (withAllocation ? this.allocatedBytes.get(ordinal) : -1)
+                + " }"
+                + (i < phases.length - 1 ? "," : "")
+            );
+        }
+        pw.println("  }");
+        pw.println("}");
+        pw.flush();
+        if (pw.checkError()) throw new IOException("Error writing statistics");
+    }
+
+    @Nullable private static com.sun.management.ThreadMXBean
+    allocationMeasuringThreadMxBean() {
+
+        try {
+            java.lang.management.ThreadMXBean tmxb = ManagementFactory.getThreadMXBean();
+            if (!(tmxb instanceof com.sun.management.ThreadMXBean)) return null;
+
+            com.sun.management.ThreadMXBean result = (com.sun.management.ThreadMXBean) tmxb;
+            if (!result.isThreadAllocatedMemorySupported()) return null;
+            if (!result.isThreadAllocatedMemoryEnabled()) result.setThreadAllocatedMemoryEnabled(true);
+
+            return result;
+        } catch (LinkageError le) {
+
+            // E.g. a JVM without "com.sun.management".
+            return null;
+        } catch (RuntimeException re) {
+
+            // E.g. "SecurityException" or "UnsupportedOperationException".
+            return null;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Collections;
+import java.util.List;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
+
+/**
+ * Everything that the {@link DocumentEmitter}s need to know about one documented method: Its rendered doc comment,
+ * and the command line options that the doc comment documents. Is built once per document, and then passed to the
+ * emitters of all configured {@link OutputFormat}s.
+ * <p>
+ *   Instances are not thread-safe; each document is emitted on one writer thread.
+ * </p>
+ */
+public final
+class DocumentModel {
+
+    /** The name of the package of the documented class, e.g. "{@code pkg}", or "" for the unnamed package. */
+    public final String packageName;
+
+    /** The name of the documented class, relative to its package, e.g. "{@code Tool}" or "{@code Outer.Inner}". */
+    public final String className;
+
+    /** The name of the documented method, e.g. "{@code main}". */
+    public final String memberName;
+
+    /** The flat signature of the documented method, e.g. "{@code (String[])}". */
+    public final String flatSignature;
+
+    /**
+     * The '/'-separated path of the output files, relative to the destination directory, and without the file name
+     * extension, e.g. "{@code pkg/Tool.main(String[])}".
+     */
+    public final String path;
+
+    /** The HTML rendering of the doc comment. */
+    public final String htmlText;
+
+    /** The {@link #htmlText}, wrapped in an HTML document. */
+    public final String htmlDocument;
+
+    /** The command line options that the doc comment documents, in document order. */
+    public final List<Option> options;
+
+    @Nullable private Document dom;
+
+    public
+    DocumentModel(
+        String       packageName,
+        String       className,
+        String       memberName,
+        String       flatSignature,
+        String       path,
+        String       htmlText,
+        String       htmlDocument,
+        List<Option> options
+    ) {
+        this.packageName   = packageName;
+        this.className     = className;
+        this.memberName    = memberName;
+        this.flatSignature = flatSignature;
+        this.path          = path;
+        this.htmlText      = htmlText;
+        this.htmlDocument  = htmlDocument;
+        this.options       = Collections.unmodifiableList(options);
+    }
+
+    /**
+     * @return E.g. "{@code pkg.Tool.main(String[])}"
+     */
+    public String
+    qualifiedName() {
+        return (
+            (this.packageName.length() == 0 ? "" : this.packageName + ".")
+            + this.className
+            + "."
+            + this.memberName
+            + this.flatSignature
+        );
+    }
+
+    /**
+     * Parses the {@link #htmlDocument} on the first invocation, so that all emitters that work on the DOM share one
+     * parse.
+     *
+     * @return The DOM of the {@link #htmlDocument}
+     */
+    public Document
+    dom() throws IOException {
+
+        Document result = this.dom;
+        if (result != null) return result;
+
+        return (this.dom = DocumentModel.parse(this.htmlDocument));
+    }
+
+    /**
+     * @return The DOM of the <var>htmlDocument</var>
+     */
+    static Document
+    parse(String htmlDocument) throws IOException {
+        try {
+            return DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(
+                new InputSource(new StringReader(htmlDocument))
+            );
+        } catch (IOException ioe) {
+            throw ioe;
+        } catch (Exception e) {
+            throw new IOException(null, e);
+        }
+    }
+
+    /**
+     * One documented command line option, together with its "companions" (the options which are documented
+     * together with it).
+     */
+    public static final
+    class Option {
+
+        /** The names of the option and of its companions, with leading dashes, e.g. "{@code --verbose}". */
+        public final List<String> names;
+
+        /** The names of the option groups that the option belongs to; empty iff it belongs to no group. */
+        public final List<String> groups;
+
+        /** The cardinality of the option. */
+        public final Cardinality cardinality;
+
+        /**
+         * The HTML {@code <dt>} elements of the option and of its companions, which show their names, their
+         * arguments, their cardinality and their comment.
+         */
+        public final String termsHtml;
+
+        /** The HTML rendering of the description of the option. */
+        public final String descriptionHtml;
+
+        public
+        Option(
+            List<String> names,
+            List<String> groups,
+            Cardinality  cardinality,
+            String       termsHtml,
+            String       descriptionHtml
+        ) {
+            this.names           = Collections.unmodifiableList(names);
+            this.groups          = Collections.unmodifiableList(groups);
+            this.cardinality     = cardinality;
+            this.termsHtml       = termsHtml;
+            this.descriptionHtml = descriptionHtml;
+        }
+
+        /**
+         * @param group {@code null} means "options without a group"
+         * @return      Whether this option belongs to the given <var>group</var>
+         */
+        public boolean
+        isInGroup(@Nullable String group) {
+            return group == null ? this.groups.isEmpty() : this.groups.contains(group);
+        }
+
+        /**
+         * @return The {@code <dt>} / {@code <dd>} pair of this option
+         */
+        public String
+        toHtml() {
+
+            StringBuilder sb = new StringBuilder(this.termsHtml).append("  <dd>\n");
+            IndentingWriter.indent(this.descriptionHtml, "    ", sb);
+            return sb.append("\n  </dd>\n").toString();
+        }
+    }
+}
@@ -0,0 +1,314 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+/**
+ * Generates Java source files that hold the plain-text documentation of methods as string constants, so that a tool
+ * can print its help text straight from memory, without a resource lookup and a charset decoding at runtime.
+ * <p>
+ *   For a class "{@code pkg.Tool}", the generated file is "<var>destination</var>{@code /pkg/ToolHelp.java}" (for a
+ *   nested class "{@code pkg.Tool.Inner}": "{@code pkg/Tool_InnerHelp.java}"), and the constant for the method
+ *   "{@code main(String[])}" is "{@code ToolHelp.main_StringArray}".
+ * </p>
+ * <p>
+ *   A string constant cannot be longer than 65535 bytes (in modified UTF-8) in a class file, so longer texts are
+ *   split into chunks, which are concatenated when the class initializes. Shorter texts are compile-time constants,
+ *   which the Java compiler copies into the classes that use them, so that not even the generated class is loaded.
+ * </p>
+ * <p>
+ *   {@link #add(String, String, String, String, String)} is thread-safe.
+ * </p>
+ */
+public final
+class HelpClassGenerator {
+
+    /**
+     * The maximum length of a {@code CONSTANT_Utf8} entry in a class file.
+     */
+    private static final int MAX_CHUNK_LENGTH = 65535;
+
+    private final File        destinationDirectory;
+    private final OutputFiles outputFiles;
+
+    /**
+     * The texts, by constant name, by simple class name, by package name.
+     */
+    private final Map<String, Map<String, Map<String, String>>>
+    texts = new TreeMap<String, Map<String, Map<String, String>>>();
+
+    /**
+     * The documented members, by constant name, by simple class name, by package name.
+     */
+    private final Map<String, Map<String, Map<String, String>>>
+    members = new TreeMap<String, Map<String, Map<String, String>>>();
+
+    /**
+     * @param outputFiles Writes the generated files
+     */
+    public
+    HelpClassGenerator(File destinationDirectory, OutputFiles outputFiles) {
+        this.destinationDirectory = destinationDirectory;
+        this.outputFiles          = outputFiles;
+    }
+
+    /**
+     * Registers the plain-text documentation of one method.
+     *
+     * @param packageName   The name of the package of the documented class; "" for the unnamed package
+     * @param className     The name of the documented class, relative to its package, e.g. "{@code Outer.Inner}"
+     * @param flatSignature E.g. "{@code (String[])}"
+     */
+    public synchronized void
+    add(String packageName, String className, String methodName, String flatSignature, String text) {
+
+        String constantName = HelpClassGenerator.constantName(methodName, flatSignature);
+
+        HelpClassGenerator.map(this.texts, packageName, className).put(constantName, text);
+        HelpClassGenerator.map(this.members, packageName, className).put(
+            constantName,
+            (packageName.length() == 0 ? "" : packageName + ".") + className + "." + methodName + flatSignature
+        );
+    }
+
+    /**
+     * Writes one Java source file for each class that has documented methods.
+     */
+    public synchronized void
+    generate() throws IOException {
+
+        for (Entry<String, Map<String, Map<String, String>>> e : this.texts.entrySet()) {
+            String packageName = e.getKey();
+
+            File packageDirectory = (
+                packageName.length() == 0
+                ? this.destinationDirectory
+                : new File(this.destinationDirectory, packageName.replace('.', File.separatorChar))
+            );
+            if (!packageDirectory.isDirectory() && !packageDirectory.mkdirs()) {
+                throw new IOException("Could not create directory \"" + packageDirectory + "\"");
+            }
+
+            for (Entry<String, Map<String, String>> e2 : e.getValue().entrySet()) {
+                String className     = e2.getKey();
+                String helpClassName = className.replace('.', '_') + "Help";
+
+                // The generated source is pure ASCII, so the charset does not really matter.
+                this.outputFiles.write(
+                    this.helpClass(packageName, className, helpClassName, e2.getValue()),
+                    new File(packageDirectory, helpClassName + ".java"),
+                    Charset.forName("UTF-8")
+                );
+            }
+        }
+    }
+
+    private String
+    helpClass(String packageName, String className, String helpClassName, Map<String, String> texts) {
+
+        StringWriter sw = new StringWriter();
+        PrintWriter  pw = new PrintWriter(sw);
+
+        pw.println();
+        pw.println("// Generated by MAINDOC; do not edit.");
+        pw.println();
+        if (packageName.length() > 0) {
+            pw.println("package " + packageName + ";");
+            pw.println();
+        }
+        pw.println("/**");
+        pw.println(" * The plain-text documentation of methods of {@code " + className + "}.");
+        pw.println(" */");
+        pw.println("public final");
+        pw.println("class " + helpClassName + " {");
+        pw.println();
+        pw.println("    private " + helpClassName + "() {}");
+
+        Map<String, String> members = HelpClassGenerator.map(this.members, packageName, className);
+        for (Entry<String, String> e : texts.entrySet()) {
+            String constantName = e.getKey();
+            String text         = e.getValue();
+
+            pw.println();
+            pw.println("    /**");
+            pw.println("     * The plain-text documentation of {@code " + members.get(constantName) + "}.");
+            pw.println("     */");
+            pw.println("    public static final String");
+
+            int from = 0, to = HelpClassGenerator.chunkEnd(text, from);
+            if (to == text.length()) {
+
+                // A compile-time constant.
+                pw.println("    " + constantName + " = (");
+                HelpClassGenerator.literals(text, pw, "        ");
+                pw.println("    );");
+            } else {
+
+                // Chunks that are concatenated at runtime, because the concatenation of constants would again be a
+                // constant.
+                pw.println("    " + constantName + " = new StringBuilder(" + text.length() + ")");
+                for (;;) {
+                    pw.println("    .append(");
+                    HelpClassGenerator.literals(text.substring(from, to), pw, "        ");
+                    pw.println("    )");
+                    if (to == text.length()) break;
+                    from = to;
+                    to   = HelpClassGenerator.chunkEnd(text, from);
+                }
+                pw.println("    .toString();");
+            }
+        }
+
+        pw.println("}");
+
+        pw.flush();
+        return sw.toString();
+    }
+
+    /**
+     * @return The end index of the longest chunk of the <var>text</var>, starting at <var>from</var>, that fits into a
+     *         {@code CONSTANT_Utf8} entry
+     */
+    private static int
+    chunkEnd(String text, int from) {
+
+        int length = 0;
+        for (int i = from; i < text.length(); i++) {
+            char c = text.charAt(i);
+
+            // The number of bytes of the character in modified UTF-8.
+            length += c != 0 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+
+            if (length > HelpClassGenerator.MAX_CHUNK_LENGTH) {
+
+                // Do not split a surrogate pair.
+                return Character.isLowSurrogate(c) ? i - 1 : i;
+            }
+        }
+
+        return text.length();
+    }
+
+    /**
+     * Prints the <var>s</var> as a sum of Java string literals, one per line of text.
+     */
+    private static void
+    literals(String s, PrintWriter pw, String indentation) {
+
+        if (s.length() == 0) {
+            pw.println(indentation + "\"\"");
+            return;
+        }
+
+        for (int from = 0; from < s.length();) {
+            int to = s.indexOf('\n', from);
+            to = to == -1 ? s.length() : to + 1;
+
+            pw.print(from == 0 ? indentation : indentation + "+ ");
+            pw.println(HelpClassGenerator.literal(s.substring(from, to)));
+
+            from = to;
+        }
+    }
+
+    /**
+     * @return A Java string literal with the value <var>s</var>, in pure ASCII
+     */
+    static String
+    literal(String s) {
+
+        StringBuilder sb = new StringBuilder(s.length() + 2).append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':  sb.append("\\\""); break;
+            case '\\': sb.append("\\\\"); break;
+            case '\n': sb.append("\\n");  break;
+            case '\r': sb.append("\\r");  break;
+            case '\t': sb.append("\\t");  break;
+            default:
+                if (c >= 0x20 && c < 0x7f) {
+                    sb.append(c);
+                } else {
+                    sb.append(String.format("\\u%04x", (int) c));
+                }
+            }
+        }
+
+        return sb.append('"').toString();
+    }
+
+    /**
+     * @return A Java identifier for the method, e.g. "{@code main_StringArray}" for "{@code main(String[])}"
+     */
+    static String
+    constantName(String methodName, String flatSignature) {
+
+        String s = methodName + flatSignature.replace("[]", "Array").replace("...", "Array");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (Character.isJavaIdentifierPart(c)) {
+                sb.append(c);
+            } else
+            if (sb.charAt(sb.length() - 1) != '_') {
+                sb.append('_');
+            }
+        }
+
+        while (sb.charAt(sb.length() - 1) == '_') sb.setLength(sb.length() - 1);
+
+        return sb.toString();
+    }
+
+    private static Map<String, String>
+    map(Map<String, Map<String, Map<String, String>>> m, String packageName, String className) {
+
+        Map<String, Map<String, String>> byClassName = m.get(packageName);
+        if (byClassName == null) {
+            byClassName = new TreeMap<String, Map<String, String>>();
+            m.put(packageName, byClassName);
+        }
+
+        Map<String, String> result = byClassName.get(className);
+        if (result == null) {
+            result = new TreeMap<String, String>();
+            byClassName.put(className, result);
+        }
+
+        return result;
+    }
+}
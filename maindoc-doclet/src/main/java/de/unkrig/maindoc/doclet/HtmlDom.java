@@ -0,0 +1,157 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.NodeList;
+
+/**
+ * Utility methods for the {@link DocumentEmitter}s that convert the DOM of an HTML document into another markup.
+ */
+final
+class HtmlDom {
+
+    private HtmlDom() {}
+
+    private static final Set<String> BLOCK_ELEMENTS = new HashSet<String>(Arrays.asList(
+        "address", "blockquote", "body", "center", "dd", "div", "dl", "dt", "form", "h1", "h2", "h3", "h4", "h5", "h6",
+        "hr", "html", "li", "ol", "p", "pre", "table", "tbody", "td", "tfoot", "th", "thead", "tr", "ul"
+    ));
+
+    /**
+     * @return The lower-case name of the element <var>e</var>, e.g. "{@code dl}"
+     */
+    static String
+    name(Element e) { return e.getNodeName().toLowerCase(Locale.ENGLISH); }
+
+    /**
+     * @return Whether the <var>node</var> is an element that starts a new block, like "{@code <p>}" or "{@code <dl>}"
+     */
+    static boolean
+    isBlock(Node node) {
+        return node.getNodeType() == Node.ELEMENT_NODE && HtmlDom.BLOCK_ELEMENTS.contains(HtmlDom.name((Element) node));
+    }
+
+    /**
+     * @return 1 ... 6 for the elements "{@code <h1>}" ... "{@code <h6>}", 0 for all other elements
+     */
+    static int
+    headingLevel(Element e) {
+        String name = HtmlDom.name(e);
+        return name.length() == 2 && name.charAt(0) == 'h' && name.charAt(1) >= '1' && name.charAt(1) <= '6'
+            ? name.charAt(1) - '0'
+            : 0;
+    }
+
+    /**
+     * @return The "{@code <body>}" element of the <var>document</var>, or its root element iff it has no body
+     */
+    static Element
+    body(Document document) {
+        NodeList bodies = document.getElementsByTagName("body");
+        return bodies.getLength() > 0 ? (Element) bodies.item(0) : document.getDocumentElement();
+    }
+
+    /**
+     * @return The <var>text</var>, with each sequence of whitespace characters replaced with one space
+     */
+    static String
+    collapseWhitespace(String text) {
+
+        StringBuilder sb         = new StringBuilder(text.length());
+        boolean       whitespace = false;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isWhitespace(c)) {
+                whitespace = true;
+            } else {
+                if (whitespace) sb.append(' ');
+                whitespace = false;
+                sb.append(c);
+            }
+        }
+        if (whitespace) sb.append(' ');
+
+        return sb.toString();
+    }
+
+    /**
+     * Removes the spaces at the beginning and at the end of each line of the <var>text</var>, and replaces each
+     * sequence of spaces with one space; the whitespace of the text nodes is {@link #collapseWhitespace(String)
+     * collapsed} already, but adjacent text nodes may produce double spaces.
+     */
+    static String
+    normalizeLines(String text) {
+
+        String[]      lines = text.split("\n", -1);
+        StringBuilder sb    = new StringBuilder(text.length());
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) sb.append('\n');
+            sb.append(lines[i].trim().replaceAll(" {2,}", " "));
+        }
+
+        return sb.toString().trim();
+    }
+
+    /**
+     * @return The <var>text</var>, with the <var>prefix</var> prepended to each non-empty line
+     */
+    static String
+    prefixLines(String text, String prefix) {
+
+        String[]      lines = text.split("\n", -1);
+        StringBuilder sb    = new StringBuilder(text.length());
+        for (int i = 0; i < lines.length; i++) {
+            if (i > 0) sb.append('\n');
+            if (lines[i].length() > 0) sb.append(prefix);
+            sb.append(lines[i]);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * @return The <var>text</var>, without leading and trailing line breaks, e.g. of a "{@code <pre>}" element
+     */
+    static String
+    trimLineBreaks(String text) {
+
+        int from = 0, to = text.length();
+        while (from < to && (text.charAt(from) == '\n' || text.charAt(from) == '\r')) from++;
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) to--;
+
+        return text.substring(from, to);
+    }
+}
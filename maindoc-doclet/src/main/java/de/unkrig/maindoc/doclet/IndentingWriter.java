@@ -0,0 +1,162 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+
+/**
+ * A {@link Writer} that prepends an indentation to each line before it passes it on to its delegate; equivalent to
+ * {@code text.replaceAll("(?m)^", indent)}, but without the regex and without copying the text.
+ * <p>
+ *   Like {@code "(?m)^"}, the indentation is written at the beginning of each line, but not after a line terminator
+ *   at the very end of the text.
+ * </p>
+ */
+public final
+class IndentingWriter extends Writer {
+
+    private final Appendable delegate;
+    private final String     indent;
+
+    /** Whether the next character is the first character of a line. */
+    private boolean atBeginningOfLine = true;
+
+    /** Whether the preceding character was a CR, so that a following LF does not start yet another line. */
+    private boolean afterCr;
+
+    public
+    IndentingWriter(Appendable delegate, String indent) {
+        this.delegate = delegate;
+        this.indent   = indent;
+    }
+
+    /**
+     * Appends the <var>text</var> to the <var>out</var>, with each line indented by <var>indent</var>.
+     */
+    public static void
+    indent(CharSequence text, String indent, StringBuilder out) {
+        try {
+            new IndentingWriter(out, indent).append(text);
+        } catch (IOException ioe) {
+            throw new AssertionError(ioe); // StringBuilders don't throw IOExceptions.
+        }
+    }
+
+    @Override public void
+    write(int c) throws IOException {
+        this.write1((char) c);
+    }
+
+    @Override public void
+    write(char[] cbuf, int off, int len) throws IOException {
+        this.append(CharBuffer.wrap(cbuf), off, off + len);
+    }
+
+    @Override public void
+    write(String str, int off, int len) throws IOException {
+        this.append(str, off, off + len);
+    }
+
+    @Override public Writer
+    append(CharSequence csq) throws IOException {
+        return this.append(csq, 0, csq.length());
+    }
+
+    @Override public Writer
+    append(CharSequence csq, int start, int end) throws IOException {
+
+        // Pass on whole runs of characters that don't begin a line.
+        int from = start;
+        for (int i = start; i < end; i++) {
+            if (!this.atBeginningOfLine) {
+                char c = csq.charAt(i);
+                if (IndentingWriter.isLineTerminator(c)) {
+                    this.atBeginningOfLine = true;
+                    this.afterCr           = c == '\r';
+                }
+                continue;
+            }
+
+            this.delegate.append(csq, from, i);
+            from = i;
+            this.write1(csq.charAt(i));
+            from++;
+        }
+        this.delegate.append(csq, from, end);
+
+        return this;
+    }
+
+    @Override public void
+    flush() throws IOException {
+        if (this.delegate instanceof Flushable) ((Flushable) this.delegate).flush();
+    }
+
+    /**
+     * Does <em>not</em> close the delegate.
+     */
+    @Override public void
+    close() throws IOException {
+        this.flush();
+    }
+
+    private void
+    write1(char c) throws IOException {
+
+        if (this.atBeginningOfLine) {
+            if (this.afterCr && c == '\n') {
+
+                // The LF of a CRLF sequence.
+                this.afterCr = false;
+                this.delegate.append(c);
+                return;
+            }
+            this.delegate.append(this.indent);
+            this.atBeginningOfLine = false;
+        }
+
+        this.delegate.append(c);
+
+        if (IndentingWriter.isLineTerminator(c)) {
+            this.atBeginningOfLine = true;
+            this.afterCr           = c == '\r';
+        } else {
+            this.afterCr = false;
+        }
+    }
+
+    /**
+     * @return Whether the <var>c</var> terminates a line in the sense of {@link java.util.regex.Pattern#MULTILINE}
+     */
+    private static boolean
+    isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
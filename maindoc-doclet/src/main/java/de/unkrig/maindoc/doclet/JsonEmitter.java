@@ -0,0 +1,186 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Emits a JSON description of the documented method and of the command line options that its documentation
+ * documents, e.g. for shell completion scripts or for a web front end.
+ * <p>
+ *   Example:
+ * </p>
+ * <pre>
+ * {
+ *   "package": "pkg",
+ *   "class": "Tool",
+ *   "method": "main",
+ *   "signature": "(String[])",
+ *   "options": [
+ *     {
+ *       "names": ["--verbose", "-v"],
+ *       "groups": [],
+ *       "cardinality": "OPTIONAL",
+ *       "synopses": ["--verbose", "-v"],
+ *       "description": "Print more messages.",
+ *       "descriptionHtml": "Print &lt;i&gt;more&lt;/i&gt; messages."
+ *     }
+ *   ]
+ * }
+ * </pre>
+ */
+public final
+class JsonEmitter implements DocumentEmitter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final Pattern DT     = Pattern.compile("<dt>(.*?)</dt>", Pattern.DOTALL);
+    private static final Pattern TAG    = Pattern.compile("<[^>]*>");
+    private static final Pattern ENTITY = Pattern.compile("&(#x[0-9a-fA-F]+|#[0-9]+|[a-zA-Z]+);");
+
+    @Override public Charset
+    charset() { return JsonEmitter.UTF_8; }
+
+    @Override public String
+    emit(DocumentModel document) {
+
+        StringBuilder sb = new StringBuilder("{\n");
+        JsonEmitter.member("  ", "package",   document.packageName,   sb).append(",\n");
+        JsonEmitter.member("  ", "class",     document.className,     sb).append(",\n");
+        JsonEmitter.member("  ", "method",    document.memberName,    sb).append(",\n");
+        JsonEmitter.member("  ", "signature", document.flatSignature, sb).append(",\n");
+
+        sb.append("  \"options\": [");
+        for (int i = 0; i < document.options.size(); i++) {
+            DocumentModel.Option option = document.options.get(i);
+
+            List<String> synopses = new ArrayList<String>();
+            for (Matcher m = JsonEmitter.DT.matcher(option.termsHtml); m.find();) {
+                synopses.add(JsonEmitter.htmlToText(m.group(1)));
+            }
+
+            sb.append(i == 0 ? "\n" : ",\n").append("    {\n");
+            JsonEmitter.member("      ", "names",           option.names,                                   sb);
+            sb.append(",\n");
+            JsonEmitter.member("      ", "groups",          option.groups,                                  sb);
+            sb.append(",\n");
+            JsonEmitter.member("      ", "cardinality",     option.cardinality.name(),                      sb);
+            sb.append(",\n");
+            JsonEmitter.member("      ", "synopses",        synopses,                                       sb);
+            sb.append(",\n");
+            JsonEmitter.member("      ", "description",     JsonEmitter.htmlToText(option.descriptionHtml), sb);
+            sb.append(",\n");
+            JsonEmitter.member("      ", "descriptionHtml", option.descriptionHtml.trim(),                  sb);
+            sb.append("\n    }");
+        }
+        sb.append(document.options.isEmpty() ? "]\n" : "\n  ]\n");
+
+        return sb.append("}\n").toString();
+    }
+
+    private static StringBuilder
+    member(String indentation, String name, String value, StringBuilder sb) {
+        sb.append(indentation);
+        JsonEmitter.string(name, sb).append(": ");
+        return JsonEmitter.string(value, sb);
+    }
+
+    private static StringBuilder
+    member(String indentation, String name, List<String> values, StringBuilder sb) {
+
+        sb.append(indentation);
+        JsonEmitter.string(name, sb).append(": [");
+        for (int i = 0; i < values.size(); i++) {
+            if (i > 0) sb.append(", ");
+            JsonEmitter.string(values.get(i), sb);
+        }
+
+        return sb.append(']');
+    }
+
+    private static StringBuilder
+    string(String s, StringBuilder sb) {
+
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+            case '"':  sb.append("\\\""); break;
+            case '\\': sb.append("\\\\"); break;
+            case '\n': sb.append("\\n");  break;
+            case '\r': sb.append("\\r");  break;
+            case '\t': sb.append("\\t");  break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", (int) c));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+
+        return sb.append('"');
+    }
+
+    /**
+     * @return The text of the <var>html</var> fragment, without the tags, with the character references decoded,
+     *         and with the whitespace collapsed
+     */
+    private static String
+    htmlToText(String html) {
+
+        String text = JsonEmitter.TAG.matcher(html).replaceAll("");
+
+        StringBuffer sb = new StringBuffer();
+        Matcher      m  = JsonEmitter.ENTITY.matcher(text);
+        while (m.find()) {
+
+            String entity = m.group(1);
+
+            String replacement = (
+                entity.startsWith("#x") ? new String(Character.toChars(Integer.parseInt(entity.substring(2), 16))) :
+                entity.startsWith("#")  ? new String(Character.toChars(Integer.parseInt(entity.substring(1)))) :
+                "lt".equals(entity)     ? "<" :
+                "gt".equals(entity)     ? ">" :
+                "amp".equals(entity)    ? "&" :
+                "quot".equals(entity)   ? "\"" :
+                "apos".equals(entity)   ? "'" :
+                "nbsp".equals(entity)   ? " " :
+                m.group()
+            );
+            m.appendReplacement(sb, Matcher.quoteReplacement(replacement));
+        }
+        m.appendTail(sb);
+
+        return HtmlDom.collapseWhitespace(sb.toString()).trim();
+    }
+}
@@ -29,15 +29,26 @@ package de.unkrig.maindoc.doclet;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.lang.reflect.Method;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import org.w3c.dom.Document;
 
-import com.sun.javadoc.AnnotationDesc;
-import com.sun.javadoc.AnnotationDesc.ElementValuePair;
 import com.sun.javadoc.ClassDoc;
 import com.sun.javadoc.Doc;
 import com.sun.javadoc.ExecutableMemberDoc;
@@ -50,6 +61,7 @@ import com.sun.javadoc.Parameter;
 import com.sun.javadoc.RootDoc;
 import com.sun.javadoc.SeeTag;
 import com.sun.javadoc.Tag;
+import com.sun.javadoc.Type;
 
 import de.unkrig.commons.doclet.Annotations;
 import de.unkrig.commons.doclet.Tags;
@@ -59,14 +71,14 @@ import de.unkrig.commons.lang.AssertionUtil;
 import de.unkrig.commons.lang.ExceptionUtil;
 import de.unkrig.commons.lang.protocol.ConsumerWhichThrows;
 import de.unkrig.commons.lang.protocol.Longjump;
-import de.unkrig.commons.lang.protocol.ProducerUtil;
-import de.unkrig.commons.lang.protocol.ProducerUtil.BooleanProducer;
 import de.unkrig.commons.nullanalysis.Nullable;
 import de.unkrig.commons.text.Notations;
 import de.unkrig.commons.util.CommandLineOptions;
 import de.unkrig.commons.util.annotation.CommandLineOption;
 import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
 import de.unkrig.html2txt.Html2Txt;
+import de.unkrig.maindoc.doclet.DocletStats.Measurement;
+import de.unkrig.maindoc.doclet.DocletStats.Phase;
 
 /**
  * @see #start(RootDoc)
@@ -95,14 +107,152 @@ class MainDoclet {
     public static final String IT_constantsof             = "@constantsof";
     public static final String IT_constantsofplain        = "@constantsofplain";
 
-    private static File              destinationDirectory  = new File(".");
-    private static String            method                = "main(String[])";
-    private static Charset           htmlOutputFileCharset = Charset.defaultCharset();
-    @Nullable private static String  charset;
-    @Nullable private static String  doctitle;
-    private static boolean           quiet;
+    // The configuration of this doclet run; set through the command line options.
+    private File                 destinationDirectory  = new File(".");
+    private final MethodSelector methods               = new MethodSelector();
+    private Charset              htmlOutputFileCharset = Charset.defaultCharset();
+    @Nullable private String     charset;
+    @Nullable private String     doctitle;
+    private boolean              quiet;
+    @Nullable private Charset    txtOutputFileCharset;
+    @Nullable private Integer    txtPageLeftMarginWidth;
+    @Nullable private Integer    txtPageRightMarginWidth;
+    @Nullable private Integer    txtPageWidth;
+    private int                  threads = 1;
+    private boolean              printStats;
+    @Nullable private File       statsFile;
+    @Nullable private File       archiveFile;
+    @Nullable private File       helpClassDestination;
+    @Nullable private File       optionTableDestination;
+    private final Set<OutputFormat> formats = EnumSet.noneOf(OutputFormat.class);
 
-    private static final Html2Txt html2Txt = new Html2Txt();
+    /**
+     * The setter methods of the command line options of this doclet, by option name; {@code null} values mean "not
+     * an option of this doclet". JAVADOC calls {@link #optionLength(String)} for each option, and {@link
+     * #start(RootDoc)} then applies each option, so that each option would otherwise be looked up twice.
+     */
+    private static final Map<String, Method> OPTION_METHODS = new HashMap<String, Method>();
+
+    /**
+     * Writes the output files, and leaves those alone that would not change.
+     */
+    private final OutputFiles outputFiles = new OutputFiles();
+
+    /**
+     * The emitters of the {@link #addFormat(String) output formats}; set up when the run starts.
+     */
+    private final Map<OutputFormat, DocumentEmitter>
+    emitters = new EnumMap<OutputFormat, DocumentEmitter>(OutputFormat.class);
+
+    /**
+     * Iff an {@link #setArchive(File) archive} is configured: Receives all documents.
+     */
+    @Nullable private ArchiveWriter archive;
+
+    /**
+     * Iff a {@link #setHelpClassDestination(File) help class destination} is configured: Collects the plain-text
+     * documents.
+     */
+    @Nullable private HelpClassGenerator helpClasses;
+
+    /**
+     * Iff an {@link #setOptionTableDestination(File) option table destination} is configured: Collects the command
+     * line options of the classes with documented methods.
+     */
+    @Nullable private OptionTableGenerator optionTables;
+
+    /**
+     * Measures the phases of the doclet run; see {@link #setStats()}.
+     */
+    private DocletStats stats = new DocletStats(false, null);
+
+    /**
+     * The destination directories of individual packages; see {@link #addPackageDestination(String, File)}.
+     */
+    private final Map<String, File> packageDestinations = new HashMap<String, File>();
+
+    /**
+     * The command line options declared by each class (but not by its supertypes); computed lazily, because most
+     * classes have no command line options at all.
+     */
+    private final Map<ClassDoc, List<CommandLineOptionDoc>>
+    declaredCommandLineOptions = new HashMap<ClassDoc, List<CommandLineOptionDoc>>();
+
+    /**
+     * The rendered {@code <dt>} / {@code <dd>} pairs of the command line options declared by each class (but not by
+     * its supertypes), by group name ({@code null} meaning "no group"). They do not depend on the document in which
+     * they appear, so the options of a base class are rendered only once, no matter how many subclasses and
+     * {@value #IT_main_commandLineOptions} tags reference them.
+     */
+    private final Map<ClassDoc, Map<String, String>>
+    renderedCommandLineOptions = new HashMap<ClassDoc, Map<String, String>>();
+
+    /**
+     * The models of the command line options declared by each class (but not by its supertypes).
+     */
+    private final Map<ClassDoc, List<DocumentModel.Option>>
+    commandLineOptionModels = new HashMap<ClassDoc, List<DocumentModel.Option>>();
+
+    /**
+     * The command line options that the {@value #IT_main_commandLineOptions} tags of the document currently being
+     * rendered expand to.
+     */
+    private Set<DocumentModel.Option> documentedOptions = new LinkedHashSet<DocumentModel.Option>();
+
+    /**
+     * The classes and interfaces whose command line options each class documents, in {@link TypeHierarchy C3 order};
+     * memoized for the doclet run, because options are often "mixed in" through deep and wide hierarchies.
+     */
+    private final TypeHierarchy<ClassDoc> typeHierarchy = new TypeHierarchy<ClassDoc>() {
+
+        @Override protected List<ClassDoc>
+        directSupertypesOf(ClassDoc cd) {
+
+            List<ClassDoc> result = new ArrayList<ClassDoc>();
+
+            ClassDoc sc = cd.superclass();
+            if (sc != null) result.add(sc);
+            Collections.addAll(result, cd.interfaces());
+
+            return result;
+        }
+    };
+
+    /**
+     * The HTML renderings of the docs that {@value #IT_main_maindoc} tags include; a doc that is included in many
+     * documents is rendered only once per doclet run.
+     */
+    private final Map<Doc, String> includedDocs = new HashMap<Doc, String>();
+
+    /**
+     * The {@link #documentedOptions} of each of the {@link #includedDocs}.
+     */
+    private final Map<Doc, Set<DocumentModel.Option>>
+    includedDocOptions = new HashMap<Doc, Set<DocumentModel.Option>>();
+
+    /**
+     * The targets of the {@value #IT_main_maindoc} tags, by the class that contains the tag and the tag text; the
+     * unresolvable ones are reported only once.
+     */
+    private final ReferenceCache<ClassDoc, Doc> maindocTargets = new ReferenceCache<ClassDoc, Doc>();
+
+    /**
+     * The targets of the bare "{@code @see}" tags of command line option setters (e.g. of "companion" options), by the
+     * class that declares the setter and the tag text.
+     */
+    private final ReferenceCache<ClassDoc, Doc> seeTagTargets = new ReferenceCache<ClassDoc, Doc>();
+
+    /**
+     * The docs that are currently being rendered, for the detection of (direct or indirect) self-inclusion through
+     * {@value #IT_main_maindoc} tags.
+     */
+    private final Set<Doc> docsInProgress = new HashSet<Doc>();
+
+    /**
+     * The number of {@value #IT_main_maindoc} cycles that were broken so far; renderings that involve a broken cycle
+     * are incomplete and must not be cached.
+     */
+    private int brokenCycles;
 
     /**
      * Where to create the .html and .txt output files.
@@ -112,15 +262,55 @@ class MainDoclet {
      *
      * @main.commandLineOptionGroup HTML generation
      */
-    @CommandLineOption(name = { "-d", "--destination" }) public static void
-    setDestination(File destinationDirectory) { MainDoclet.destinationDirectory = destinationDirectory; }
+    @CommandLineOption(name = { "-d", "--destination" }) public void
+    setDestination(File destinationDirectory) { this.destinationDirectory = destinationDirectory; }
+
+    /**
+     * Where to create the output files for the classes of the given package, instead of the {@link
+     * #setDestination(File) destination directory}. Useful when the packages of several projects are documented in
+     * one run, and each project has its own destination directory.
+     *
+     * @main.commandLineOptionGroup HTML generation
+     */
+    @CommandLineOption(cardinality = Cardinality.ANY) public void
+    addPackageDestination(String packageName, File destinationDirectory) {
+        this.packageDestinations.put(packageName, destinationDirectory);
+    }
+
+    /**
+     * Puts all output files into the given JAR or ZIP file, instead of into the {@link #setDestination(File)
+     * destination directory} and the {@link #addPackageDestination(String, File) package destination directories}.
+     * The entries are named like the files in the destination directory would be, so the archive can be put on the
+     * classpath (like the destination directory), and the documents can be loaded as resources. If the file name
+     * ends with "{@code .jar}", then the archive also gets a manifest.
+     * <p>
+     *   The archive file is only replaced if its content changes.
+     * </p>
+     *
+     * @main.commandLineOptionGroup HTML generation
+     */
+    @CommandLineOption public void
+    setArchive(File file) { this.archiveFile = file; }
 
     /**
      * The signature of the method to document. The default is {@code "main(String[])"}; for a doclet, e.g., you may
      * want to specify {@code "--method start(RootDoc)"} to document the doclet "main method".
+     * <p>
+     *   May be given more than once, to document several methods in one run. "{@code *}" and "{@code ?}" are
+     *   wildcards; a <var>method</var> without a parameter list, e.g. "{@code execute}", matches all methods with
+     *   that name.
+     * </p>
      */
-    @CommandLineOption public static void
-    setMethod(String method) { MainDoclet.method = method; }
+    @CommandLineOption(cardinality = Cardinality.ANY) public void
+    addMethod(String method) { this.methods.add(method); }
+
+    /**
+     * An output format: "{@code html}", "{@code txt}", "{@code md}" (Markdown), "{@code man}" (a troff man page) or
+     * "{@code json}". May be given more than once; all formats are generated from the same rendering of the doc
+     * comment, in the same pass. The default is "{@code html}" and "{@code txt}".
+     */
+    @CommandLineOption(cardinality = Cardinality.ANY) public void
+    addFormat(String format) { this.formats.add(OutputFormat.fromName(format)); }
 
     /**
      * The charset to use when writing the {@code .html} files. The default is the JVM default charset,
@@ -128,11 +318,8 @@ class MainDoclet {
      *
      * @main.commandLineOptionGroup HTML generation
      */
-    @CommandLineOption public static void
-    setDocencoding(Charset charset) {
-        MainDoclet.htmlOutputFileCharset = charset;
-        MainDoclet.html2Txt.setInputCharset(charset);
-    }
+    @CommandLineOption public void
+    setDocencoding(Charset charset) { this.htmlOutputFileCharset = charset; }
 
     /**
      * The HTML character set for this document. If set, then the following tag appears in the {@code <head>} of the
@@ -141,22 +328,49 @@ class MainDoclet {
      *
      * @main.commandLineOptionGroup HTML generation
      */
-    @CommandLineOption public static void
-    setCharset(String charset) { MainDoclet.charset = charset; }
+    @CommandLineOption public void
+    setCharset(String charset) { this.charset = charset; }
 
     /**
      * The title to place near the top of the {@code .html} output file.
      *
      * @main.commandLineOptionGroup HTML generation
      */
-    @CommandLineOption public static void
-    setDoctitle(String title) { MainDoclet.doctitle = title; }
+    @CommandLineOption public void
+    setDoctitle(String title) { this.doctitle = title; }
 
     /**
      * Suppresses normal output (like "Generating...").
      */
-    @CommandLineOption public static void
-    setQuiet() { MainDoclet.quiet = true; }
+    @CommandLineOption public void
+    setQuiet() { this.quiet = true; }
+
+    /**
+     * The number of background threads that write the output files and convert them to plain text, while the JAVADOC
+     * thread renders the next doc comments into HTML. (Rendering always happens on the JAVADOC thread, because the
+     * doclet API is not thread-safe.) The output files are identical regardless of the number of threads.
+     *
+     * @main.commandLineOptionComment (defaults to 1)
+     */
+    @CommandLineOption public void
+    setThreads(int n) {
+        if (n < 1) throw new IllegalArgumentException("Invalid number of threads " + n);
+        this.threads = n;
+    }
+
+    /**
+     * Prints, at the end of the run, how much time (and, where the JVM supports it, heap memory) the phases of the
+     * run took: Option application, class collection, method matching, rendering, tag expansion, HTML writing and
+     * HTML-to-txt conversion.
+     */
+    @CommandLineOption public void
+    setStats() { this.printStats = true; }
+
+    /**
+     * Writes the statistics (see {@code --stats}) in JSON format to the given file.
+     */
+    @CommandLineOption public void
+    setStatsFile(File file) { this.statsFile = file; }
 
     /**
      * The charset to use when writing the .txt output files. The default is the JVM default charset, "${file.encoding}".
@@ -164,24 +378,44 @@ class MainDoclet {
      * @main.commandLineOptionGroup   HTML-to-txt conversion
      * @main.commandLineOptionComment (defaults to the JVM default charset, "${file.encoding}".)
      */
-    @CommandLineOption public static void
-    setTxtOutputFileCharset(Charset charset) { MainDoclet.html2Txt.setOutputCharset(charset); }
+    @CommandLineOption public void
+    setTxtOutputFileCharset(Charset charset) { this.txtOutputFileCharset = charset; }
+
+    /**
+     * Where to generate, in addition, a Java source file for each class with documented methods, which holds the
+     * plain-text documentation as string constants. That allows a tool to print its help text without loading a
+     * resource at runtime. For the class "{@code pkg.Tool}", the file is "<var>directory</var>{@code
+     * /pkg/ToolHelp.java}", and the constant for its method "{@code main(String[])}" is "{@code
+     * ToolHelp.main_StringArray}".
+     *
+     * @main.commandLineOptionGroup HTML-to-txt conversion
+     */
+    @CommandLineOption public void
+    setHelpClassDestination(File directory) { this.helpClassDestination = directory; }
+
+    /**
+     * Where to generate, in addition, a Java source file for each class with documented methods, which dispatches
+     * the command line options of the class (and its supertypes) to their setter methods. That allows a tool to
+     * parse its command line without looking up the setter methods reflectively at runtime. For the class "{@code
+     * pkg.Tool}", the file is "<var>directory</var>{@code /pkg/ToolOptions.java}", and the tool parses its command
+     * line with "{@code args = ToolOptions.parse(args, tool);}".
+     */
+    @CommandLineOption public void
+    setOptionTableDestination(File directory) { this.optionTableDestination = directory; }
 
     /**
      * @see MainDoclet#setTxtPageWidth(int)
      * @main.commandLineOptionComment (defaults to 0)
      */
-    @CommandLineOption public static void
-    setTxtPageLeftMarginWidth(int n) { MainDoclet.html2Txt.setPageLeftMarginWidth(n); }
+    @CommandLineOption public void
+    setTxtPageLeftMarginWidth(int n) { this.txtPageLeftMarginWidth = n; }
 
     /**
      * @see MainDoclet#setTxtPageWidth(int)
      * @main.commandLineOptionComment (defaults to 1)
      */
-    @CommandLineOption public static void
-    setTxtPageRightMarginWidth(int n) {
-        MainDoclet.html2Txt.setPageRightMarginWidth(n);
-    }
+    @CommandLineOption public void
+    setTxtPageRightMarginWidth(int n) { this.txtPageRightMarginWidth = n; }
 
     /**
      * The maximum length of output lines is "<var>pageWidth</var> - <var>rightMarginWidth</var>".
@@ -190,17 +424,17 @@ class MainDoclet {
      * @main.commandLineOptionComment (defaults to "$COLUMNS" or 80)
      * @see #setTxtPageRightMarginWidth(int)
      */
-    @CommandLineOption public static void
-    setTxtPageWidth(int n) { MainDoclet.html2Txt.setPageWidth(n); }
+    @CommandLineOption public void
+    setTxtPageWidth(int n) { this.txtPageWidth = n; }
 
     /** @main.commandLineOptionGroup Compatibility */
-    @CommandLineOption public static void setBottom(String text) {}
+    @CommandLineOption public void setBottom(String text) {}
     /** @main.commandLineOptionGroup Compatibility */
-    @CommandLineOption public static void addLink(String extDocUrl) {}
+    @CommandLineOption public void addLink(String extDocUrl) {}
     /** @main.commandLineOptionGroup Compatibility */
-    @CommandLineOption public static void addLinkoffline(String extDocUrl, String packageListLoc) {}
+    @CommandLineOption public void addLinkoffline(String extDocUrl, String packageListLoc) {}
     /** @main.commandLineOptionGroup Compatibility */
-    @CommandLineOption public static void setWindowtitle(String title) {}
+    @CommandLineOption public void setWindowtitle(String title) {}
 
     /**
      * See <a href="https://docs.oracle.com/javase/6/docs/technotes/guides/javadoc/doclet/overview.html">"Doclet
@@ -225,14 +459,28 @@ class MainDoclet {
             return 1;
         }
 
-        Method m = CommandLineOptions.getMethodForOption(option, MainDoclet.class);
+        Method m = MainDoclet.methodForOption(option);
 
         return m == null ? 0 : 1 + m.getParameterTypes().length;
     }
 
     /**
-     * A doclet that generates {@code .html} and {@code .txt} documentation for the "{@code main()}" method of a Java
-     * class.
+     * @return The setter method of the given command line <var>option</var>, or {@code null} iff it is not an option
+     *         of this doclet
+     */
+    @Nullable private static synchronized Method
+    methodForOption(String option) {
+
+        if (MainDoclet.OPTION_METHODS.containsKey(option)) return MainDoclet.OPTION_METHODS.get(option);
+
+        Method result = CommandLineOptions.getMethodForOption(option, MainDoclet.class);
+        MainDoclet.OPTION_METHODS.put(option, result);
+        return result;
+    }
+
+    /**
+     * A doclet that generates {@code .html} and {@code .txt} documentation (and, on request, Markdown, man page and
+     * JSON documentation) for the "{@code main()}" method of a Java class.
      *
      * <h2>Command line options:</h2>
      * <dl>
@@ -262,7 +510,8 @@ class MainDoclet {
      *   <dt><code>{{@value #IT_main_commandLineOptions} <var>group-name</var>}</code></dt>
      *   <dd>
      *     Generates {@code <dt>} / {@code <dd>} pairs for all command line options, generated from
-     *     <code>@CommandLineOption</code>-annotated setter methods.
+     *     <code>@CommandLineOption</code>-annotated setter methods of the class, its superclasses and the interfaces
+     *     that it implements (e.g. default methods of "mix-in" interfaces), in that order.
      *     <br />
      *     If a <var>group-name</var> is given, then only those options appear which have a
      *     <a href="#main.commandLineOptionGroup"><code>{@value #BT_main_commandLineOptionGroup}</code> block tag</a> with
@@ -315,10 +564,15 @@ class MainDoclet {
     public static boolean
     start(final RootDoc rootDoc) throws IOException {
 
+        MainDoclet doclet = new MainDoclet();
+
+        long startNanos          = System.nanoTime();
+        long startAllocatedBytes = DocletStats.currentThreadAllocatedBytes();
+
         // Apply the doclet options.
         for (String[] option : rootDoc.options()) {
 
-            Method m = CommandLineOptions.getMethodForOption(option[0], MainDoclet.class);
+            Method m = MainDoclet.methodForOption(option[0]);
 
             // It is quite counterintuitive, but "RootDoc.options()" returns ALL options, not only those which
             // qualified by 'optionLength()'.
@@ -326,44 +580,177 @@ class MainDoclet {
 
             int res;
             try {
-                res = CommandLineOptions.applyCommandLineOption(option[0], m, option, 1, null);
+                res = CommandLineOptions.applyCommandLineOption(option[0], m, option, 1, doclet);
             } catch (Exception e) {
                 throw ExceptionUtil.wrap("Parsing command line option \"" + option[0] + "\"", e, IOException.class);
             }
             assert res == option.length;
         }
 
+        doclet.stats = new DocletStats(doclet.printStats || doclet.statsFile != null, null);
+        doclet.stats.record(
+            Phase.OPTIONS,
+            System.nanoTime() - startNanos,
+            startAllocatedBytes == -1 ? -1 : DocletStats.currentThreadAllocatedBytes() - startAllocatedBytes
+        );
+
+        boolean result = doclet.run(rootDoc);
+
+        doclet.reportStats();
+
+        return result;
+    }
+
+    private boolean
+    run(final RootDoc rootDoc) throws IOException {
+
         // Process all specified classes and packages.
-        List<ClassDoc> allClasses = new ArrayList<ClassDoc>();
-        allClasses.addAll(Arrays.asList(rootDoc.specifiedClasses()));
-        for (PackageDoc pd : rootDoc.specifiedPackages()) allClasses.addAll(Arrays.asList(pd.allClasses()));
+        // (A set, because a class may be specified both on its own and as a nested class.)
+        Set<ClassDoc> allClasses = new LinkedHashSet<ClassDoc>();
+        Measurement   m          = this.stats.begin(Phase.CLASS_COLLECTION, rootDoc);
+        try {
+            for (ClassDoc cd : rootDoc.specifiedClasses()) MainDoclet.addClasses(cd, allClasses);
+            for (PackageDoc pd : rootDoc.specifiedPackages()) allClasses.addAll(Arrays.asList(pd.allClasses()));
+        } finally {
+            this.stats.end(m);
+        }
 
         if (allClasses.isEmpty()) {
             System.err.println("No classes specified.");
             throw new IOException();
         }
 
-        // Identify the methods to document.
-        for (ClassDoc cd : allClasses) {
-            for (MethodDoc md : cd.methods()) {
-                String tmp = md.name() + md.flatSignature();
-                if (MainDoclet.method.equals(tmp)) {
-                    MainDoclet.convertDoc(md, rootDoc);
+        if (this.methods.isEmpty()) this.methods.add("main(String[])");
+
+        if (this.formats.isEmpty()) {
+            this.formats.add(OutputFormat.HTML);
+            this.formats.add(OutputFormat.TXT);
+        }
+        for (OutputFormat format : this.formats) this.emitters.put(format, this.emitter(format));
+
+        // The doc comments are rendered on this thread, because the doclet API is not thread-safe; the output files
+        // are written on the writer threads, while this thread renders the next doc comments.
+        File          archiveFile = this.archiveFile;
+        ArchiveWriter archive     = archiveFile == null ? null : new ArchiveWriter(archiveFile, this.outputFiles);
+        this.archive = archive;
+
+        File               helpClassDestination = this.helpClassDestination;
+        HelpClassGenerator helpClasses          = (
+            helpClassDestination == null
+            ? null
+            : new HelpClassGenerator(helpClassDestination, this.outputFiles)
+        );
+        this.helpClasses = helpClasses;
+
+        File                 optionTableDestination = this.optionTableDestination;
+        OptionTableGenerator optionTables           = (
+            optionTableDestination == null
+            ? null
+            : new OptionTableGenerator(optionTableDestination, this.outputFiles)
+        );
+        this.optionTables = optionTables;
+
+        OutputStage outputStage = new OutputStage(this.threads, 2 * this.threads);
+        try {
+            for (ClassDoc cd : allClasses) {
+                for (MethodDoc md : this.methodsToDocument(cd)) {
+                    outputStage.submit(this.convertDoc(md, rootDoc));
                 }
             }
+
+            // Wait until all output files are written, and report the first failure.
+            outputStage.finish();
+
+            if (archive != null) archive.close();
+
+            if (helpClasses != null) helpClasses.generate();
+
+            if (optionTables != null) optionTables.generate();
+        } finally {
+            outputStage.abort();
+            if (archive != null) archive.abort();
+        }
+
+        if (!this.quiet) {
+            System.err.println(
+                this.outputFiles.written() + " output file(s) written, " + this.outputFiles.unchanged() + " unchanged"
+            );
         }
 
         return true;
     }
 
     /**
-     * Generates HTML from the doc comment of the given {@link javax.print.Doc} and stores it a file in the {@link
-     * MainDoclet#setDestination(File) destination directory}.
+     * @return The methods of the class <var>cd</var> that match the {@link #addMethod(String) method patterns}
+     */
+    private List<MethodDoc>
+    methodsToDocument(ClassDoc cd) {
+
+        Measurement m = this.stats.begin(Phase.METHOD_MATCHING, cd);
+        try {
+            List<MethodDoc> result = new ArrayList<MethodDoc>();
+
+            // Checking the method name first saves the computation of the signature for nearly all methods.
+            for (MethodDoc md : cd.methods()) {
+                if (!this.methods.mayMatch(md.name())) continue;
+                if (this.methods.matches(md.name(), md.flatSignature())) result.add(md);
+            }
+
+            return result;
+        } finally {
+            this.stats.end(m);
+        }
+    }
+
+    /**
+     * Prints and/or writes the {@link #stats}, as configured through {@link #setStats()} and {@link
+     * #setStatsFile(File)}.
+     */
+    private void
+    reportStats() throws IOException {
+
+        if (this.printStats) this.stats.printSummary(new PrintWriter(System.err));
+
+        File statsFile = this.statsFile;
+        if (statsFile != null) {
+            IoUtil.outputFilePrintWriter(
+                statsFile,
+                Charset.forName("UTF-8"),
+                new ConsumerWhichThrows<PrintWriter, IOException>() {
+
+                    @Override public void
+                    consume(PrintWriter pw) throws IOException { MainDoclet.this.stats.writeJson(pw); }
+                }
+            );
+        }
+    }
+
+    /**
+     * Adds the class <var>cd</var> and the included classes nested in it to the <var>result</var>. (Unlike {@link
+     * PackageDoc#allClasses()}, {@link RootDoc#specifiedClasses()} does not necessarily return nested classes.)
      */
     private static void
-    convertDoc(Doc doc, RootDoc rootDoc) throws IOException {
+    addClasses(ClassDoc cd, Set<ClassDoc> result) {
+
+        if (!result.add(cd)) return;
+        for (ClassDoc nested : cd.innerClasses()) MainDoclet.addClasses(nested, result);
+    }
+
+    /**
+     * Generates HTML from the doc comment of the given {@link javax.print.Doc}.
+     *
+     * @return A task that emits the document in all {@link #addFormat(String) output formats}, and stores the results
+     *         in files in the {@link MainDoclet#setDestination(File) destination directory} (or in the {@link
+     *         #addPackageDestination(String, File) package's destination directory}, or in the {@link
+     *         #setArchive(File) archive})
+     */
+    private Callable<Void>
+    convertDoc(Doc doc, RootDoc rootDoc) {
 
-    	final String htmlText = MainDoclet.convertDoc2(doc, rootDoc);
+        this.documentedOptions = new LinkedHashSet<DocumentModel.Option>();
+
+        final String                     htmlText = this.convertDoc2(doc, rootDoc);
+        final List<DocumentModel.Option> options  = new ArrayList<DocumentModel.Option>(this.documentedOptions);
 
         final ClassDoc cd = (
             doc.isClass() ? (ClassDoc) doc :
@@ -371,63 +758,269 @@ class MainDoclet {
             (ClassDoc) ExceptionUtil.throW(new AssertionError(String.valueOf(doc)))
         );
 
-        File htmlOutputFile = new File(
-            MainDoclet.destinationDirectory,
-            (
-                cd.qualifiedName().replace('.', File.separatorChar)
-                + "."
-                + doc.name()
-                + (doc instanceof ExecutableMemberDoc ? ((ExecutableMemberDoc) doc).flatSignature() : "")
-                + ".html"
-            )
+        final String packageName   = cd.containingPackage().name();
+        final String className     = MainDoclet.relativeName(cd.qualifiedName(), packageName);
+        final String memberName    = doc.name();
+        final String flatSignature = (
+            doc instanceof ExecutableMemberDoc ? ((ExecutableMemberDoc) doc).flatSignature() : ""
         );
 
-        if (!MainDoclet.quiet) System.err.println("Generating \"" + htmlOutputFile + "\"...");
+        OptionTableGenerator optionTables = this.optionTables;
+        if (optionTables != null && !optionTables.contains(packageName, className)) {
+            try {
+                optionTables.add(packageName, className, this.optionTableOptionsOf(cd, rootDoc));
+            } catch (Longjump l) {
 
-        if (MainDoclet.destinationDirectory.exists() && !htmlOutputFile.getParentFile().isDirectory()) htmlOutputFile.getParentFile().mkdirs();
+                // The problem was already reported; generate no option table for the class.
+                optionTables.add(packageName, className, Collections.<OptionTableGenerator.Option>emptyList());
+            }
+        }
 
-        IoUtil.outputFilePrintWriter(
-            htmlOutputFile,
-            MainDoclet.htmlOutputFileCharset,
-            new ConsumerWhichThrows<PrintWriter, RuntimeException>() {
+        // The path of the output files, relative to the destination directory, without the ".html" / ".txt" / ...
+        final String path = cd.qualifiedName().replace('.', '/') + "." + memberName + flatSignature;
 
-                @Override public void
-                consume(PrintWriter pw) {
+        final File          destinationDirectory = this.destinationDirectory(packageName);
+        final ArchiveWriter archive              = this.archive;
+        final int           documentNumber       = archive == null ? -1 : archive.nextDocumentNumber();
 
-                    pw.println("<html>");
-                    pw.println("  <head>");
-                    if (MainDoclet.charset != null) {
-                        pw.println(
-                            "    <meta http-equiv=\"Content-Type\" content=\"text/html; charset="
-                            + MainDoclet.charset
-                            + "\" />"
-                        );
-                    }
-                    pw.println("  </head>");
-                    pw.println("  <body>");
-                    if (MainDoclet.doctitle != null) {
-                        pw.println("    <h1>" + MainDoclet.doctitle + "</h1>");
-                    }
-                    pw.println(htmlText.replaceAll("(?m)^", "    "));
-                    pw.println("  </body>");
-                    pw.println("</html>");
+        // Report the output files in a deterministic order, although they may be written concurrently.
+        if (!this.quiet) {
+            for (OutputFormat format : this.emitters.keySet()) {
+                if (archive != null) {
+                    System.err.println(
+                        "Adding \"" + path + "." + format.extension + "\" to \"" + this.archiveFile + "\"..."
+                    );
+                } else {
+                    System.err.println(
+                        "Generating \"" + MainDoclet.outputFile(destinationDirectory, path, format) + "\"..."
+                    );
                 }
             }
-        );
+        }
 
-        // Convert generated HTML document into plain text format.
-        File txtOutputFile;
-        {
-            String ofn = htmlOutputFile.getName();
-            assert (ofn.endsWith(".html"));
-            ofn = ofn.substring(0, ofn.length() - 5) + ".txt";
-            txtOutputFile = new File(htmlOutputFile.getParentFile(), ofn);
+        return new Callable<Void>() {
+
+            @Override @Nullable public Void
+            call() throws Exception {
+
+                String htmlDocument;
+
+                Measurement m = MainDoclet.this.stats.begin(Phase.HTML_WRITING, path);
+                try {
+                    htmlDocument = MainDoclet.this.htmlDocument(htmlText);
+                } finally {
+                    MainDoclet.this.stats.end(m);
+                }
+
+                MainDoclet.this.emitDocument(
+                    new DocumentModel(
+                        packageName,
+                        className,
+                        memberName,
+                        flatSignature,
+                        path,
+                        htmlText,
+                        htmlDocument,
+                        options
+                    ),
+                    destinationDirectory,
+                    documentNumber
+                );
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @return The {@link #addPackageDestination(String, File) destination directory of the package}, or, iff none is
+     *         configured, the {@link #setDestination(File) destination directory}
+     */
+    private File
+    destinationDirectory(String packageName) {
+        File result = this.packageDestinations.get(packageName);
+        return result != null ? result : this.destinationDirectory;
+    }
+
+    /**
+     * @param path The '/'-separated path of the output file, relative to the <var>destinationDirectory</var>, without
+     *             the file name extension
+     */
+    private static File
+    outputFile(File destinationDirectory, String path, OutputFormat format) {
+        return new File(destinationDirectory, path.replace('/', File.separatorChar) + "." + format.extension);
+    }
+
+    /**
+     * Emits the <var>document</var> in each of the {@link #addFormat(String) output formats}, and writes the results
+     * to files in the <var>destinationDirectory</var>, or, iff an {@link #setArchive(File) archive} is configured,
+     * puts them into the archive. Also adds the plain-text document to the {@link #setHelpClassDestination(File) help
+     * class}. May be called concurrently.
+     *
+     * @param documentNumber See {@link ArchiveWriter#nextDocumentNumber()}; only relevant iff an archive is configured
+     */
+    private void
+    emitDocument(DocumentModel document, File destinationDirectory, int documentNumber) throws IOException {
+
+        ArchiveWriter       archive = this.archive;
+        Map<String, byte[]> entries = new LinkedHashMap<String, byte[]>();
+
+        if (archive == null) {
+            File parent = MainDoclet.outputFile(destinationDirectory, document.path, OutputFormat.HTML).getParentFile();
+            if (destinationDirectory.exists() && !parent.isDirectory()) parent.mkdirs();
         }
 
-        if (!MainDoclet.quiet) System.err.println("Generating \"" + txtOutputFile + "\"...");
+        String txtDocument = null;
+        for (Map.Entry<OutputFormat, DocumentEmitter> e : this.emitters.entrySet()) {
+            OutputFormat    format  = e.getKey();
+            DocumentEmitter emitter = e.getValue();
 
+            Measurement m = this.stats.begin(format.phase, document.path);
+            try {
+                String content = emitter.emit(document);
+                if (format == OutputFormat.TXT) txtDocument = content;
+
+                if (archive != null) {
+                    entries.put(document.path + "." + format.extension, content.getBytes(emitter.charset()));
+                } else {
+                    this.writeFile(
+                        content,
+                        MainDoclet.outputFile(destinationDirectory, document.path, format),
+                        emitter.charset()
+                    );
+                }
+            } finally {
+                this.stats.end(m);
+            }
+        }
+
+        if (archive != null) archive.put(documentNumber, entries);
+
+        HelpClassGenerator helpClasses = this.helpClasses;
+        if (helpClasses != null) {
+            if (txtDocument == null) {
+                Measurement m = this.stats.begin(Phase.HTML2TXT, document.path);
+                try {
+                    txtDocument = this.emitter(OutputFormat.TXT).emit(document);
+                } finally {
+                    this.stats.end(m);
+                }
+            }
+            helpClasses.add(
+                document.packageName,
+                document.className,
+                document.memberName,
+                document.flatSignature,
+                txtDocument
+            );
+        }
+    }
+
+    /**
+     * @return A new emitter for the given <var>format</var>, configured through the command line options
+     */
+    private DocumentEmitter
+    emitter(OutputFormat format) {
+
+        switch (format) {
+
+        case HTML:
+            return new DocumentEmitter() {
+
+                @Override public Charset
+                charset() { return MainDoclet.this.htmlOutputFileCharset; }
+
+                @Override public String
+                emit(DocumentModel document) { return document.htmlDocument; }
+            };
+
+        case TXT:
+            return new DocumentEmitter() {
+
+                @Override public Charset
+                charset() {
+                    Charset txtOutputFileCharset = MainDoclet.this.txtOutputFileCharset;
+                    return txtOutputFileCharset != null ? txtOutputFileCharset : Charset.defaultCharset();
+                }
+
+                @Override public String
+                emit(DocumentModel document) throws IOException { return MainDoclet.this.html2txt(document.dom()); }
+            };
+
+        case MARKDOWN:
+            return new MarkdownEmitter();
+
+        case MAN:
+            return new ManPageEmitter();
+
+        case JSON:
+            return new JsonEmitter();
+
+        default:
+            throw new AssertionError(format);
+        }
+    }
+
+    /**
+     * @return The <var>qualifiedName</var>, relative to the package, e.g. "{@code Outer.Inner}"
+     */
+    private static String
+    relativeName(String qualifiedName, String packageName) {
+        return packageName.length() == 0 ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+    }
+
+    /**
+     * @return The <var>htmlText</var>, wrapped in an HTML document
+     */
+    String
+    htmlDocument(String htmlText) throws IOException {
+
+        StringWriter sw = new StringWriter();
+        PrintWriter  pw = new PrintWriter(sw);
+
+        pw.println("<html>");
+        pw.println("  <head>");
+        if (this.charset != null) {
+            pw.println("    <meta http-equiv=\"Content-Type\" content=\"text/html; charset=" + this.charset + "\" />");
+        }
+        pw.println("  </head>");
+        pw.println("  <body>");
+        if (this.doctitle != null) {
+            pw.println("    <h1>" + this.doctitle + "</h1>");
+        }
+        new IndentingWriter(pw, "    ").write(htmlText);
+        pw.println();
+        pw.println("  </body>");
+        pw.println("</html>");
+
+        pw.flush();
+        return sw.toString();
+    }
+
+    /**
+     * Writes the <var>content</var> to the <var>file</var>, unless the file already has exactly that content.
+     */
+    void
+    writeFile(String content, File file, Charset charset) throws IOException {
+        this.outputFiles.write(content, file, charset);
+    }
+
+    /**
+     * @return The plain-text equivalent of the <var>htmlDocument</var>
+     */
+    String
+    html2txt(String htmlDocument) throws IOException {
+        return this.html2txt(DocumentModel.parse(htmlDocument));
+    }
+
+    /**
+     * @return The plain-text equivalent of the (parsed) HTML <var>document</var>
+     */
+    private String
+    html2txt(Document document) throws IOException {
         try {
-            MainDoclet.html2Txt.html2txt(htmlOutputFile, txtOutputFile);
+            StringWriter sw = new StringWriter();
+            this.newHtml2Txt().html2txt(document, sw);
+            return sw.toString();
         } catch (IOException ioe) {
             throw ioe;
         } catch (Exception e) {
@@ -435,13 +1028,33 @@ class MainDoclet {
         }
     }
 
+    /**
+     * {@link Html2Txt} is not thread-safe, so each conversion uses its own instance.
+     */
+    private Html2Txt
+    newHtml2Txt() {
+
+        Html2Txt result = new Html2Txt();
+
+        Integer txtPageLeftMarginWidth = this.txtPageLeftMarginWidth;
+        if (txtPageLeftMarginWidth != null) result.setPageLeftMarginWidth(txtPageLeftMarginWidth);
+
+        Integer txtPageRightMarginWidth = this.txtPageRightMarginWidth;
+        if (txtPageRightMarginWidth != null) result.setPageRightMarginWidth(txtPageRightMarginWidth);
+
+        Integer txtPageWidth = this.txtPageWidth;
+        if (txtPageWidth != null) result.setPageWidth(txtPageWidth);
+
+        return result;
+    }
+
     /**
      * Generates HTML from the doc comment of the given {@link javax.print.Doc}, typically a {@link
      * com.sun.javadox.ClassDoc}.
      *
      * @return The generated HTML code
      */
-    private static String
+    String
     convertDoc2(final Doc doc, RootDoc rootDoc) {
 
         final ClassDoc cd = (
@@ -455,6 +1068,17 @@ class MainDoclet {
             @Override protected String
             expandTag(Doc ref, RootDoc rootDoc, Tag tag) throws Longjump {
 
+                Measurement m = MainDoclet.this.stats.begin(Phase.TAG_EXPANSION, tag);
+                try {
+                    return this.expandTag2(ref, rootDoc, tag);
+                } finally {
+                    MainDoclet.this.stats.end(m);
+                }
+            }
+
+            private String
+            expandTag2(Doc ref, RootDoc rootDoc, Tag tag) throws Longjump {
+
                 String tagName = tag.name();
 
                 // Backwards compatibility.
@@ -472,225 +1096,327 @@ class MainDoclet {
 
                 if (MainDoclet.IT_main_commandLineOptions.equals(tagName)) {
 
+                    // Without a group name, only the options WITHOUT a group appear.
+                    String group = tag.inlineTags().length == 0 ? null : tag.text();
+
                     StringBuilder sb = new StringBuilder();
 
-                    // Process this class and all superclasses.
-                    final BooleanProducer first = ProducerUtil.once();
-                    for (ClassDoc c = cd; c != null; c = c.superclass()) {
-
-                        // Process all methods.
-                        for (MethodDoc md : c.methods()) {
-
-                            // We're only interested in those with a "@CommandLineOption" annotation.
-                            AnnotationDesc cload = Annotations.get(md, CommandLineOption.class, rootDoc);
-                            if (cload == null) continue;
-
-                            // Skip options that have NO text and a @see block tag - they are "companions" to other
-                            // options and will be documented TOGETHER with these.
-                            if (MainDoclet.getCompanionOf(md, rootDoc) != null) continue;
-
-                            // Check if the command line option GROUP matches.
-                            GROUP_MATCHES: {
-                                Tag[] clogts = md.tags(MainDoclet.BT_main_commandLineOptionGroup);
-
-                                // Backwards compatibility:
-                                if (clogts.length == 0) {
-
-                                    // Discouraged, because the tag name lacks a ".".
-                                    clogts = md.tags("@command-line-option-group");
-                                    if (clogts.length > 0) {
-                                        rootDoc.printWarning(
-                                            ref.position(),
-                                            (
-                                                "\"@command-line-option-group\" is deprecated; "
-                                                + "use \""
-                                                + MainDoclet.BT_main_commandLineOptionGroup
-                                                + "\"\" instead"
-                                            )
-                                        );
-                                    }
-                                }
-
-                                if (tag.inlineTags().length == 0) {
-                                    if (clogts.length != 0) continue;
-                                } else {
-                                    for (Tag clogt : clogts) {
-                                        if (clogt.text().equals(tag.text())) {
-                                            break GROUP_MATCHES;
-                                        }
-                                    }
-                                    continue;
-                                }
-                            }
-
-                            if (!first.produce()) sb.append('\n');
-
-                            // Render <dt> elements for THIS attribute.
-                            this.attributeTerm(md, sb, rootDoc);
-
-                            // Render <dt> elements for all "companion" attributes (methods that have a bare @see block
-                            // tag pointing to THIS attribute).
-                            for (MethodDoc md2 : c.methods()) {
-
-                                // Notice: "Doc.inlineTags()" tends to print "warning - Tag @see: can't find ... in
-                                // ..."; to debug, set a breakpoint at "DocEnv.warning()".
-
-                                if (MainDoclet.getCompanionOf(md2, rootDoc) == md) this.attributeTerm(md2, sb, rootDoc);
-                            }
-
-                            String dd;
-                            {
-                                Tag[] its = md.inlineTags();
-
-                                // Iff the DOC comment contains a bare "@see" tag, substitute the inline tags
-                                // from the target of the @see tag.
-                                if (its.length == 0) {
-
-                                    SeeTag seeTag = (SeeTag) Tags.optionalTag(md, "see", rootDoc);
-                                    if (seeTag != null) {
-
-                                        Doc target = Html.targetOfSeeTag(seeTag);
-                                        if (target != null) its = target.inlineTags();
-                                    }
-                                }
-
-                                dd = this.fromTags(its, md, rootDoc);
-                            }
-
-                            {
-                                Tag deprecatedTag = Tags.optionalTag(md, "deprecated", rootDoc);
-                                if (deprecatedTag != null) {
-                                    dd = "<i><b>Deprecated</b> - " + this.fromTags(deprecatedTag.inlineTags(), md, rootDoc) + "</i> " + dd;
-                                }
-                            }
-
-                            sb.append("  <dd>\n");
-                            sb.append(dd.replaceAll("(?m)^", "    "));
-                            sb.append("\n  </dd>\n");
+                    // Process the options of this class and all supertypes.
+                    for (ClassDoc c : MainDoclet.this.typeHierarchy.linearizationOf(cd)) {
+
+                        String dtDds = MainDoclet.this.renderedCommandLineOptionsOf(c, group, this, rootDoc);
+                        if (dtDds.length() == 0) continue;
+
+                        for (DocumentModel.Option o : MainDoclet.this.commandLineOptionModelsOf(c, this, rootDoc)) {
+                            if (o.isInGroup(group)) MainDoclet.this.documentedOptions.add(o);
                         }
+
+                        if (sb.length() > 0) sb.append('\n');
+                        sb.append(dtDds);
                     }
 
                     return sb.toString();
                 } else
                 if (MainDoclet.IT_main_maindoc.equals(tagName)) {
-                	try {
-	                	Doc target = Html.hrefToDoc(tag.text(), rootDoc, cd);
-	                	return MainDoclet.convertDoc2(target, rootDoc);
-                	} catch (Longjump l) {}
+                    Doc target = MainDoclet.this.maindocTarget(tag.text(), cd, rootDoc);
+                    if (target != null) return MainDoclet.this.includedDoc(target, tag, rootDoc);
                 }
 
                 return super.expandTag(ref, rootDoc, tag);
             }
+        };
 
-            /**
-             * Appends zero or more {@code <dt>} elements to <var>out</var>.
-             */
-            private void
-            attributeTerm(MethodDoc md, StringBuilder out, RootDoc rootDoc) throws Longjump {
-
-                AnnotationDesc cload = Annotations.get(md, CommandLineOption.class, rootDoc);
-                if (cload == null) return;
-
-                // Determine the attribute name.
-                assert cload != null;
-                String[] names = Annotations.getElementValue(cload, "name", String[].class);
-                if (names == null) {
-                    String n = md.name();
-                    if (n.startsWith("set")) {
-                        n = n.substring(3);
-                    } else
-                    if (n.startsWith("add")) {
-                        n = n.substring(3);
-                    } else
-                    if (n.startsWith("is")) {
-                        n = n.substring(2);
-                    }
-                    names = new String[] { Notations.fromCamelCase(n).toLowerCaseHyphenated() };
-                }
+        this.docsInProgress.add(doc);
+        Measurement m = this.stats.begin(Phase.RENDERING, doc);
+        try {
+            return html.fromTags(doc.inlineTags(), doc, rootDoc);
+        } catch (Longjump e) {
+            return "";
+        } finally {
+            this.stats.end(m);
+            this.docsInProgress.remove(doc);
+        }
+    }
 
-                // Convert the method parameters into command line argument placeholders.
-                String suffix = "";
-                PARAMETERS:
-                for (Parameter p : md.parameters()) {
+    /**
+     * @param tag The {@value #IT_main_maindoc} tag that includes the <var>target</var>
+     * @return    The HTML rendering of the <var>target</var>, or {@code ""} iff the <var>target</var> (directly or
+     *            indirectly) includes itself
+     */
+    private String
+    includedDoc(Doc target, Tag tag, RootDoc rootDoc) {
 
-                    // If there is an "@param" tag for the parameter, use that.
-                    for (Tag paramTag : md.tags(MainDoclet.BT_param)) {
-                        String fs = this.fromTags(paramTag.firstSentenceTags(), md, rootDoc);
-                        if (paramTag.text().startsWith(p.name() + " ")) {
-                            suffix += fs.substring(p.name().length());
-                            continue PARAMETERS;
-                        }
-                    }
+        String result = this.includedDocs.get(target);
+        if (result != null) {
+            this.documentedOptions.addAll(this.includedDocOptions.get(target));
+            return result;
+        }
 
-                    // If it is an enum type, concatenate the constants with "|".
-                    ClassDoc parameterType = p.type().asClassDoc();
-                    if (parameterType != null && parameterType.isEnum()) {
-                        suffix += " ";
-                        Iterator<FieldDoc> it = Arrays.asList(parameterType.enumConstants()).iterator();
-                        for (;;) {
-                            suffix += "<code>" + it.next().name() + "</code>";
-                            if (!it.hasNext()) break;
-                            suffix += "|";
-                        }
-                        continue;
-                    }
+        if (this.docsInProgress.contains(target)) {
+            rootDoc.printWarning(
+                tag.position(),
+                "Cyclic \"" + MainDoclet.IT_main_maindoc + "\" inclusion of \"" + tag.text() + "\"; ignored"
+            );
+            this.brokenCycles++;
+            return "";
+        }
 
-                    // As a last resort, use the parameter name.
-                    suffix += (
-                        " <var>"
-                        + Notations.fromCamelCase(p.name()).toLowerCaseHyphenated()
-                        + "</var>"
-                    );
+        int brokenCycles = this.brokenCycles;
+
+        // Collect the options that the target documents separately, so that they can be cached with the rendering.
+        Set<DocumentModel.Option> documentedOptions = this.documentedOptions;
+        Set<DocumentModel.Option> targetOptions     = new LinkedHashSet<DocumentModel.Option>();
+        this.documentedOptions = targetOptions;
+        try {
+            result = this.convertDoc2(target, rootDoc);
+        } finally {
+            this.documentedOptions = documentedOptions;
+        }
+        documentedOptions.addAll(targetOptions);
+
+        if (this.brokenCycles == brokenCycles) {
+            this.includedDocs.put(target, result);
+            this.includedDocOptions.put(target, targetOptions);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The command line options declared by the class <var>cd</var> (but not by its supertypes)
+     */
+    List<CommandLineOptionDoc>
+    declaredCommandLineOptionsOf(ClassDoc cd, RootDoc rootDoc) throws Longjump {
+
+        List<CommandLineOptionDoc> result = this.declaredCommandLineOptions.get(cd);
+        if (result == null) {
+            result = CommandLineOptionDoc.declaredBy(cd, this.seeTagTargets, rootDoc);
+            this.declaredCommandLineOptions.put(cd, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param group {@code null} means "options without a {@value #BT_main_commandLineOptionGroup} block tag"
+     * @return      {@code <dt>} / {@code <dd>} pairs for the command line options of the given <var>group</var> that
+     *              are declared by the class <var>cd</var> (but not by its supertypes)
+     */
+    String
+    renderedCommandLineOptionsOf(ClassDoc cd, @Nullable String group, Html html, RootDoc rootDoc) throws Longjump {
+
+        Map<String, String> byGroup = this.renderedCommandLineOptions.get(cd);
+        if (byGroup == null) {
+            byGroup = new HashMap<String, String>();
+            this.renderedCommandLineOptions.put(cd, byGroup);
+        }
+
+        {
+            String result = byGroup.get(group);
+            if (result != null) return result;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (DocumentModel.Option option : this.commandLineOptionModelsOf(cd, html, rootDoc)) {
+
+            // Check if the command line option GROUP matches.
+            if (!option.isInGroup(group)) continue;
+
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(option.toHtml());
+        }
+
+        String result = sb.toString();
+        byGroup.put(group, result);
+        return result;
+    }
+
+    /**
+     * @return The command line options of the class <var>cd</var> and its supertypes, for the {@link
+     *         #setOptionTableDestination(File) option table}
+     */
+    private List<OptionTableGenerator.Option>
+    optionTableOptionsOf(ClassDoc cd, RootDoc rootDoc) throws Longjump {
+
+        List<OptionTableGenerator.Option> result = new ArrayList<OptionTableGenerator.Option>();
+        for (ClassDoc c : this.typeHierarchy.linearizationOf(cd)) {
+            for (CommandLineOptionDoc option : this.declaredCommandLineOptionsOf(c, rootDoc)) {
+                MethodDoc md = option.methodDoc;
+
+                List<OptionTableGenerator.Parameter> parameters = new ArrayList<OptionTableGenerator.Parameter>();
+                for (Parameter p : md.parameters()) {
+                    Type     t   = p.type();
+                    ClassDoc tcd = t.asClassDoc();
+                    parameters.add(new OptionTableGenerator.Parameter(
+                        t.qualifiedTypeName() + t.dimension().replace("...", "[]"),
+                        tcd != null && tcd.isEnum() && t.dimension().length() == 0
+                    ));
                 }
 
-                // Examine the "cardinality" element of the "@CommandLineOption" annotation.
-                Cardinality cardinality = Cardinality.OPTIONAL;
-                for (ElementValuePair ev : cload.elementValues()) {
-                    if (ev.element().name().equals("cardinality")) {
-                        cardinality = Cardinality.valueOf(((FieldDoc) ev.value().value()).name());
-                    }
+                List<String> thrownTypes = new ArrayList<String>();
+                for (Type t : md.thrownExceptionTypes()) thrownTypes.add(t.qualifiedTypeName());
+
+                result.add(new OptionTableGenerator.Option(
+                    Arrays.asList(option.names),
+                    option.cardinality,
+                    md.name(),
+                    parameters,
+                    thrownTypes
+                ));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The models of the command line options declared by the class <var>cd</var> (but not by its
+     *         supertypes), except the "companions", which are merged into the options they accompany
+     */
+    List<DocumentModel.Option>
+    commandLineOptionModelsOf(ClassDoc cd, Html html, RootDoc rootDoc) throws Longjump {
+
+        List<DocumentModel.Option> result = this.commandLineOptionModels.get(cd);
+        if (result != null) return result;
+
+        result = new ArrayList<DocumentModel.Option>();
+        for (CommandLineOptionDoc option : this.declaredCommandLineOptionsOf(cd, rootDoc)) {
+
+            // Skip options that have NO text and a @see block tag - they are "companions" to other options and will be
+            // documented TOGETHER with these.
+            if (option.isCompanion) continue;
+
+            StringBuilder terms = new StringBuilder();
+            List<String>  names = new ArrayList<String>();
+
+            // Render <dt> elements for THIS attribute.
+            MainDoclet.attributeTerm(option, terms, html, rootDoc);
+            for (String name : option.names) names.add(MainDoclet.commandLineOptionName(name));
+
+            // Render <dt> elements for all "companion" attributes (methods that have a bare @see block tag pointing to
+            // THIS attribute).
+            for (CommandLineOptionDoc companion : option.companions) {
+                MainDoclet.attributeTerm(companion, terms, html, rootDoc);
+                for (String name : companion.names) names.add(MainDoclet.commandLineOptionName(name));
+            }
+
+            MethodDoc md = option.methodDoc;
+
+            String dd;
+            {
+                Tag[] its = md.inlineTags();
+
+                // Iff the DOC comment contains a bare "@see" tag, substitute the inline tags from the target of the
+                // @see tag.
+                if (its.length == 0) {
+                    Doc target = MainDoclet.seeTagTarget(md, this.seeTagTargets, rootDoc);
+                    if (target != null) its = target.inlineTags();
                 }
 
-                switch (cardinality) {
-                case OPTIONAL:     break;
-                case MANDATORY:    suffix += " (mandatory)";           break;
-                case ONCE_OR_MORE: suffix += " (once or multiple)";    break;
-                case ANY:          suffix += " (may appear multiply)"; break;
-                default:           throw new AssertionError(cardinality);
+                dd = html.fromTags(its, md, rootDoc);
+            }
+
+            {
+                Tag deprecatedTag = Tags.optionalTag(md, "deprecated", rootDoc);
+                if (deprecatedTag != null) {
+                    dd = (
+                        "<i><b>Deprecated</b> - "
+                        + html.fromTags(deprecatedTag.inlineTags(), md, rootDoc)
+                        + "</i> "
+                        + dd
+                    );
                 }
+            }
+
+            result.add(new DocumentModel.Option(names, option.groups, option.cardinality, terms.toString(), dd));
+        }
+
+        this.commandLineOptionModels.put(cd, result);
+        return result;
+    }
 
-                for (Tag commentTag : md.tags(MainDoclet.BT_main_commandLineOptionComment)) {
-                    suffix += ' ' + this.fromTags(commentTag.firstSentenceTags(), md, rootDoc);
+    /**
+     * Appends zero or more {@code <dt>} elements to <var>out</var>.
+     */
+    static void
+    attributeTerm(CommandLineOptionDoc option, StringBuilder out, Html html, RootDoc rootDoc) throws Longjump {
+
+        MethodDoc md = option.methodDoc;
+
+        // Convert the method parameters into command line argument placeholders.
+        String suffix = "";
+        PARAMETERS:
+        for (Parameter p : md.parameters()) {
+
+            // If there is an "@param" tag for the parameter, use that.
+            for (Tag paramTag : md.tags(MainDoclet.BT_param)) {
+                String fs = html.fromTags(paramTag.firstSentenceTags(), md, rootDoc);
+                if (paramTag.text().startsWith(p.name() + " ")) {
+                    suffix += fs.substring(p.name().length());
+                    continue PARAMETERS;
                 }
+            }
 
-                for (String name : names) {
-                    if (!name.startsWith("-")) {
-                        name = (name.length() == 1 ? "-" : "--") + name;
-                    }
-                    out.append("  <dt><code>" + name + "</code>" + suffix + "</dt>\n");
+            // If it is an enum type, concatenate the constants with "|".
+            ClassDoc parameterType = p.type().asClassDoc();
+            if (parameterType != null && parameterType.isEnum()) {
+                suffix += " ";
+                Iterator<FieldDoc> it = Arrays.asList(parameterType.enumConstants()).iterator();
+                for (;;) {
+                    suffix += "<code>" + it.next().name() + "</code>";
+                    if (!it.hasNext()) break;
+                    suffix += "|";
                 }
+                continue;
             }
-        };
 
-        try {
-            return html.fromTags(doc.inlineTags(), doc, rootDoc);
-        } catch (Longjump e) {
-            return "";
+            // As a last resort, use the parameter name.
+            suffix += (
+                " <var>"
+                + Notations.fromCamelCase(p.name()).toLowerCaseHyphenated()
+                + "</var>"
+            );
+        }
+
+        Cardinality cardinality = option.cardinality;
+        switch (cardinality) {
+        case OPTIONAL:     break;
+        case MANDATORY:    suffix += " (mandatory)";           break;
+        case ONCE_OR_MORE: suffix += " (once or multiple)";    break;
+        case ANY:          suffix += " (may appear multiply)"; break;
+        default:           throw new AssertionError(cardinality);
+        }
+
+        for (Tag commentTag : md.tags(MainDoclet.BT_main_commandLineOptionComment)) {
+            suffix += ' ' + html.fromTags(commentTag.firstSentenceTags(), md, rootDoc);
         }
+
+        for (String name : option.names) {
+            out.append("  <dt><code>" + MainDoclet.commandLineOptionName(name) + "</code>" + suffix + "</dt>\n");
+        }
+    }
+
+    /**
+     * @return The <var>name</var> of a command line option, with a leading "{@code -}" (for a one-letter name) or
+     *         "{@code --}" iff it has none
+     */
+    private static String
+    commandLineOptionName(String name) {
+        return name.startsWith("-") ? name : (name.length() == 1 ? "-" : "--") + name;
     }
 
     /**
-     * @return {@code null} iff the <var>source</var> is not a companion of another attribute of the same class
+     * @param seeTagTargets Caches the targets of the "{@code @see}" tags, see {@link #seeTagTarget(MethodDoc,
+     *                      ReferenceCache, RootDoc)}
+     * @return              {@code null} iff the <var>source</var> is not a companion of another attribute of the same
+     *                      class
      */
     @Nullable protected static MethodDoc
-    getCompanionOf(MethodDoc source, RootDoc rootDoc) throws Longjump {
+    getCompanionOf(MethodDoc source, ReferenceCache<ClassDoc, Doc> seeTagTargets, RootDoc rootDoc) throws Longjump {
 
         if (source.inlineTags().length != 0) return null;
 
-        SeeTag seeTag = (SeeTag) Tags.optionalTag(source, "see", rootDoc);
-        if (seeTag == null) return null;
-
-        Doc target = Html.targetOfSeeTag(seeTag);
+        Doc target = MainDoclet.seeTagTarget(source, seeTagTargets, rootDoc);
         if (
             target instanceof MethodDoc
             && Annotations.get((MethodDoc) target, CommandLineOption.class, rootDoc) != null
@@ -698,4 +1424,46 @@ class MainDoclet {
 
         return null;
     }
+
+    /**
+     * @return The target of the "{@code @see}" tag of the <var>md</var>, or {@code null} iff it has none, or the
+     *         target cannot be resolved; resolved only once per class, tag text and doclet run
+     */
+    @Nullable static Doc
+    seeTagTarget(MethodDoc md, ReferenceCache<ClassDoc, Doc> seeTagTargets, RootDoc rootDoc) throws Longjump {
+
+        SeeTag seeTag = (SeeTag) Tags.optionalTag(md, "see", rootDoc);
+        if (seeTag == null) return null;
+
+        ClassDoc context   = md.containingClass();
+        String   reference = seeTag.text();
+        if (seeTagTargets.containsKey(context, reference)) return seeTagTargets.get(context, reference);
+
+        Doc result = Html.targetOfSeeTag(seeTag);
+        seeTagTargets.put(context, reference, result);
+        return result;
+    }
+
+    /**
+     * @return The target of the {@value #IT_main_maindoc} tag with the given <var>text</var> in the class
+     *         <var>cd</var>, or {@code null} iff it cannot be resolved (which is reported only once per class, tag
+     *         text and doclet run)
+     */
+    @Nullable private Doc
+    maindocTarget(String text, ClassDoc cd, RootDoc rootDoc) {
+
+        if (this.maindocTargets.containsKey(cd, text)) return this.maindocTargets.get(cd, text);
+
+        Doc result;
+        try {
+            result = Html.hrefToDoc(text, rootDoc, cd);
+        } catch (Longjump l) {
+
+            // The problem was already reported.
+            result = null;
+        }
+
+        this.maindocTargets.put(cd, text, result);
+        return result;
+    }
 }
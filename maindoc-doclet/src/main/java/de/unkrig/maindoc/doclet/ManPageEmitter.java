@@ -0,0 +1,304 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Emits a document as a man page, in the troff "{@code -man}" macro format, e.g. for "{@code man
+ * ./Tool.main(String[]).1}".
+ * <p>
+ *   "{@code <h1>}" and "{@code <h2>}" elements become sections, the other headings subsections, and definition lists
+ *   (which the command line options are documented in) tagged paragraphs.
+ * </p>
+ */
+public final
+class ManPageEmitter implements DocumentEmitter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override public Charset
+    charset() { return ManPageEmitter.UTF_8; }
+
+    @Override public String
+    emit(DocumentModel document) throws IOException {
+
+        StringBuilder sb = new StringBuilder(".TH ");
+        ManPageEmitter.quote(document.className + "." + document.memberName, sb);
+        sb.append(" 1\n");
+
+        ManPageEmitter.blocks(HtmlDom.body(document.dom()), ".PP", false, sb);
+
+        return sb.toString();
+    }
+
+    /**
+     * Appends the children of the <var>parent</var>, as troff blocks.
+     *
+     * @param paragraphMacro The macro that starts a paragraph, e.g. "{@code .IP}" to keep the indentation of a tagged
+     *                       paragraph
+     * @param continuation   Whether the first paragraph continues the current one, e.g. the body of a tagged
+     *                       paragraph, and thus needs no <var>paragraphMacro</var>
+     */
+    private static void
+    blocks(Node parent, String paragraphMacro, boolean continuation, StringBuilder sb) {
+
+        StringBuilder inline = new StringBuilder();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+
+            if (!HtmlDom.isBlock(n)) {
+                ManPageEmitter.inline(n, inline);
+                continue;
+            }
+
+            if (ManPageEmitter.paragraph(inline, paragraphMacro, continuation, sb)) continuation = false;
+
+            if (ManPageEmitter.block((Element) n, paragraphMacro, continuation, sb)) continuation = false;
+        }
+        ManPageEmitter.paragraph(inline, paragraphMacro, continuation, sb);
+    }
+
+    /**
+     * Iff the <var>inline</var> content is not blank: Appends it, as a paragraph. Then clears the <var>inline</var>
+     * content.
+     *
+     * @return Whether anything was appended
+     */
+    private static boolean
+    paragraph(StringBuilder inline, String paragraphMacro, boolean continuation, StringBuilder sb) {
+
+        String paragraph = HtmlDom.normalizeLines(inline.toString());
+        inline.setLength(0);
+        if (paragraph.length() == 0) return false;
+
+        if (!continuation) sb.append(paragraphMacro).append('\n');
+        sb.append(paragraph).append('\n');
+        return true;
+    }
+
+    /**
+     * @return Whether anything was appended
+     */
+    private static boolean
+    block(Element e, String paragraphMacro, boolean continuation, StringBuilder sb) {
+
+        int    length = sb.length();
+        String name   = HtmlDom.name(e);
+
+        int level = HtmlDom.headingLevel(e);
+        if (level > 0) {
+            sb.append(level <= 2 ? ".SH " : ".SS ");
+            ManPageEmitter.quote(ManPageEmitter.inlineText(e), sb);
+            sb.append('\n');
+        } else
+        if ("pre".equals(name)) {
+            if (!continuation) sb.append(paragraphMacro).append('\n');
+            sb.append(".nf\n");
+            for (String line : HtmlDom.trimLineBreaks(e.getTextContent()).split("\r?\n")) {
+                ManPageEmitter.escape(line, sb);
+                sb.append('\n');
+            }
+            sb.append(".fi\n");
+        } else
+        if (("ul".equals(name) || "ol".equals(name) || "dl".equals(name)) && ".IP".equals(paragraphMacro)) {
+
+            // A nested list must not reset the indentation of the enclosing list item or definition.
+            sb.append(".RS\n");
+            ManPageEmitter.block(e, ".PP", false, sb);
+            sb.append(".RE\n");
+        } else
+        if ("ul".equals(name) || "ol".equals(name)) {
+            int no = 1;
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (!(n instanceof Element) || !"li".equals(HtmlDom.name((Element) n))) continue;
+
+                sb.append("ul".equals(name) ? ".IP \\(bu 2\n" : ".IP " + no++ + ". 4\n");
+                ManPageEmitter.blocks(n, ".IP", true, sb);
+            }
+        } else
+        if ("dl".equals(name)) {
+
+            // Each term becomes the tag of a tagged paragraph (further terms are appended with "TQ"), and each
+            // definition its body.
+            boolean previousTerm = false;
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (!(n instanceof Element)) continue;
+
+                String childName = HtmlDom.name((Element) n);
+                if ("dt".equals(childName)) {
+                    sb.append(previousTerm ? ".TQ\n" : ".TP\n").append(ManPageEmitter.inlineText(n)).append('\n');
+                    previousTerm = true;
+                } else
+                if ("dd".equals(childName)) {
+                    ManPageEmitter.blocks(n, ".IP", previousTerm, sb);
+                    previousTerm = false;
+                }
+            }
+        } else
+        if ("blockquote".equals(name)) {
+            sb.append(".RS\n");
+            ManPageEmitter.blocks(e, ".PP", false, sb);
+            sb.append(".RE\n");
+        } else
+        if ("table".equals(name)) {
+            if (!continuation) sb.append(paragraphMacro).append('\n');
+            sb.append(".nf\n");
+            ManPageEmitter.rows(e, sb);
+            sb.append(".fi\n");
+        } else
+        if (!"hr".equals(name)) {
+
+            // "<p>", "<div>", "<dt>", "<dd>", "<li>", ... ("<hr>" has no equivalent.)
+            ManPageEmitter.blocks(e, paragraphMacro, continuation, sb);
+        }
+
+        return sb.length() > length;
+    }
+
+    /**
+     * Appends the rows of the <var>table</var> (and of its "{@code <thead>}", "{@code <tbody>}" and "{@code
+     * <tfoot>}" elements), one line per row, with the cells separated by tabs.
+     */
+    private static void
+    rows(Element table, StringBuilder sb) {
+
+        for (Node n = table.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (!(n instanceof Element)) continue;
+
+            if (!"tr".equals(HtmlDom.name((Element) n))) {
+                ManPageEmitter.rows((Element) n, sb);
+                continue;
+            }
+
+            boolean first = true;
+            for (Node cell = n.getFirstChild(); cell != null; cell = cell.getNextSibling()) {
+                if (!(cell instanceof Element)) continue;
+                if (!first) sb.append('\t');
+                sb.append(ManPageEmitter.inlineText(cell).replace("\n.br\n", " "));
+                first = false;
+            }
+            sb.append('\n');
+        }
+    }
+
+    /**
+     * @return The content of the <var>node</var>, rendered as one paragraph
+     */
+    private static String
+    inlineText(Node node) {
+
+        StringBuilder sb = new StringBuilder();
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) ManPageEmitter.inline(n, sb);
+
+        return HtmlDom.normalizeLines(sb.toString());
+    }
+
+    private static void
+    inline(Node node, StringBuilder sb) {
+
+        switch (node.getNodeType()) {
+
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            ManPageEmitter.escape(HtmlDom.collapseWhitespace(node.getNodeValue()), sb);
+            return;
+
+        case Node.ELEMENT_NODE:
+            break;
+
+        default:
+            return;
+        }
+
+        Element e    = (Element) node;
+        String  name = HtmlDom.name(e);
+
+        String font = (
+            "code".equals(name) || "tt".equals(name) || "kbd".equals(name) || "samp".equals(name)
+            || "b".equals(name) || "strong".equals(name) ? "\\fB" :
+            "var".equals(name) || "i".equals(name) || "em".equals(name) || "cite".equals(name) || "dfn".equals(name)
+            ? "\\fI" :
+            null
+        );
+
+        if ("br".equals(name)) {
+            sb.append("\n.br\n");
+        } else
+        if ("img".equals(name)) {
+            ManPageEmitter.escape(e.getAttribute("alt"), sb);
+        } else
+        {
+            if (font != null) sb.append(font);
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) ManPageEmitter.inline(n, sb);
+            if (font != null) sb.append("\\fP");
+        }
+    }
+
+    /**
+     * Appends the <var>text</var> to <var>sb</var>, with the characters escaped that troff would interpret. (A
+     * period or an apostrophe after a space is escaped, too, because the space may become a line break.)
+     */
+    private static void
+    escape(String text, StringBuilder sb) {
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+
+            case '\\':
+                sb.append("\\e");
+                break;
+
+            case '-':
+                sb.append("\\-");
+                break;
+
+            case '.':
+            case '\'':
+                if (i == 0 || text.charAt(i - 1) == ' ') sb.append("\\&");
+                sb.append(c);
+                break;
+
+            default:
+                sb.append(c);
+            }
+        }
+    }
+
+    /**
+     * Appends the <var>text</var> as a macro argument, i.e. in double quotes.
+     */
+    private static void
+    quote(String text, StringBuilder sb) {
+        sb.append('"').append(text.replace("\"", "\\(dq").replace("\n.br\n", " ")).append('"');
+    }
+}
@@ -0,0 +1,343 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * Emits a document in Markdown format (as understood by CommonMark and GitHub), e.g. for a README.
+ * <p>
+ *   Definition lists, which Markdown lacks, and which the command line options are documented in, become bullet
+ *   lists of the terms, each followed by its (indented) definition.
+ * </p>
+ */
+public final
+class MarkdownEmitter implements DocumentEmitter {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Override public Charset
+    charset() { return MarkdownEmitter.UTF_8; }
+
+    @Override public String
+    emit(DocumentModel document) throws IOException {
+        String result = MarkdownEmitter.blocks(HtmlDom.body(document.dom()));
+        return result.length() == 0 ? "" : result + "\n";
+    }
+
+    /**
+     * @return The children of the <var>parent</var>, as Markdown blocks, separated by empty lines
+     */
+    private static String
+    blocks(Node parent) {
+
+        List<String>  blocks = new ArrayList<String>();
+        StringBuilder inline = new StringBuilder();
+        for (Node n = parent.getFirstChild(); n != null; n = n.getNextSibling()) {
+
+            if (!HtmlDom.isBlock(n)) {
+                MarkdownEmitter.inline(n, inline);
+                continue;
+            }
+
+            MarkdownEmitter.addParagraph(inline, blocks);
+
+            String block = MarkdownEmitter.block((Element) n);
+            if (block.length() > 0) blocks.add(block);
+        }
+        MarkdownEmitter.addParagraph(inline, blocks);
+
+        StringBuilder sb = new StringBuilder();
+        for (String block : blocks) {
+            if (sb.length() > 0) sb.append("\n\n");
+            sb.append(block);
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Iff the <var>inline</var> content is not blank: Adds it, as a paragraph, to the <var>blocks</var>. Then clears
+     * the <var>inline</var> content.
+     */
+    private static void
+    addParagraph(StringBuilder inline, List<String> blocks) {
+
+        String paragraph = MarkdownEmitter.normalize(inline.toString());
+        inline.setLength(0);
+
+        if (paragraph.length() > 0) blocks.add(paragraph);
+    }
+
+    private static String
+    block(Element e) {
+
+        String name = HtmlDom.name(e);
+
+        int level = HtmlDom.headingLevel(e);
+        if (level > 0) return "######".substring(6 - level) + " " + MarkdownEmitter.inlineText(e);
+
+        if ("pre".equals(name)) {
+            String text  = HtmlDom.trimLineBreaks(e.getTextContent());
+            String fence = text.contains("```") ? "~~~" : "```";
+            return fence + "\n" + text + "\n" + fence;
+        }
+
+        if ("ul".equals(name) || "ol".equals(name)) {
+
+            StringBuilder sb = new StringBuilder();
+            int           no = 1;
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (!(n instanceof Element) || !"li".equals(HtmlDom.name((Element) n))) continue;
+
+                String bullet = "ul".equals(name) ? "- " : no++ + ". ";
+                String item   = MarkdownEmitter.blocks(n);
+
+                // Continuation lines are indented to the content of the first line.
+                int nl = item.indexOf('\n');
+                if (nl != -1) {
+                    item = item.substring(0, nl) + HtmlDom.prefixLines(item.substring(nl), bullet.replaceAll(".", " "));
+                }
+
+                if (sb.length() > 0) sb.append('\n');
+                sb.append(bullet).append(item);
+            }
+
+            return sb.toString();
+        }
+
+        if ("dl".equals(name)) {
+
+            // Each term becomes a bullet, and each definition a paragraph within the bullet of the preceding term.
+            StringBuilder sb           = new StringBuilder();
+            boolean       previousTerm = false;
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) {
+                if (!(n instanceof Element)) continue;
+
+                String childName = HtmlDom.name((Element) n);
+                if ("dt".equals(childName)) {
+                    if (sb.length() > 0) sb.append(previousTerm ? "\n" : "\n\n");
+                    sb.append("* ").append(MarkdownEmitter.inlineText(n));
+                    previousTerm = true;
+                } else
+                if ("dd".equals(childName)) {
+                    String definition = MarkdownEmitter.blocks(n);
+                    if (definition.length() == 0) continue;
+                    if (sb.length() > 0) sb.append("\n\n");
+                    sb.append(HtmlDom.prefixLines(definition, "  "));
+                    previousTerm = false;
+                }
+            }
+
+            return sb.toString();
+        }
+
+        if ("dt".equals(name)) return "* " + MarkdownEmitter.inlineText(e);
+
+        if ("blockquote".equals(name)) return HtmlDom.prefixLines(MarkdownEmitter.blocks(e), "> ");
+
+        if ("hr".equals(name)) return "---";
+
+        if ("table".equals(name)) return MarkdownEmitter.table(e);
+
+        // "<p>", "<div>", "<dd>", "<li>", ...
+        return MarkdownEmitter.blocks(e);
+    }
+
+    /**
+     * Renders the rows of the table <var>e</var>, with the first row as the header row.
+     */
+    private static String
+    table(Element e) {
+
+        List<List<String>> rows = new ArrayList<List<String>>();
+        MarkdownEmitter.rows(e, rows);
+        if (rows.isEmpty()) return "";
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < rows.size(); i++) {
+            if (i > 0) sb.append('\n');
+
+            sb.append('|');
+            for (String cell : rows.get(i)) sb.append(' ').append(cell).append(" |");
+
+            if (i == 0) {
+                sb.append("\n|");
+                for (int j = 0; j < rows.get(0).size(); j++) sb.append("---|");
+            }
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Adds the rows of the <var>table</var> (and of its "{@code <thead>}", "{@code <tbody>}" and "{@code <tfoot>}"
+     * elements) to the <var>result</var>.
+     */
+    private static void
+    rows(Element table, List<List<String>> result) {
+
+        for (Node n = table.getFirstChild(); n != null; n = n.getNextSibling()) {
+            if (!(n instanceof Element)) continue;
+
+            if (!"tr".equals(HtmlDom.name((Element) n))) {
+                MarkdownEmitter.rows((Element) n, result);
+                continue;
+            }
+
+            List<String> row = new ArrayList<String>();
+            for (Node cell = n.getFirstChild(); cell != null; cell = cell.getNextSibling()) {
+                if (cell instanceof Element) {
+                    row.add(MarkdownEmitter.inlineText(cell).replace("\\\n", " ").replace("|", "\\|"));
+                }
+            }
+            result.add(row);
+        }
+    }
+
+    /**
+     * @return The content of the <var>node</var>, rendered as one paragraph
+     */
+    private static String
+    inlineText(Node node) {
+
+        StringBuilder sb = new StringBuilder();
+        for (Node n = node.getFirstChild(); n != null; n = n.getNextSibling()) MarkdownEmitter.inline(n, sb);
+
+        return MarkdownEmitter.normalize(sb.toString());
+    }
+
+    private static String
+    normalize(String inline) {
+
+        String result = HtmlDom.normalizeLines(inline);
+
+        // A hard line break at the end of a paragraph is meaningless.
+        while (result.endsWith("\\")) result = result.substring(0, result.length() - 1).trim();
+
+        return result;
+    }
+
+    private static void
+    inline(Node node, StringBuilder sb) {
+
+        switch (node.getNodeType()) {
+
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+            MarkdownEmitter.escape(HtmlDom.collapseWhitespace(node.getNodeValue()), sb);
+            return;
+
+        case Node.ELEMENT_NODE:
+            break;
+
+        default:
+            return;
+        }
+
+        Element e    = (Element) node;
+        String  name = HtmlDom.name(e);
+
+        if ("code".equals(name) || "tt".equals(name) || "kbd".equals(name) || "samp".equals(name)) {
+            String text = HtmlDom.collapseWhitespace(e.getTextContent());
+            if (text.trim().length() == 0) {
+                sb.append(text);
+            } else {
+                String ticks = text.contains("`") ? "``" : "`";
+                String space = text.startsWith("`") || text.endsWith("`") ? " " : "";
+                sb.append(ticks).append(space).append(text).append(space).append(ticks);
+            }
+        } else
+        if ("var".equals(name) || "i".equals(name) || "em".equals(name) || "cite".equals(name) || "dfn".equals(name)) {
+            MarkdownEmitter.emphasis(e, "*", sb);
+        } else
+        if ("b".equals(name) || "strong".equals(name)) {
+            MarkdownEmitter.emphasis(e, "**", sb);
+        } else
+        if ("br".equals(name)) {
+            sb.append("\\\n");
+        } else
+        if ("a".equals(name)) {
+
+            // Only absolute links make sense outside of the JAVADOC-generated documentation.
+            String href  = e.getAttribute("href");
+            String label = MarkdownEmitter.inlineText(e);
+            if (href.contains("://") || href.startsWith("mailto:")) {
+                sb.append('[').append(label).append("](").append(href).append(')');
+            } else {
+                sb.append(label);
+            }
+        } else
+        if ("img".equals(name)) {
+            MarkdownEmitter.escape(e.getAttribute("alt"), sb);
+        } else
+        {
+            for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) MarkdownEmitter.inline(n, sb);
+        }
+    }
+
+    /**
+     * Appends the content of the element <var>e</var>, enclosed in the <var>marker</var>s; any whitespace at the
+     * beginning and the end of the content goes outside of the markers, because Markdown requires that.
+     */
+    private static void
+    emphasis(Element e, String marker, StringBuilder sb) {
+
+        StringBuilder content = new StringBuilder();
+        for (Node n = e.getFirstChild(); n != null; n = n.getNextSibling()) MarkdownEmitter.inline(n, content);
+
+        String s       = content.toString();
+        String trimmed = s.trim();
+        if (trimmed.length() == 0) {
+            sb.append(s);
+            return;
+        }
+
+        if (s.startsWith(" ")) sb.append(' ');
+        sb.append(marker).append(trimmed).append(marker);
+        if (s.endsWith(" ")) sb.append(' ');
+    }
+
+    /**
+     * Appends the <var>text</var> to <var>sb</var>, with the characters escaped that Markdown would interpret.
+     */
+    private static void
+    escape(String text, StringBuilder sb) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ("\\`*_[]<".indexOf(c) != -1) sb.append('\\');
+            sb.append(c);
+        }
+    }
+}
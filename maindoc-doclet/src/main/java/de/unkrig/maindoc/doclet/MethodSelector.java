@@ -0,0 +1,188 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Selects methods by a set of patterns like "{@code main(String[])}", "{@code start(RootDoc)}", "{@code execute*}" or
+ * "{@code *(String[])}".
+ * <p>
+ *   Each pattern consists of a method name pattern, optionally followed by a parenthesized parameter list pattern
+ *   in {@link com.sun.javadoc.ExecutableMemberDoc#flatSignature() flat signature} format. In both parts, "{@code *}"
+ *   matches any sequence of characters, and "{@code ?}" matches any single character. A pattern without a parameter
+ *   list matches methods with any parameters. Whitespace in parameter lists is not significant.
+ * </p>
+ * <p>
+ *   Patterns with a literal method name (which is the usual case) are indexed by that name, so that {@link
+ *   #mayMatch(String)} can reject most methods before their signatures are even computed.
+ * </p>
+ */
+public final
+class MethodSelector {
+
+    /** The patterns with a literal method name, by method name. */
+    private final Map<String, List<MethodPattern>> patternsByName = new HashMap<String, List<MethodPattern>>();
+
+    /** The patterns with wildcards in the method name. */
+    private final List<MethodPattern> wildcardNamePatterns = new ArrayList<MethodPattern>();
+
+    /**
+     * Adds another pattern; see {@link MethodSelector}.
+     */
+    public void
+    add(String pattern) {
+
+        MethodPattern mp = new MethodPattern(pattern);
+
+        String literalName = mp.literalName;
+        if (literalName == null) {
+            this.wildcardNamePatterns.add(mp);
+            return;
+        }
+
+        List<MethodPattern> l = this.patternsByName.get(literalName);
+        if (l == null) this.patternsByName.put(literalName, (l = new ArrayList<MethodPattern>()));
+        l.add(mp);
+    }
+
+    /**
+     * @return Whether no patterns were added yet
+     */
+    public boolean
+    isEmpty() {
+        return this.patternsByName.isEmpty() && this.wildcardNamePatterns.isEmpty();
+    }
+
+    /**
+     * @return {@code false} iff no method with the given name can match (regardless of its signature)
+     */
+    public boolean
+    mayMatch(String methodName) {
+
+        if (this.patternsByName.containsKey(methodName)) return true;
+
+        for (MethodPattern mp : this.wildcardNamePatterns) {
+            if (mp.namePattern.matcher(methodName).matches()) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @param flatSignature E.g. "{@code (String[])}"
+     * @return              Whether any of the patterns matches the method with the given name and signature
+     */
+    public boolean
+    matches(String methodName, String flatSignature) {
+
+        String normalizedSignature = MethodSelector.removeWhitespace(flatSignature);
+
+        List<MethodPattern> l = this.patternsByName.get(methodName);
+        if (l != null) {
+            for (MethodPattern mp : l) {
+                if (mp.signatureMatches(normalizedSignature)) return true;
+            }
+        }
+
+        for (MethodPattern mp : this.wildcardNamePatterns) {
+            if (mp.namePattern.matcher(methodName).matches() && mp.signatureMatches(normalizedSignature)) return true;
+        }
+
+        return false;
+    }
+
+    private static final
+    class MethodPattern {
+
+        /** {@code null} iff the method name part of the pattern contains wildcards. */
+        @Nullable final String literalName;
+
+        final Pattern namePattern;
+
+        /** {@code null} means "any signature". */
+        @Nullable final Pattern signaturePattern;
+
+        MethodPattern(String pattern) {
+
+            int idx = pattern.indexOf('(');
+
+            String name = (idx == -1 ? pattern : pattern.substring(0, idx)).trim();
+
+            this.literalName      = name.indexOf('*') == -1 && name.indexOf('?') == -1 ? name : null;
+            this.namePattern      = MethodSelector.wildcardToRegex(name);
+            this.signaturePattern = (
+                idx == -1
+                ? null
+                : MethodSelector.wildcardToRegex(MethodSelector.removeWhitespace(pattern.substring(idx)))
+            );
+        }
+
+        boolean
+        signatureMatches(String normalizedSignature) {
+            Pattern sp = this.signaturePattern;
+            return sp == null || sp.matcher(normalizedSignature).matches();
+        }
+    }
+
+    private static Pattern
+    wildcardToRegex(String wildcard) {
+
+        StringBuilder sb = new StringBuilder();
+
+        int start = 0;
+        for (int i = 0; i < wildcard.length(); i++) {
+            char c = wildcard.charAt(i);
+            if (c == '*' || c == '?') {
+                if (i > start) sb.append(Pattern.quote(wildcard.substring(start, i)));
+                sb.append(c == '*' ? ".*" : ".");
+                start = i + 1;
+            }
+        }
+        if (wildcard.length() > start) sb.append(Pattern.quote(wildcard.substring(start)));
+
+        return Pattern.compile(sb.toString());
+    }
+
+    private static String
+    removeWhitespace(String s) {
+
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) sb.append(c);
+        }
+
+        return sb.toString();
+    }
+}
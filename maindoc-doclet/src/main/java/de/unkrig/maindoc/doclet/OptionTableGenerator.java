@@ -0,0 +1,558 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.TreeMap;
+
+import de.unkrig.commons.util.annotation.CommandLineOption;
+import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
+
+/**
+ * Generates Java source files that hold precomputed dispatch tables for the {@link CommandLineOption}s of classes,
+ * so that a tool can parse its command line without scanning its methods reflectively at runtime.
+ * <p>
+ *   For a class "{@code pkg.Tool}", the generated file is "<var>destination</var>{@code /pkg/ToolOptions.java}" (for
+ *   a nested class "{@code pkg.Tool.Inner}": "{@code pkg/Tool_InnerOptions.java}"). The generated class has the
+ *   following methods:
+ * </p>
+ * <dl>
+ *   <dt>{@code public static String[] parse(String[] args, Tool target)}</dt>
+ *   <dd>
+ *     Applies the options at the beginning of the <var>args</var> to the <var>target</var>, up to the first argument
+ *     that does not start with "{@code -}", or up to and including "{@code --}", checks the cardinalities of the
+ *     options, and returns the remaining arguments
+ *   </dd>
+ *   <dt>{@code public static int apply(String[] args, int index, Tool target)}</dt>
+ *   <dd>
+ *     Applies the option {@code args[index]} to the <var>target</var>, and returns the index of the argument after
+ *     the option and its arguments, or -1 iff it is not an option of the class
+ *   </dd>
+ *   <dt>{@code public static int arity(String option)}</dt>
+ *   <dd>The number of arguments of the <var>option</var>, or -1 iff it is not an option of the class</dd>
+ *   <dt>{@code public static Cardinality cardinality(String option)}</dt>
+ *   <dd>The cardinality of the <var>option</var>, or {@code null} iff it is not an option of the class</dd>
+ * </dl>
+ * <p>
+ *   The options are looked up through a {@code switch} on the {@link String#hashCode() hash code} of the option
+ *   name, and the setter methods are invoked directly. Only setters with parameter types that the generated code
+ *   cannot convert (other than strings, primitives and their wrappers, enums, {@link File}s, {@link Charset}s and
+ *   {@link java.util.regex.Pattern}s) are looked up and applied reflectively, through {@code
+ *   de.unkrig.commons.util.CommandLineOptions}.
+ * </p>
+ * <p>
+ *   {@link #add(String, String, List)} is thread-safe.
+ * </p>
+ */
+public final
+class OptionTableGenerator {
+
+    /**
+     * The conversions from a command line argument (the Java expression "{@code %s}") to the parameter types that the
+     * generated code applies without reflection.
+     */
+    private static final Map<String, String> CONVERSIONS = new HashMap<String, String>();
+    static {
+        Map<String, String> m = OptionTableGenerator.CONVERSIONS;
+        m.put("java.lang.String",        "%s");
+        m.put("boolean",                 "Boolean.parseBoolean(%s)");
+        m.put("java.lang.Boolean",       "Boolean.valueOf(%s)");
+        m.put("byte",                    "Byte.parseByte(%s)");
+        m.put("java.lang.Byte",          "Byte.valueOf(%s)");
+        m.put("short",                   "Short.parseShort(%s)");
+        m.put("java.lang.Short",         "Short.valueOf(%s)");
+        m.put("int",                     "Integer.parseInt(%s)");
+        m.put("java.lang.Integer",       "Integer.valueOf(%s)");
+        m.put("long",                    "Long.parseLong(%s)");
+        m.put("java.lang.Long",          "Long.valueOf(%s)");
+        m.put("float",                   "Float.parseFloat(%s)");
+        m.put("java.lang.Float",         "Float.valueOf(%s)");
+        m.put("double",                  "Double.parseDouble(%s)");
+        m.put("java.lang.Double",        "Double.valueOf(%s)");
+        m.put("java.io.File",            "new java.io.File(%s)");
+        m.put("java.nio.charset.Charset", "java.nio.charset.Charset.forName(%s)");
+        m.put("java.util.regex.Pattern", "java.util.regex.Pattern.compile(%s)");
+    }
+
+    private final File        destinationDirectory;
+    private final OutputFiles outputFiles;
+
+    /**
+     * The options, by simple class name, by package name.
+     */
+    private final Map<String, Map<String, List<Option>>>
+    options = new TreeMap<String, Map<String, List<Option>>>();
+
+    /**
+     * Describes one {@link CommandLineOption}-annotated setter method.
+     */
+    public static final
+    class Option {
+
+        /**
+         * The names of the option, as configured or as derived from the method name; a name without a leading
+         * "{@code -}" is recognized both with "{@code -}" and with "{@code --}"
+         */
+        public final List<String> names;
+
+        public final Cardinality cardinality;
+
+        /** The name of the setter method. */
+        public final String methodName;
+
+        /** The parameters of the setter method. */
+        public final List<Parameter> parameters;
+
+        /** The qualified names of the exception types that the setter method declares. */
+        public final List<String> thrownTypes;
+
+        public
+        Option(
+            List<String>    names,
+            Cardinality     cardinality,
+            String          methodName,
+            List<Parameter> parameters,
+            List<String>    thrownTypes
+        ) {
+            this.names       = Collections.unmodifiableList(new ArrayList<String>(names));
+            this.cardinality = cardinality;
+            this.methodName  = methodName;
+            this.parameters  = Collections.unmodifiableList(new ArrayList<Parameter>(parameters));
+            this.thrownTypes = Collections.unmodifiableList(new ArrayList<String>(thrownTypes));
+        }
+    }
+
+    /**
+     * Describes one parameter of a setter method.
+     */
+    public static final
+    class Parameter {
+
+        /**
+         * The erasure of the parameter type, as it appears in Java source code, e.g. "{@code int}", "{@code
+         * java.io.File}", "{@code pkg.Outer.Inner}" or "{@code java.lang.String[]}".
+         */
+        public final String type;
+
+        /** Whether the parameter type is an enum type. */
+        public final boolean isEnum;
+
+        public
+        Parameter(String type, boolean isEnum) {
+            this.type   = type;
+            this.isEnum = isEnum;
+        }
+    }
+
+    /**
+     * @param outputFiles Writes the generated files
+     */
+    public
+    OptionTableGenerator(File destinationDirectory, OutputFiles outputFiles) {
+        this.destinationDirectory = destinationDirectory;
+        this.outputFiles          = outputFiles;
+    }
+
+    /**
+     * @param packageName The name of the package of the class; "" for the unnamed package
+     * @param className   The name of the class, relative to its package, e.g. "{@code Outer.Inner}"
+     * @return            Whether {@link #add(String, String, List)} was already called for the class
+     */
+    public synchronized boolean
+    contains(String packageName, String className) {
+        Map<String, List<Option>> byClassName = this.options.get(packageName);
+        return byClassName != null && byClassName.containsKey(className);
+    }
+
+    /**
+     * Registers the command line options of one class. Subsequent registrations for the same class are ignored.
+     *
+     * @param packageName The name of the package of the class; "" for the unnamed package
+     * @param className   The name of the class, relative to its package, e.g. "{@code Outer.Inner}"
+     * @param options     The options of the class and its superclasses; iff empty, then no table is generated
+     */
+    public synchronized void
+    add(String packageName, String className, List<Option> options) {
+
+        Map<String, List<Option>> byClassName = this.options.get(packageName);
+        if (byClassName == null) {
+            byClassName = new TreeMap<String, List<Option>>();
+            this.options.put(packageName, byClassName);
+        }
+
+        if (!byClassName.containsKey(className)) byClassName.put(className, options);
+    }
+
+    /**
+     * Writes one Java source file for each class that has command line options.
+     */
+    public synchronized void
+    generate() throws IOException {
+
+        for (Entry<String, Map<String, List<Option>>> e : this.options.entrySet()) {
+            String packageName = e.getKey();
+
+            File packageDirectory = (
+                packageName.length() == 0
+                ? this.destinationDirectory
+                : new File(this.destinationDirectory, packageName.replace('.', File.separatorChar))
+            );
+
+            for (Entry<String, List<Option>> e2 : e.getValue().entrySet()) {
+                String       className = e2.getKey();
+                List<Option> options   = e2.getValue();
+                if (options.isEmpty()) continue;
+
+                if (!packageDirectory.isDirectory() && !packageDirectory.mkdirs()) {
+                    throw new IOException("Could not create directory \"" + packageDirectory + "\"");
+                }
+
+                String tableClassName = className.replace('.', '_') + "Options";
+
+                // The generated source is pure ASCII, so the charset does not really matter.
+                this.outputFiles.write(
+                    OptionTableGenerator.tableClass(packageName, className, tableClassName, options),
+                    new File(packageDirectory, tableClassName + ".java"),
+                    Charset.forName("UTF-8")
+                );
+            }
+        }
+    }
+
+    private static String
+    tableClass(String packageName, String className, String tableClassName, List<Option> declaredOptions) {
+
+        String qualifiedClassName = packageName.length() == 0 ? className : packageName + "." + className;
+
+        // Assign a number to each option, and map its names to that number. An option name that is declared more
+        // than once (e.g. by a setter that overrides an annotated setter of the superclass) designates the first
+        // option. An option whose names are all shadowed that way is dropped; otherwise "parse()" would check its
+        // cardinality although it can never be applied.
+        List<Option>         options = new ArrayList<Option>();
+        Map<String, Integer> numbers = new TreeMap<String, Integer>();
+        for (Option option : declaredOptions) {
+            List<String> optionNames = new ArrayList<String>();
+            for (String name : option.names) {
+                for (String optionName : OptionTableGenerator.optionNames(name)) {
+                    if (!numbers.containsKey(optionName)) optionNames.add(optionName);
+                }
+            }
+            if (optionNames.isEmpty()) continue;
+
+            for (String optionName : optionNames) numbers.put(optionName, options.size());
+            options.add(option);
+        }
+
+        // Group the option names by hash code.
+        Map<Integer, List<String>> byHashCode = new TreeMap<Integer, List<String>>();
+        for (String optionName : numbers.keySet()) {
+            List<String> l = byHashCode.get(optionName.hashCode());
+            if (l == null) {
+                l = new ArrayList<String>();
+                byHashCode.put(optionName.hashCode(), l);
+            }
+            l.add(optionName);
+        }
+
+        // Iff any setter must be applied reflectively, then "apply()" may throw any exception.
+        Set<String> thrownTypes = new LinkedHashSet<String>();
+        for (Option option : options) {
+            if (!OptionTableGenerator.isConvertible(option)) {
+                thrownTypes.clear();
+                thrownTypes.add("java.lang.Exception");
+                break;
+            }
+            thrownTypes.addAll(option.thrownTypes);
+        }
+        String throwsClause = "";
+        for (String thrownType : thrownTypes) {
+            throwsClause += (throwsClause.length() == 0 ? " throws " : ", ") + thrownType;
+        }
+
+        StringWriter sw = new StringWriter();
+        PrintWriter  pw = new PrintWriter(sw);
+
+        pw.println();
+        pw.println("// Generated by MAINDOC; do not edit.");
+        pw.println();
+        if (packageName.length() > 0) {
+            pw.println("package " + packageName + ";");
+            pw.println();
+        }
+        pw.println("import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;");
+        pw.println();
+        pw.println("/**");
+        pw.println(" * The command line options of {@code " + className + "}, with a precomputed dispatch to");
+        pw.println(" * their setter methods.");
+        pw.println(" */");
+        pw.println("public final");
+        pw.println("class " + tableClassName + " {");
+        pw.println();
+        pw.println("    private " + tableClassName + "() {}");
+        pw.println();
+        pw.println("    /** The primary names of the options, by option number. */");
+        pw.println("    private static final String[] NAMES = {");
+        for (Option option : options) {
+            String name = OptionTableGenerator.optionNames(option.names.get(0)).get(0);
+            pw.println("        " + HelpClassGenerator.literal(name) + ",");
+        }
+        pw.println("    };");
+        pw.println();
+        pw.println("    /** The numbers of arguments of the options, by option number. */");
+        pw.println("    private static final int[] ARITIES = {");
+        for (Option option : options) pw.println("        " + option.parameters.size() + ",");
+        pw.println("    };");
+        pw.println();
+        pw.println("    /** The cardinalities of the options, by option number. */");
+        pw.println("    private static final Cardinality[] CARDINALITIES = {");
+        for (Option option : options) {
+            pw.println("        Cardinality." + option.cardinality.name() + ",");
+        }
+        pw.println("    };");
+        pw.println();
+        pw.println("    /**");
+        pw.println("     * @return The number of arguments of the <var>option</var>, or -1 iff it is not an option");
+        pw.println("     *         of {@code " + className + "}");
+        pw.println("     */");
+        pw.println("    public static int");
+        pw.println("    arity(String option) {");
+        pw.println("        int n = " + tableClassName + ".numberOf(option);");
+        pw.println("        return n == -1 ? -1 : " + tableClassName + ".ARITIES[n];");
+        pw.println("    }");
+        pw.println();
+        pw.println("    /**");
+        pw.println("     * @return The cardinality of the <var>option</var>, or {@code null} iff it is not an option");
+        pw.println("     *         of {@code " + className + "}");
+        pw.println("     */");
+        pw.println("    public static Cardinality");
+        pw.println("    cardinality(String option) {");
+        pw.println("        int n = " + tableClassName + ".numberOf(option);");
+        pw.println("        return n == -1 ? null : " + tableClassName + ".CARDINALITIES[n];");
+        pw.println("    }");
+        pw.println();
+        pw.println("    /**");
+        pw.println("     * Applies the options at the beginning of the <var>args</var> to the <var>target</var>, up");
+        pw.println("     * to the first argument that does not start with \"-\", or up to and including \"--\".");
+        pw.println("     *");
+        pw.println("     * @return                         The remaining arguments");
+        pw.println("     * @throws IllegalArgumentException An option is invalid or lacks arguments, or appears less");
+        pw.println("     *                                  or more often than its cardinality allows");
+        pw.println("     */");
+        pw.println("    public static String[]");
+        pw.println("    parse(String[] args, " + qualifiedClassName + " target)" + throwsClause + " {");
+        pw.println();
+        pw.println("        int[] counts = new int[" + options.size() + "];");
+        pw.println();
+        pw.println("        int i = 0;");
+        pw.println("        while (i < args.length) {");
+        pw.println("            String arg = args[i];");
+        pw.println("            if (\"--\".equals(arg)) {");
+        pw.println("                i++;");
+        pw.println("                break;");
+        pw.println("            }");
+        pw.println("            if (!arg.startsWith(\"-\") || \"-\".equals(arg)) break;");
+        pw.println();
+        pw.println("            int n = " + tableClassName + ".numberOf(arg);");
+        pw.println("            if (n == -1) {");
+        pw.println(
+            "                throw new IllegalArgumentException("
+            + "\"Invalid command line option \\\"\" + arg + \"\\\"\");"
+        );
+        pw.println("            }");
+        pw.println();
+        pw.println("            counts[n]++;");
+        pw.println("            i = " + tableClassName + ".apply(n, args, i, target);");
+        pw.println("        }");
+        pw.println();
+        pw.println("        for (int n = 0; n < counts.length; n++) {");
+        pw.println("            String      name = " + tableClassName + ".NAMES[n];");
+        pw.println("            Cardinality c    = " + tableClassName + ".CARDINALITIES[n];");
+        pw.println("            if (counts[n] > 1 && (c == Cardinality.OPTIONAL || c == Cardinality.MANDATORY)) {");
+        pw.println(
+            "                throw new IllegalArgumentException("
+            + "\"Option \\\"\" + name + \"\\\" must not appear more than once\");"
+        );
+        pw.println("            }");
+        pw.println(
+            "            if (counts[n] == 0 && (c == Cardinality.MANDATORY || c == Cardinality.ONCE_OR_MORE)) {"
+        );
+        pw.println("                throw new IllegalArgumentException(\"Option \\\"\" + name + \"\\\" is missing\");");
+        pw.println("            }");
+        pw.println("        }");
+        pw.println();
+        pw.println("        String[] result = new String[args.length - i];");
+        pw.println("        System.arraycopy(args, i, result, 0, result.length);");
+        pw.println("        return result;");
+        pw.println("    }");
+        pw.println();
+        pw.println("    /**");
+        pw.println("     * Applies the option <code>args[<var>index</var>]</code> to the <var>target</var>.");
+        pw.println("     *");
+        pw.println("     * @return                         The index of the argument after the option and its");
+        pw.println("     *                                 arguments, or -1 iff it is not an option of");
+        pw.println("     *                                 {@code " + className + "}");
+        pw.println("     * @throws IllegalArgumentException The option lacks arguments, or an argument is invalid");
+        pw.println("     */");
+        pw.println("    public static int");
+        pw.println("    apply(String[] args, int index, " + qualifiedClassName + " target)" + throwsClause + " {");
+        pw.println("        int n = " + tableClassName + ".numberOf(args[index]);");
+        pw.println("        return n == -1 ? -1 : " + tableClassName + ".apply(n, args, index, target);");
+        pw.println("    }");
+        pw.println();
+        pw.println("    private static int");
+        pw.println(
+            "    apply(int n, String[] args, int index, " + qualifiedClassName + " target)" + throwsClause + " {"
+        );
+        pw.println();
+        pw.println("        if (args.length - index - 1 < " + tableClassName + ".ARITIES[n]) {");
+        pw.println(
+            "            throw new IllegalArgumentException("
+            + "\"Argument missing after \\\"\" + args[index] + \"\\\"\");"
+        );
+        pw.println("        }");
+        pw.println();
+        pw.println("        switch (n) {");
+        for (int n = 0; n < options.size(); n++) {
+            Option option = options.get(n);
+
+            pw.println();
+            pw.println("        case " + n + ":");
+            if (OptionTableGenerator.isConvertible(option)) {
+                StringBuilder arguments = new StringBuilder();
+                for (int i = 0; i < option.parameters.size(); i++) {
+                    if (i > 0) arguments.append(", ");
+                    arguments.append(OptionTableGenerator.conversion(
+                        option.parameters.get(i),
+                        "args[index + " + (i + 1) + "]"
+                    ));
+                }
+                pw.println("            target." + option.methodName + "(" + arguments + ");");
+                pw.println("            return index + " + (option.parameters.size() + 1) + ";");
+            } else {
+                StringBuilder parameterTypes = new StringBuilder();
+                for (Parameter parameter : option.parameters) {
+                    if (parameterTypes.length() > 0) parameterTypes.append(", ");
+                    parameterTypes.append(parameter.type).append(".class");
+                }
+                pw.println("            return de.unkrig.commons.util.CommandLineOptions.applyCommandLineOption(");
+                pw.println("                args[index],");
+                pw.println("                " + qualifiedClassName + ".class.getMethod(");
+                pw.println("                    " + HelpClassGenerator.literal(option.methodName) + ",");
+                pw.println("                    new Class<?>[] { " + parameterTypes + " }");
+                pw.println("                ),");
+                pw.println("                args,");
+                pw.println("                index + 1,");
+                pw.println("                target");
+                pw.println("            );");
+            }
+        }
+        pw.println();
+        pw.println("        default:");
+        pw.println("            throw new AssertionError(n);");
+        pw.println("        }");
+        pw.println("    }");
+        pw.println();
+        pw.println("    /**");
+        pw.println("     * @return The number of the <var>option</var>, or -1 iff it is not an option of");
+        pw.println("     *         {@code " + className + "}");
+        pw.println("     */");
+        pw.println("    private static int");
+        pw.println("    numberOf(String option) {");
+        pw.println("        switch (option.hashCode()) {");
+        for (Entry<Integer, List<String>> e : byHashCode.entrySet()) {
+            pw.println("        case " + e.getKey() + ":");
+            for (String optionName : e.getValue()) {
+                pw.println(
+                    "            if ("
+                    + HelpClassGenerator.literal(optionName)
+                    + ".equals(option)) return "
+                    + numbers.get(optionName)
+                    + ";"
+                );
+            }
+            pw.println("            break;");
+        }
+        pw.println("        }");
+        pw.println("        return -1;");
+        pw.println("    }");
+        pw.println("}");
+
+        pw.flush();
+        return sw.toString();
+    }
+
+    /**
+     * @return The names under which the option with the given <var>name</var> is recognized on the command line; the
+     *         first is the name under which the option is documented
+     */
+    private static List<String>
+    optionNames(String name) {
+        return (
+            name.startsWith("-") ? Collections.singletonList(name) :
+            name.length() == 1   ? Arrays.asList("-" + name, "--" + name) :
+            Arrays.asList("--" + name, "-" + name)
+        );
+    }
+
+    /**
+     * @return Whether the generated code can convert the arguments of the <var>option</var> without reflection
+     */
+    private static boolean
+    isConvertible(Option option) {
+        for (Parameter parameter : option.parameters) {
+            if (!parameter.isEnum && !OptionTableGenerator.CONVERSIONS.containsKey(parameter.type)) return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return A Java expression that converts the <var>argument</var> expression to the type of the
+     *         <var>parameter</var>
+     */
+    private static String
+    conversion(Parameter parameter, String argument) {
+        return (
+            parameter.isEnum
+            ? parameter.type + ".valueOf(" + argument + ")"
+            : String.format(OptionTableGenerator.CONVERSIONS.get(parameter.type), argument)
+        );
+    }
+}
@@ -0,0 +1,189 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Writes output files, but leaves those alone whose content would not change, so that their modification times stay
+ * as they are, and incremental downstream steps (resource copying, packaging, deployment) do not consider them
+ * changed.
+ * <p>
+ *   Files are replaced atomically: The new content is written to a temporary file in the same directory, which is
+ *   then renamed.
+ * </p>
+ * <p>
+ *   Instances are thread-safe.
+ * </p>
+ */
+public final
+class OutputFiles {
+
+    private final AtomicInteger written   = new AtomicInteger();
+    private final AtomicInteger unchanged = new AtomicInteger();
+
+    /**
+     * Writes the <var>content</var>, encoded with the <var>charset</var>, to the <var>file</var>, unless the file
+     * already has exactly that content.
+     *
+     * @return Whether the <var>file</var> was (re)written
+     */
+    public boolean
+    write(String content, File file, Charset charset) throws IOException {
+
+        byte[] bytes = content.getBytes(charset);
+
+        if (OutputFiles.hasContent(file, bytes)) {
+            this.unchanged.incrementAndGet();
+            return false;
+        }
+
+        File tmp = File.createTempFile("." + file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+        try {
+            FileChannel fc = new FileOutputStream(tmp).getChannel();
+            try {
+                ByteBuffer bb = ByteBuffer.wrap(bytes);
+                while (bb.hasRemaining()) fc.write(bb);
+            } finally {
+                fc.close();
+            }
+
+            OutputFiles.rename(tmp, file);
+        } finally {
+            if (tmp.exists()) tmp.delete();
+        }
+
+        this.written.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Replaces the <var>file</var> with the <var>newFile</var>, unless both have exactly the same content. In any
+     * case, the <var>newFile</var> is gone afterwards.
+     *
+     * @return Whether the <var>file</var> was replaced
+     */
+    public boolean
+    replace(File newFile, File file) throws IOException {
+
+        try {
+            if (OutputFiles.sameContent(newFile, file)) {
+                this.unchanged.incrementAndGet();
+                return false;
+            }
+
+            OutputFiles.rename(newFile, file);
+        } finally {
+            if (newFile.exists()) newFile.delete();
+        }
+
+        this.written.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * @return The number of files that {@link #write(String, File, Charset)} (re)wrote
+     */
+    public int
+    written() { return this.written.get(); }
+
+    /**
+     * @return The number of files that {@link #write(String, File, Charset)} left alone, because their content was
+     *         already up-to-date
+     */
+    public int
+    unchanged() { return this.unchanged.get(); }
+
+    private static void
+    rename(File from, File to) throws IOException {
+
+        // "File.renameTo()" does not replace an existing file on all platforms.
+        if (!from.renameTo(to) && !(to.delete() && from.renameTo(to))) {
+            throw new IOException("Could not rename \"" + from + "\" to \"" + to + "\"");
+        }
+    }
+
+    /**
+     * @return Whether the <var>file2</var> exists and has exactly the same content as the <var>file1</var>
+     */
+    private static boolean
+    sameContent(File file1, File file2) throws IOException {
+
+        if (!file2.isFile() || file1.length() != file2.length()) return false;
+
+        InputStream is1 = new BufferedInputStream(new FileInputStream(file1));
+        try {
+            InputStream is2 = new BufferedInputStream(new FileInputStream(file2));
+            try {
+                for (;;) {
+                    int b = is1.read();
+                    if (b != is2.read()) return false;
+                    if (b == -1) return true;
+                }
+            } finally {
+                is2.close();
+            }
+        } finally {
+            is1.close();
+        }
+    }
+
+    /**
+     * @return Whether the <var>file</var> exists and contains exactly the <var>bytes</var>
+     */
+    private static boolean
+    hasContent(File file, byte[] bytes) throws IOException {
+
+        // Checking the size first saves reading nearly all files that did change.
+        if (!file.isFile() || file.length() != bytes.length) return false;
+
+        InputStream is = new FileInputStream(file);
+        try {
+            byte[] buffer = new byte[8192];
+            for (int offset = 0;;) {
+                int n = is.read(buffer);
+                if (n == -1) return offset == bytes.length;
+                if (offset + n > bytes.length) return false;
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] != bytes[offset + i]) return false;
+                }
+                offset += n;
+            }
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,81 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import de.unkrig.maindoc.doclet.DocletStats.Phase;
+
+/**
+ * The output formats that the doclet can produce, each by a {@link DocumentEmitter}.
+ */
+public
+enum OutputFormat {
+
+    /** An HTML document ("{@code .html}"). */
+    HTML("html", "html", Phase.HTML_WRITING),
+
+    /** Plain text, as converted from the HTML document ("{@code .txt}"). */
+    TXT("txt", "txt", Phase.HTML2TXT),
+
+    /** Markdown, e.g. for a README ("{@code .md}"). */
+    MARKDOWN("md", "md", Phase.OTHER_FORMATS),
+
+    /** A troff man page, section 1 ("{@code .1}"). */
+    MAN("man", "1", Phase.OTHER_FORMATS),
+
+    /** A JSON description of the documented method and its command line options ("{@code .json}"). */
+    JSON("json", "json", Phase.OTHER_FORMATS);
+
+    /** The name of the format, as specified with the doclet's "{@code -format}" option. */
+    public final String name;
+
+    /** The file name extension of the output files (without the dot). */
+    public final String extension;
+
+    /** The {@link DocletStats} phase that the emitting of this format and the writing of its files count in. */
+    public final Phase phase;
+
+    OutputFormat(String name, String extension, Phase phase) {
+        this.name      = name;
+        this.extension = extension;
+        this.phase     = phase;
+    }
+
+    /**
+     * @return                          The format with the given {@link #name}
+     * @throws IllegalArgumentException No format has that name
+     */
+    public static OutputFormat
+    fromName(String name) {
+
+        for (OutputFormat format : OutputFormat.values()) {
+            if (format.name.equals(name)) return format;
+        }
+
+        throw new IllegalArgumentException("Invalid output format \"" + name + "\"");
+    }
+}
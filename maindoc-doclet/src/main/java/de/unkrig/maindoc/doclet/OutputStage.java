@@ -0,0 +1,166 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Executes the tasks that write the output files on background threads, so that the rendering of the next document
+ * overlaps with the writing of the previous ones.
+ * <p>
+ *   The number of pending tasks is bounded: If the writer threads fall behind, then {@link #submit(Callable)} blocks,
+ *   so that finished documents cannot pile up in memory. The first failure of any task fails the next {@link
+ *   #submit(Callable)}, resp. the {@link #finish()}.
+ * </p>
+ * <p>
+ *   Typical use:
+ * </p>
+ * <pre>
+ * OutputStage outputStage = new OutputStage(threads, capacity);
+ * try {
+ *     for (...) outputStage.submit(task);
+ *     outputStage.finish();
+ * } finally {
+ *     outputStage.abort();
+ * }
+ * </pre>
+ */
+public final
+class OutputStage {
+
+    private static final AtomicInteger STAGE_NUMBER = new AtomicInteger();
+
+    private final ExecutorService            executorService;
+    private final Semaphore                  permits;
+    private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+
+    /**
+     * @param threads  The number of writer threads
+     * @param capacity The number of tasks that may wait for a writer thread before {@link #submit(Callable)} blocks
+     */
+    public
+    OutputStage(int threads, int capacity) {
+
+        final String namePrefix = "maindoc-writer-" + OutputStage.STAGE_NUMBER.incrementAndGet() + "-";
+
+        this.executorService = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override public Thread
+            newThread(@Nullable Runnable r) {
+
+                // Daemon threads, so that a hanging write cannot prevent the JVM from terminating.
+                Thread result = new Thread(r, namePrefix + this.threadNumber.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        });
+        this.permits = new Semaphore(threads + capacity);
+    }
+
+    /**
+     * Has the <var>task</var> executed by one of the writer threads. Blocks while too many tasks are pending.
+     *
+     * @throws IOException The failure of a previously submitted task
+     */
+    public void
+    submit(final Callable<Void> task) throws IOException {
+
+        this.checkFailure();
+
+        try {
+            this.permits.acquire();
+        } catch (InterruptedException ie) {
+            throw new IOException(null, ie);
+        }
+
+        this.executorService.submit(new Callable<Void>() {
+
+            @Override @Nullable public Void
+            call() throws Exception {
+                try {
+                    return task.call();
+                } catch (Exception e) {
+                    OutputStage.this.failure.compareAndSet(null, e);
+                    throw e;
+                } catch (Error e) {
+                    OutputStage.this.failure.compareAndSet(null, e);
+                    throw e;
+                } finally {
+                    OutputStage.this.permits.release();
+                }
+            }
+        });
+    }
+
+    /**
+     * Waits until all submitted tasks have completed.
+     *
+     * @throws IOException The (first) failure of any task
+     */
+    public void
+    finish() throws IOException {
+
+        this.executorService.shutdown();
+        try {
+            this.executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException ie) {
+            throw new IOException(null, ie);
+        }
+
+        this.checkFailure();
+    }
+
+    /**
+     * Cancels all pending tasks; a no-op after {@link #finish()}.
+     */
+    public void
+    abort() { this.executorService.shutdownNow(); }
+
+    private void
+    checkFailure() throws IOException {
+
+        Throwable t = this.failure.get();
+        if (t == null) return;
+
+        if (t instanceof IOException)      throw (IOException) t;
+        if (t instanceof RuntimeException) throw (RuntimeException) t;
+        if (t instanceof Error)            throw (Error) t;
+        throw new IOException(null, t);
+    }
+}
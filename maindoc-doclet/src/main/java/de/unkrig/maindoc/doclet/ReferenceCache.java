@@ -0,0 +1,87 @@
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+
+/**
+ * Remembers, for one doclet run, what references (e.g. the targets of "{@code @see}" tags) resolve to, by the class
+ * in whose context they appear and their text.
+ * <p>
+ *   References that cannot be resolved are remembered as well, so that each distinct reference is resolved, and
+ *   reported as unresolvable, only once, no matter how often the doc comments that contain it are rendered.
+ * </p>
+ *
+ * @param <C> The representation of the context classes, e.g. {@link com.sun.javadoc.ClassDoc}
+ * @param <T> The representation of the reference targets, e.g. {@link com.sun.javadoc.Doc}
+ */
+public final
+class ReferenceCache<C, T> {
+
+    /** The targets resolved so far, by context class and reference text; {@code null} values mean "unresolvable". */
+    private final Map<C, Map<String, T>> targets = new HashMap<C, Map<String, T>>();
+
+    /**
+     * @param context {@code null} e.g. for references in package documentation
+     * @return        Whether the <var>reference</var> was resolved in the <var>context</var> before (successfully or
+     *                not)
+     */
+    public boolean
+    containsKey(@Nullable C context, String reference) {
+        Map<String, T> m = this.targets.get(context);
+        return m != null && m.containsKey(reference);
+    }
+
+    /**
+     * @return The target of the <var>reference</var> in the <var>context</var>, or {@code null} iff it is
+     *         unresolvable or was not {@link #put(Object, String, Object) put} yet
+     */
+    @Nullable public T
+    get(@Nullable C context, String reference) {
+        Map<String, T> m = this.targets.get(context);
+        return m == null ? null : m.get(reference);
+    }
+
+    /**
+     * Remembers the target of the <var>reference</var> in the <var>context</var>.
+     *
+     * @param target {@code null} means "unresolvable"
+     */
+    public void
+    put(@Nullable C context, String reference, @Nullable T target) {
+
+        Map<String, T> m = this.targets.get(context);
+        if (m == null) {
+            m = new HashMap<String, T>();
+            this.targets.put(context, m);
+        }
+
+        m.put(reference, target);
+    }
+}
@@ -0,0 +1,119 @@
+
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the "linearized" hierarchies of types: each type, followed by all its direct and indirect supertypes, each
+ * exactly once, in C3 order (like Python's "method resolution order").
+ * <p>
+ *   In that order, each type precedes its supertypes, and the direct supertypes of each type keep their declaration
+ *   order. Because classes are listed before interfaces, the superclass chain comes first, followed by the interfaces,
+ *   e.g. "{@code C, B, A, I}" for "{@code class C extends B implements I}" and "{@code class B extends A}". Where
+ *   there is no C3 linearization (Java allows some such hierarchies), conflicts are resolved in favor of the earlier
+ *   direct supertype.
+ * </p>
+ * <p>
+ *   The linearizations are memoized, so that each type of a deep or wide hierarchy (e.g. of interfaces that "mix in"
+ *   command line options) is linearized only once, no matter how many subtypes it has.
+ * </p>
+ *
+ * @param <T> The representation of types, e.g. {@link com.sun.javadoc.ClassDoc}
+ */
+public abstract
+class TypeHierarchy<T> {
+
+    /** The linearizations computed so far. */
+    private final Map<T, List<T>> linearizations = new HashMap<T, List<T>>();
+
+    /**
+     * @return The superclass of the <var>type</var> (if any), followed by its direct superinterfaces in declaration
+     *         order
+     */
+    protected abstract List<T>
+    directSupertypesOf(T type);
+
+    /**
+     * @return The <var>type</var>, followed by all its direct and indirect supertypes, in C3 order; see {@link
+     *         TypeHierarchy}
+     */
+    public List<T>
+    linearizationOf(T type) {
+
+        List<T> result = this.linearizations.get(type);
+        if (result != null) return result;
+
+        List<T> directSupertypes = this.directSupertypesOf(type);
+
+        // Merge the linearizations of the direct supertypes, and the list of the direct supertypes.
+        List<List<T>> lists = new ArrayList<List<T>>();
+        for (T st : directSupertypes) lists.add(new ArrayList<T>(this.linearizationOf(st)));
+        lists.add(new ArrayList<T>(directSupertypes));
+
+        result = new ArrayList<T>();
+        result.add(type);
+        for (;;) {
+
+            // Take the first head that does not appear in the tail of any list; or, iff there is none, the first
+            // head.
+            T next = null;
+            for (List<T> l : lists) {
+                if (l.isEmpty()) continue;
+                T head = l.get(0);
+                if (next == null) next = head;
+                if (!TypeHierarchy.inAnyTail(head, lists)) {
+                    next = head;
+                    break;
+                }
+            }
+            if (next == null) break;
+
+            result.add(next);
+            for (List<T> l : lists) l.remove(next);
+        }
+
+        result = Collections.unmodifiableList(result);
+        this.linearizations.put(type, result);
+        return result;
+    }
+
+    private static <T> boolean
+    inAnyTail(T type, List<List<T>> lists) {
+
+        for (List<T> l : lists) {
+            if (l.indexOf(type) > 0) return true;
+        }
+
+        return false;
+    }
+}
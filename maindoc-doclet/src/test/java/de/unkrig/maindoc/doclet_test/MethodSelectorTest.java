@@ -0,0 +1,90 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet_test;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.maindoc.doclet.MethodSelector;
+
+public
+class MethodSelectorTest {
+
+    @Test public void
+    testLiteral() {
+        MethodSelector ms = MethodSelectorTest.selector("main(String[])");
+
+        Assert.assertTrue(ms.mayMatch("main"));
+        Assert.assertFalse(ms.mayMatch("start"));
+        Assert.assertTrue(ms.matches("main", "(String[])"));
+        Assert.assertFalse(ms.matches("main", "()"));
+    }
+
+    @Test public void
+    testMultiple() {
+        MethodSelector ms = MethodSelectorTest.selector("main(String[])", "start(RootDoc)", "execute()");
+
+        Assert.assertTrue(ms.matches("main", "(String[])"));
+        Assert.assertTrue(ms.matches("start", "(RootDoc)"));
+        Assert.assertTrue(ms.matches("execute", "()"));
+        Assert.assertFalse(ms.matches("start", "(String[])"));
+    }
+
+    @Test public void
+    testWildcards() {
+        MethodSelector ms = MethodSelectorTest.selector("exec*", "*(String?)", "run");
+
+        Assert.assertTrue(ms.mayMatch("execute"));
+        Assert.assertTrue(ms.mayMatch("foo"));
+        Assert.assertTrue(ms.matches("execute", "(int, int)"));
+        Assert.assertTrue(ms.matches("foo", "(Strings)"));
+        Assert.assertFalse(ms.matches("foo", "(String)"));
+        Assert.assertTrue(ms.matches("run", "(File,int)"));
+    }
+
+    @Test public void
+    testWhitespace() {
+        MethodSelector ms = MethodSelectorTest.selector("foo(String,int)");
+
+        Assert.assertTrue(ms.matches("foo", "(String, int)"));
+    }
+
+    @Test public void
+    testEmpty() {
+        MethodSelector ms = new MethodSelector();
+
+        Assert.assertTrue(ms.isEmpty());
+        Assert.assertFalse(ms.mayMatch("main"));
+    }
+
+    private static MethodSelector
+    selector(String... patterns) {
+        MethodSelector result = new MethodSelector();
+        for (String pattern : patterns) result.add(pattern);
+        return result;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet_test;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.unkrig.commons.util.annotation.CommandLineOption;
+import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
+import de.unkrig.maindoc.doclet.OptionTableGenerator;
+import de.unkrig.maindoc.doclet.OptionTableGenerator.Option;
+import de.unkrig.maindoc.doclet.OptionTableGenerator.Parameter;
+import de.unkrig.maindoc.doclet.OutputFiles;
+
+/**
+ * Generates an option table, compiles it, and runs it against a tool.
+ */
+public
+class OptionTableGeneratorTest {
+
+    public static
+    class Tool {
+
+        public String name;
+
+        @CommandLineOption(cardinality = Cardinality.MANDATORY) public void
+        setName(String name) { this.name = name; }
+    }
+
+    /**
+     * Overrides the annotated setter of its superclass, so that two options with the same name are declared.
+     */
+    public static
+    class SubTool extends Tool {
+
+        public int count;
+
+        @Override @CommandLineOption(cardinality = Cardinality.MANDATORY) public void
+        setName(String name) { this.name = name.toUpperCase(); }
+
+        @CommandLineOption(cardinality = Cardinality.ONCE_OR_MORE) public void
+        addCount(int delta) { this.count += delta; }
+    }
+
+    private File directory;
+
+    @Before public void
+    setUp() throws Exception {
+        this.directory = File.createTempFile("options", "");
+        Assert.assertTrue(this.directory.delete());
+        Assert.assertTrue(this.directory.mkdir());
+    }
+
+    @After public void
+    tearDown() {
+        OptionTableGeneratorTest.delete(this.directory);
+    }
+
+    @Test public void
+    testOverriddenSetter() throws Exception {
+        Method parse = this.parseMethod();
+
+        SubTool tool = new SubTool();
+        String[] rest = OptionTableGeneratorTest.parse(
+            parse,
+            new String[] { "--name", "foo", "-count", "2", "--count", "3", "file" },
+            tool
+        );
+
+        Assert.assertEquals(Arrays.asList("file"), Arrays.asList(rest));
+        Assert.assertEquals("FOO", tool.name);
+        Assert.assertEquals(5, tool.count);
+    }
+
+    @Test public void
+    testMissingOption() throws Exception {
+        Method parse = this.parseMethod();
+
+        try {
+            OptionTableGeneratorTest.parse(parse, new String[] { "--count", "1" }, new SubTool());
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {
+            Assert.assertEquals("Option \"--name\" is missing", iae.getMessage());
+        }
+
+        try {
+            OptionTableGeneratorTest.parse(parse, new String[] { "--name", "foo", "--name", "bar" }, new SubTool());
+            Assert.fail();
+        } catch (IllegalArgumentException iae) {
+            Assert.assertEquals("Option \"--name\" must not appear more than once", iae.getMessage());
+        }
+    }
+
+    /**
+     * Generates, compiles and loads the option table of {@link SubTool}, with the options in the order in which the
+     * doclet lists them: The subclass's setters first, then the superclass's.
+     *
+     * @return The {@code parse(String[], SubTool)} method of the option table
+     */
+    private Method
+    parseMethod() throws Exception {
+
+        Parameter string = new Parameter("java.lang.String", false);
+        Parameter inT    = new Parameter("int", false);
+
+        OptionTableGenerator generator = new OptionTableGenerator(this.directory, new OutputFiles());
+        generator.add(
+            "de.unkrig.maindoc.doclet_test",
+            "OptionTableGeneratorTest.SubTool",
+            Arrays.asList(
+                OptionTableGeneratorTest.option("name", Cardinality.MANDATORY, "setName", string),
+                OptionTableGeneratorTest.option("count", Cardinality.ONCE_OR_MORE, "addCount", inT),
+                OptionTableGeneratorTest.option("name", Cardinality.MANDATORY, "setName", string)
+            )
+        );
+        generator.generate();
+
+        File sourceFile = new File(
+            this.directory,
+            "de/unkrig/maindoc/doclet_test/OptionTableGeneratorTest_SubToolOptions.java"
+        );
+        Assert.assertTrue(sourceFile.isFile());
+
+        // The generated code refers to the tool and to "CommandLineOption.Cardinality".
+        String classpath = (
+            OptionTableGeneratorTest.locationOf(SubTool.class)
+            + File.pathSeparator
+            + OptionTableGeneratorTest.locationOf(CommandLineOption.class)
+        );
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("No system Java compiler", compiler);
+        Assert.assertEquals(0, compiler.run(
+            null,
+            null,
+            null,
+            "-classpath", classpath,
+            "-d",         this.directory.getPath(),
+            sourceFile.getPath()
+        ));
+
+        ClassLoader cl = new URLClassLoader(
+            new URL[] { this.directory.toURI().toURL() },
+            OptionTableGeneratorTest.class.getClassLoader()
+        );
+
+        return cl.loadClass("de.unkrig.maindoc.doclet_test.OptionTableGeneratorTest_SubToolOptions").getMethod(
+            "parse",
+            String[].class,
+            SubTool.class
+        );
+    }
+
+    private static String[]
+    parse(Method parse, String[] args, SubTool target) throws Exception {
+        try {
+            return (String[]) parse.invoke(null, args, target);
+        } catch (InvocationTargetException ite) {
+            Throwable te = ite.getTargetException();
+            if (te instanceof Exception) throw (Exception) te;
+            if (te instanceof Error) throw (Error) te;
+            throw ite;
+        }
+    }
+
+    private static Option
+    option(String name, Cardinality cardinality, String methodName, Parameter parameter) {
+        return new Option(
+            Collections.singletonList(name),
+            cardinality,
+            methodName,
+            Collections.singletonList(parameter),
+            Collections.<String>emptyList()
+        );
+    }
+
+    private static String
+    locationOf(Class<?> clasS) throws Exception {
+        return new File(clasS.getProtectionDomain().getCodeSource().getLocation().toURI()).getPath();
+    }
+
+    private static void
+    delete(File file) {
+        File[] members = file.listFiles();
+        if (members != null) {
+            for (File member : members) OptionTableGeneratorTest.delete(member);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet_test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.maindoc.doclet.TypeHierarchy;
+
+public
+class TypeHierarchyTest {
+
+    @Test public void
+    testClassesBeforeInterfaces() {
+        TypeHierarchy<String> th = TypeHierarchyTest.hierarchy(
+            "C", "B I",
+            "B", "A",
+            "A", "",
+            "I", ""
+        );
+
+        Assert.assertEquals(Arrays.asList("C", "B", "A", "I"), th.linearizationOf("C"));
+        Assert.assertEquals(Arrays.asList("B", "A"), th.linearizationOf("B"));
+        Assert.assertEquals(Arrays.asList("I"), th.linearizationOf("I"));
+    }
+
+    @Test public void
+    testDiamond() {
+        TypeHierarchy<String> th = TypeHierarchyTest.hierarchy(
+            "C", "J K",
+            "J", "I",
+            "K", "I",
+            "I", ""
+        );
+
+        // The common superinterface appears only once, after all its subinterfaces.
+        Assert.assertEquals(Arrays.asList("C", "J", "K", "I"), th.linearizationOf("C"));
+    }
+
+    @Test public void
+    testNoC3Linearization() {
+
+        // "J" and "K" list their superinterfaces in opposite order, so there is no C3 linearization of "C".
+        TypeHierarchy<String> th = TypeHierarchyTest.hierarchy(
+            "C", "J K",
+            "J", "X Y",
+            "K", "Y X",
+            "X", "",
+            "Y", ""
+        );
+
+        // The conflict is resolved in favor of the earlier direct supertype, "J".
+        Assert.assertEquals(Arrays.asList("C", "J", "K", "X", "Y"), th.linearizationOf("C"));
+    }
+
+    @Test public void
+    testMemoization() {
+        Map<String, Integer> calls = new HashMap<String, Integer>();
+
+        TypeHierarchy<String> th = TypeHierarchyTest.hierarchy(
+            calls,
+            "C", "B J K",
+            "D", "B K",
+            "B", "A",
+            "A", "",
+            "J", "I",
+            "K", "I",
+            "I", ""
+        );
+
+        List<String> c = th.linearizationOf("C");
+        Assert.assertEquals(Arrays.asList("C", "B", "A", "J", "K", "I"), c);
+        Assert.assertEquals(Arrays.asList("D", "B", "A", "K", "I"), th.linearizationOf("D"));
+        Assert.assertSame(c, th.linearizationOf("C"));
+
+        for (String type : Arrays.asList("A", "B", "C", "D", "I", "J", "K")) {
+            Assert.assertEquals(type, Integer.valueOf(1), calls.get(type));
+        }
+    }
+
+    /**
+     * @param hierarchy Pairs of a type and its space-separated direct supertypes
+     */
+    private static TypeHierarchy<String>
+    hierarchy(String... hierarchy) {
+        return TypeHierarchyTest.hierarchy(new HashMap<String, Integer>(), hierarchy);
+    }
+
+    /**
+     * @param calls     Counts the invocations of {@code directSupertypesOf()}, by type
+     * @param hierarchy Pairs of a type and its space-separated direct supertypes
+     */
+    private static TypeHierarchy<String>
+    hierarchy(final Map<String, Integer> calls, String... hierarchy) {
+
+        final Map<String, List<String>> directSupertypes = new HashMap<String, List<String>>();
+        for (int i = 0; i < hierarchy.length; i += 2) {
+            directSupertypes.put(
+                hierarchy[i],
+                hierarchy[i + 1].length() == 0
+                ? Collections.<String>emptyList()
+                : new ArrayList<String>(Arrays.asList(hierarchy[i + 1].split(" ")))
+            );
+        }
+
+        return new TypeHierarchy<String>() {
+
+            @Override protected List<String>
+            directSupertypesOf(String type) {
+                Integer n = calls.get(type);
+                calls.put(type, n == null ? 1 : n + 1);
+
+                List<String> result = directSupertypes.get(type);
+                Assert.assertNotNull(type, result);
+                return result;
+            }
+        };
+    }
+}
@@ -0,0 +1,337 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2014, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet9;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.doctree.DocTree;
+import com.sun.source.doctree.ReferenceTree;
+import com.sun.source.doctree.SeeTree;
+import com.sun.source.doctree.UnknownBlockTagTree;
+import com.sun.source.util.DocTreePath;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+import de.unkrig.commons.text.Notations;
+import de.unkrig.commons.util.annotation.CommandLineOption;
+import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
+
+/**
+ * Everything about one {@link CommandLineOption}-annotated setter method that does not depend on the document being
+ * generated; computed only once per class and doclet run.
+ */
+final
+class CommandLineOptionElement {
+
+    /** The {@link CommandLineOption}-annotated setter method. */
+    final ExecutableElement method;
+
+    /** The doc comment of the {@link #method}, or {@code null} iff it has none. */
+    @Nullable final DocCommentTree docComment;
+
+    /** The path of the {@link #docComment}; {@code null} iff the {@link #method} has no doc comment. */
+    @Nullable final DocTreePath docCommentPath;
+
+    /** The names of the command line option, as configured or as derived from the method name. */
+    final String[] names;
+
+    /** The "cardinality" element of the {@link CommandLineOption} annotation. */
+    final Cardinality cardinality;
+
+    /** The texts of the {@value MainDoclet#BT_main_commandLineOptionGroup} block tags of the {@link #method}. */
+    final List<String> groups;
+
+    /**
+     * Whether this option is a "companion" of another option, i.e. has NO text and a {@code @see} block tag, and is
+     * documented TOGETHER with that other option.
+     */
+    final boolean isCompanion;
+
+    /** The options of the same class which are "companions" of this option. */
+    final List<CommandLineOptionElement> companions = new ArrayList<CommandLineOptionElement>();
+
+    private
+    CommandLineOptionElement(
+        ExecutableElement        method,
+        @Nullable DocCommentTree docComment,
+        @Nullable DocTreePath    docCommentPath,
+        String[]                 names,
+        Cardinality              cardinality,
+        List<String>             groups,
+        boolean                  isCompanion
+    ) {
+        this.method         = method;
+        this.docComment     = docComment;
+        this.docCommentPath = docCommentPath;
+        this.names          = names;
+        this.cardinality    = cardinality;
+        this.groups         = groups;
+        this.isCompanion    = isCompanion;
+    }
+
+    /**
+     * @param group {@code null} means "options without a {@value MainDoclet#BT_main_commandLineOptionGroup} block
+     *              tag"
+     * @return      Whether this option belongs to the given <var>group</var>
+     */
+    boolean
+    isInGroup(@Nullable String group) {
+        return group == null ? this.groups.isEmpty() : this.groups.contains(group);
+    }
+
+    /**
+     * @return The block tags of the {@link #docComment} with the given <var>kind</var>
+     */
+    <T extends DocTree> List<T>
+    blockTags(DocTree.Kind kind, Class<T> type) {
+
+        DocCommentTree dct = this.docComment;
+        if (dct == null) return Collections.emptyList();
+
+        List<T> result = new ArrayList<T>();
+        for (DocTree bt : dct.getBlockTags()) {
+            if (bt.getKind() == kind) result.add(type.cast(bt));
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The {@link UnknownBlockTagTree custom block tags} of the {@link #docComment} with the given
+     *         <var>tagName</var> (without the leading "@")
+     */
+    List<UnknownBlockTagTree>
+    customBlockTags(String tagName) {
+
+        List<UnknownBlockTagTree> result = new ArrayList<UnknownBlockTagTree>();
+        for (UnknownBlockTagTree ubtt : this.blockTags(DocTree.Kind.UNKNOWN_BLOCK_TAG, UnknownBlockTagTree.class)) {
+            if (ubtt.getTagName().equals(tagName)) result.add(ubtt);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses the doc comments of the {@link CommandLineOption}-annotated methods of the type <var>te</var>, but not
+     * those of any other methods.
+     *
+     * @return The command line options declared by the type <var>te</var> (but not by its supertypes), in
+     *         declaration order, with the companion options linked to the options they accompany
+     */
+    static List<CommandLineOptionElement>
+    declaredBy(TypeElement te, HtmlRenderer html) {
+
+        List<CommandLineOptionElement> result = new ArrayList<CommandLineOptionElement>();
+
+        Map<Element, CommandLineOptionElement>           byMethod    = new HashMap<>();
+        Map<CommandLineOptionElement, ExecutableElement> companionOf = new HashMap<>();
+
+        for (ExecutableElement method : ElementFilter.methodsIn(te.getEnclosedElements())) {
+
+            // We're only interested in those with a "@CommandLineOption" annotation.
+            AnnotationMirror cloam = CommandLineOptionElement.getCommandLineOptionAnnotation(method);
+            if (cloam == null) continue;
+
+            DocCommentTree dct  = html.docCommentOf(method);
+            DocTreePath    path = dct == null ? null : html.pathOf(method, dct);
+
+            ExecutableElement target = (
+                dct == null || path == null
+                ? null
+                : CommandLineOptionElement.getCompanionOf(dct, path, html)
+            );
+
+            CommandLineOptionElement option = new CommandLineOptionElement(
+                method,
+                dct,
+                path,
+                CommandLineOptionElement.names(method, cloam),
+                CommandLineOptionElement.cardinality(cloam),
+                CommandLineOptionElement.groups(dct, path, html),
+                target != null
+            );
+
+            result.add(option);
+            byMethod.put(method, option);
+            if (target != null) companionOf.put(option, target);
+        }
+
+        // Link the companions to the options they accompany.
+        for (CommandLineOptionElement option : result) {
+            ExecutableElement target = companionOf.get(option);
+            if (target == null) continue;
+
+            CommandLineOptionElement targetOption = byMethod.get(target);
+            if (targetOption != null) targetOption.companions.add(option);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The {@link CommandLineOption} annotation of the <var>element</var>, or {@code null}
+     */
+    @Nullable static AnnotationMirror
+    getCommandLineOptionAnnotation(Element element) {
+
+        for (AnnotationMirror am : element.getAnnotationMirrors()) {
+            Element annotationType = am.getAnnotationType().asElement();
+            if (
+                annotationType instanceof TypeElement
+                && ((TypeElement) annotationType).getQualifiedName().contentEquals(CommandLineOption.class.getName())
+            ) return am;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return {@code null} iff the method with the given doc comment is not a companion of another command line
+     *         option
+     */
+    @Nullable private static ExecutableElement
+    getCompanionOf(DocCommentTree dct, DocTreePath path, HtmlRenderer html) {
+
+        if (!dct.getFullBody().isEmpty()) return null;
+
+        for (DocTree bt : dct.getBlockTags()) {
+            if (bt.getKind() != DocTree.Kind.SEE) continue;
+
+            List<? extends DocTree> reference = ((SeeTree) bt).getReference();
+            if (reference.isEmpty() || reference.get(0).getKind() != DocTree.Kind.REFERENCE) return null;
+
+            Element target = html.resolve((ReferenceTree) reference.get(0), path);
+            if (
+                target instanceof ExecutableElement
+                && CommandLineOptionElement.getCommandLineOptionAnnotation(target) != null
+            ) return (ExecutableElement) target;
+
+            return null;
+        }
+
+        return null;
+    }
+
+    private static String[]
+    names(ExecutableElement method, AnnotationMirror cloam) {
+
+        AnnotationValue names = CommandLineOptionElement.getElementValue(cloam, "name");
+        if (names != null) {
+            List<String> result = new ArrayList<String>();
+            for (AnnotationValue av : CommandLineOptionElement.asList(names)) result.add((String) av.getValue());
+            return result.toArray(new String[result.size()]);
+        }
+
+        String n = method.getSimpleName().toString();
+        if (n.startsWith("set")) {
+            n = n.substring(3);
+        } else
+        if (n.startsWith("add")) {
+            n = n.substring(3);
+        } else
+        if (n.startsWith("is")) {
+            n = n.substring(2);
+        }
+        return new String[] { Notations.fromCamelCase(n).toLowerCaseHyphenated() };
+    }
+
+    private static Cardinality
+    cardinality(AnnotationMirror cloam) {
+
+        AnnotationValue av = CommandLineOptionElement.getElementValue(cloam, "cardinality");
+        if (av == null) return Cardinality.OPTIONAL;
+
+        return Cardinality.valueOf(((VariableElement) av.getValue()).getSimpleName().toString());
+    }
+
+    private static List<String>
+    groups(@Nullable DocCommentTree dct, @Nullable DocTreePath path, HtmlRenderer html) {
+
+        if (dct == null || path == null) return Collections.emptyList();
+
+        List<String> result = new ArrayList<String>();
+        for (DocTree bt : dct.getBlockTags()) {
+            if (bt.getKind() != DocTree.Kind.UNKNOWN_BLOCK_TAG) continue;
+
+            UnknownBlockTagTree ubtt    = (UnknownBlockTagTree) bt;
+            String              tagName = ubtt.getTagName();
+
+            if (MainDoclet.BT_main_commandLineOptionGroup.equals(tagName)) {
+                result.add(HtmlRenderer.textOf(ubtt.getContent()));
+            } else
+            if ("command-line-option-group".equals(tagName)) {
+
+                // Backwards compatibility; discouraged, because the tag name lacks a ".".
+                html.reporter.print(
+                    Diagnostic.Kind.WARNING,
+                    path,
+                    (
+                        "\"@command-line-option-group\" is deprecated; "
+                        + "use \"@"
+                        + MainDoclet.BT_main_commandLineOptionGroup
+                        + "\" instead"
+                    )
+                );
+                result.add(HtmlRenderer.textOf(ubtt.getContent()));
+            }
+        }
+
+        return result;
+    }
+
+    @Nullable private static AnnotationValue
+    getElementValue(AnnotationMirror am, String name) {
+
+        for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> e : am.getElementValues().entrySet()) {
+            if (e.getKey().getSimpleName().contentEquals(name)) return e.getValue();
+        }
+
+        return null;
+    }
+
+    /**
+     * Array-valued annotation elements have a {@link List} value, even if only one element is given.
+     */
+    @SuppressWarnings("unchecked") private static List<? extends AnnotationValue>
+    asList(AnnotationValue av) {
+        Object value = av.getValue();
+        return value instanceof List ? (List<? extends AnnotationValue>) value : Collections.singletonList(av);
+    }
+}
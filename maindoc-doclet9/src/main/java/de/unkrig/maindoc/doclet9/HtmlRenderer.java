@@ -0,0 +1,460 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2014, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet9;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.util.Elements;
+import javax.tools.Diagnostic;
+
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.doctree.DocTree;
+import com.sun.source.doctree.EntityTree;
+import com.sun.source.doctree.ErroneousTree;
+import com.sun.source.doctree.LinkTree;
+import com.sun.source.doctree.LiteralTree;
+import com.sun.source.doctree.ReferenceTree;
+import com.sun.source.doctree.TextTree;
+import com.sun.source.doctree.UnknownInlineTagTree;
+import com.sun.source.doctree.ValueTree;
+import com.sun.source.util.DocTreePath;
+import com.sun.source.util.DocTrees;
+import com.sun.source.util.TreePath;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+import de.unkrig.maindoc.doclet.ReferenceCache;
+import jdk.javadoc.doclet.DocletEnvironment;
+import jdk.javadoc.doclet.Reporter;
+
+/**
+ * Renders doc comments into HTML; the {@code jdk.javadoc.doclet} counterpart of the {@code Html} class of {@code
+ * de.unkrig.commons.doclet}.
+ * <p>
+ *   Doc comments are parsed lazily, i.e. only when they are rendered, and only the comments of the elements that
+ *   are actually rendered.
+ * </p>
+ * <p>
+ *   References are resolved through {@link ReferenceCache}s, which the doclet keeps for the entire run, so that each
+ *   distinct reference is resolved, and reported as unresolvable, only once.
+ * </p>
+ * <p>
+ *   Subclasses may override {@link #expandInlineTag(UnknownInlineTagTree, DocTreePath, Element)} to implement custom
+ *   inline tags.
+ * </p>
+ */
+class HtmlRenderer {
+
+    // Custom inline tag names.
+    public static final String IT_constantsof      = "constantsof";
+    public static final String IT_constantsofplain = "constantsofplain";
+
+    protected final DocletEnvironment env;
+    protected final DocTrees          docTrees;
+    protected final Elements          elements;
+    protected final Reporter          reporter;
+
+    /** The targets of the references in tags like "{@code @see}", "{@code {@link}}" and "{@code {@value}}". */
+    private final ReferenceCache<TypeElement, Element> references;
+
+    /** The targets of the references in textual form, see {@link #resolveReference(String, Element, DocTreePath)}. */
+    private final ReferenceCache<TypeElement, Element> textualReferences;
+
+    HtmlRenderer(
+        DocletEnvironment                    env,
+        Reporter                             reporter,
+        ReferenceCache<TypeElement, Element> references,
+        ReferenceCache<TypeElement, Element> textualReferences
+    ) {
+        this.env               = env;
+        this.docTrees          = env.getDocTrees();
+        this.elements          = env.getElementUtils();
+        this.reporter          = reporter;
+        this.references        = references;
+        this.textualReferences = textualReferences;
+    }
+
+    /**
+     * @return The doc comment of the <var>element</var>, or {@code null} iff it has none (e.g. because it was loaded
+     *         from a class file)
+     */
+    @Nullable DocCommentTree
+    docCommentOf(Element element) {
+        return this.docTrees.getDocCommentTree(element);
+    }
+
+    /**
+     * @return The path of the <var>docComment</var> of the <var>element</var>, for resolving references and for
+     *         reporting problems
+     */
+    DocTreePath
+    pathOf(Element element, DocCommentTree docComment) {
+        TreePath treePath = this.docTrees.getPath(element);
+        assert treePath != null : element;
+        return new DocTreePath(treePath, docComment);
+    }
+
+    /**
+     * @return The HTML rendering of the main description of the doc comment of the <var>element</var>, or {@code ""}
+     *         iff the <var>element</var> has no doc comment
+     */
+    String
+    fromDocComment(Element element) {
+
+        DocCommentTree dct = this.docCommentOf(element);
+        if (dct == null) return "";
+
+        return this.fromTrees(dct.getFullBody(), this.pathOf(element, dct), element);
+    }
+
+    /**
+     * @param commentPath The path of the doc comment that contains the <var>trees</var>
+     * @param ref         The element that the doc comment belongs to
+     */
+    String
+    fromTrees(List<? extends DocTree> trees, DocTreePath commentPath, Element ref) {
+
+        StringBuilder sb = new StringBuilder();
+        for (DocTree tree : trees) sb.append(this.expandTree(tree, commentPath, ref));
+
+        return sb.toString();
+    }
+
+    /**
+     * @return The first sentence of the <var>trees</var>, rendered as HTML
+     */
+    String
+    firstSentence(List<? extends DocTree> trees, DocTreePath commentPath, Element ref) {
+        return this.fromTrees(this.docTrees.getFirstSentence(trees), commentPath, ref);
+    }
+
+    private String
+    expandTree(DocTree tree, DocTreePath commentPath, Element ref) {
+
+        switch (tree.getKind()) {
+
+        case TEXT:
+            return ((TextTree) tree).getBody();
+
+        case ENTITY:
+            return "&" + ((EntityTree) tree).getName() + ";";
+
+        case START_ELEMENT:
+        case END_ELEMENT:
+        case COMMENT:
+            return tree.toString();
+
+        case ERRONEOUS:
+            return ((ErroneousTree) tree).getBody();
+
+        case CODE:
+            return "<code>" + HtmlRenderer.escape(((LiteralTree) tree).getBody().getBody()) + "</code>";
+
+        case LITERAL:
+            return HtmlRenderer.escape(((LiteralTree) tree).getBody().getBody());
+
+        case LINK:
+        case LINK_PLAIN:
+            {
+                LinkTree lt = (LinkTree) tree;
+
+                String label = this.fromTrees(lt.getLabel(), commentPath, ref).trim();
+                if (label.isEmpty()) {
+                    String signature = lt.getReference().getSignature();
+                    if (signature.startsWith("#")) signature = signature.substring(1);
+                    label = HtmlRenderer.escape(signature.replace('#', '.'));
+                }
+
+                // Check that the reference is valid, although we cannot link to it.
+                this.resolve(lt.getReference(), commentPath);
+
+                return tree.getKind() == DocTree.Kind.LINK ? "<code>" + label + "</code>" : label;
+            }
+
+        case VALUE:
+            {
+                ReferenceTree reference = ((ValueTree) tree).getReference();
+
+                Element target = reference == null ? ref : this.resolve(reference, commentPath);
+                if (target == null) return "";
+
+                Object constantValue = (
+                    target instanceof VariableElement
+                    ? ((VariableElement) target).getConstantValue()
+                    : null
+                );
+                if (constantValue == null) {
+                    this.reporter.print(Diagnostic.Kind.ERROR, commentPath, "\"" + target + "\" is not a constant");
+                    return "";
+                }
+
+                return HtmlRenderer.escape(this.elements.getConstantExpression(constantValue));
+            }
+
+        case DOC_ROOT:
+            return HtmlRenderer.docRoot(ref);
+
+        case INHERIT_DOC:
+            return "";
+
+        case UNKNOWN_INLINE_TAG:
+            return this.expandInlineTag((UnknownInlineTagTree) tree, commentPath, ref);
+
+        default:
+            return tree.toString();
+        }
+    }
+
+    /**
+     * Expands the non-standard inline tags; may be overridden to implement more of them.
+     *
+     * @param commentPath The path of the doc comment that contains the <var>tag</var>
+     * @param ref         The element that the doc comment belongs to
+     */
+    protected String
+    expandInlineTag(UnknownInlineTagTree tag, DocTreePath commentPath, Element ref) {
+
+        String tagName = tag.getTagName();
+
+        if (HtmlRenderer.IT_constantsof.equals(tagName) || HtmlRenderer.IT_constantsofplain.equals(tagName)) {
+
+            Element target = this.resolveReference(HtmlRenderer.textOf(tag.getContent()), ref, commentPath);
+            if (target == null) return "";
+            if (target.getKind() != ElementKind.ENUM) {
+                this.reporter.print(
+                    Diagnostic.Kind.ERROR,
+                    commentPath,
+                    "\"{@" + tagName + "}\" requires a reference to an enum type"
+                );
+                return "";
+            }
+
+            boolean plain = HtmlRenderer.IT_constantsofplain.equals(tagName);
+
+            List<String> constants = new ArrayList<String>();
+            for (Element e : target.getEnclosedElements()) {
+                if (e.getKind() != ElementKind.ENUM_CONSTANT) continue;
+                constants.add(plain ? e.getSimpleName().toString() : "<code>" + e.getSimpleName() + "</code>");
+            }
+
+            return String.join(", ", constants);
+        }
+
+        this.reporter.print(Diagnostic.Kind.WARNING, commentPath, "Unknown inline tag \"{@" + tagName + "}\"");
+
+        return tag.toString();
+    }
+
+    /**
+     * @return The element designated by the <var>reference</var>, or {@code null} iff it cannot be resolved (which
+     *         was reported as an error, but only once per type, reference and doclet run)
+     */
+    @Nullable Element
+    resolve(ReferenceTree reference, DocTreePath commentPath) {
+
+        TypeElement context   = HtmlRenderer.typeOf(this.docTrees.getElement(commentPath.getTreePath()));
+        String      signature = reference.getSignature();
+        if (this.references.containsKey(context, signature)) return this.references.get(context, signature);
+
+        DocTreePath path   = DocTreePath.getPath(commentPath, reference);
+        Element     result = path == null ? null : this.docTrees.getElement(path);
+        if (result == null) {
+            this.reporter.print(
+                Diagnostic.Kind.ERROR,
+                commentPath,
+                "Reference \"" + signature + "\" cannot be resolved"
+            );
+        }
+
+        this.references.put(context, signature, result);
+        return result;
+    }
+
+    /**
+     * Resolves a reference in textual form, like in "{@code {@main.maindoc pkg.Class#method(String[])}}". The type name
+     * is resolved like a simple name in the compilation unit of the <var>ref</var>, except that imports are not
+     * considered.
+     *
+     * @param commentPath The path of the doc comment that contains the <var>reference</var>, for reporting problems
+     * @return            {@code null} iff the <var>reference</var> cannot be resolved (which was reported as an error,
+     *                    but only once per type, reference and doclet run)
+     */
+    @Nullable Element
+    resolveReference(String reference, Element ref, DocTreePath commentPath) {
+
+        reference = reference.trim();
+
+        TypeElement context = HtmlRenderer.typeOf(ref);
+        if (this.textualReferences.containsKey(context, reference)) {
+            return this.textualReferences.get(context, reference);
+        }
+
+        Element result = this.resolveReference2(reference, ref);
+        if (result == null) {
+            this.reporter.print(
+                Diagnostic.Kind.ERROR,
+                commentPath,
+                "Reference \"" + reference + "\" cannot be resolved"
+            );
+        }
+
+        this.textualReferences.put(context, reference, result);
+        return result;
+    }
+
+    @Nullable private Element
+    resolveReference2(String reference, Element ref) {
+
+        int    hash     = reference.indexOf('#');
+        String typeName = hash == -1 ? reference : reference.substring(0, hash);
+
+        TypeElement type = typeName.isEmpty() ? HtmlRenderer.typeOf(ref) : this.resolveType(typeName, ref);
+        if (type == null || hash == -1) return type;
+
+        String member = reference.substring(hash + 1);
+        int    lp     = member.indexOf('(');
+
+        String memberName = (lp == -1 ? member : member.substring(0, lp)).trim();
+        String signature  = lp == -1 ? null : HtmlRenderer.removeWhitespace(member.substring(lp));
+
+        for (Element e : type.getEnclosedElements()) {
+            if (!e.getSimpleName().contentEquals(memberName)) continue;
+
+            if (signature == null) return e;
+
+            if (
+                e instanceof ExecutableElement
+                && HtmlRenderer.removeWhitespace(MainDoclet.flatSignature((ExecutableElement) e)).equals(signature)
+            ) return e;
+        }
+
+        return null;
+    }
+
+    @Nullable private TypeElement
+    resolveType(String typeName, Element ref) {
+
+        TypeElement result = this.elements.getTypeElement(typeName);
+        if (result != null) return result;
+
+        // Nested in the type of the ref, or in one of its enclosing types?
+        for (TypeElement t = HtmlRenderer.typeOf(ref); t != null; t = HtmlRenderer.typeOf(t.getEnclosingElement())) {
+            result = this.elements.getTypeElement(t.getQualifiedName() + "." + typeName);
+            if (result != null) return result;
+        }
+
+        // In the package of the ref?
+        PackageElement pe = this.elements.getPackageOf(ref);
+        if (!pe.isUnnamed()) {
+            result = this.elements.getTypeElement(pe.getQualifiedName() + "." + typeName);
+            if (result != null) return result;
+        }
+
+        return this.elements.getTypeElement("java.lang." + typeName);
+    }
+
+    /**
+     * @return The <var>element</var> itself iff it is a type, otherwise the type that encloses it, or {@code null}
+     */
+    @Nullable static TypeElement
+    typeOf(@Nullable Element element) {
+
+        for (Element e = element; e != null; e = e.getEnclosingElement()) {
+            if (e instanceof TypeElement) return (TypeElement) e;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The concatenated source text of the <var>trees</var>, e.g. the argument of a custom tag
+     */
+    static String
+    textOf(List<? extends DocTree> trees) {
+
+        StringBuilder sb = new StringBuilder();
+        for (DocTree tree : trees) sb.append(tree);
+
+        return sb.toString().trim();
+    }
+
+    /**
+     * @return The relative path from the output files of the <var>ref</var> to the destination directory
+     */
+    private static String
+    docRoot(Element ref) {
+
+        TypeElement type = HtmlRenderer.typeOf(ref);
+        if (type == null) return ".";
+
+        // The output files are stored in "<package-path>/<outer-class>/<inner-class>.<method>.html".
+        String qualifiedName = type.getQualifiedName().toString();
+
+        StringBuilder sb = new StringBuilder();
+        for (int idx = qualifiedName.indexOf('.'); idx != -1; idx = qualifiedName.indexOf('.', idx + 1)) {
+            if (sb.length() > 0) sb.append('/');
+            sb.append("..");
+        }
+
+        return sb.length() == 0 ? "." : sb.toString();
+    }
+
+    static String
+    escape(String text) {
+
+        StringBuilder sb = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&': sb.append("&amp;"); break;
+            case '<': sb.append("&lt;");  break;
+            case '>': sb.append("&gt;");  break;
+            default:  sb.append(c);       break;
+            }
+        }
+
+        return sb.toString();
+    }
+
+    private static String
+    removeWhitespace(String s) {
+
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) sb.append(c);
+        }
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,1381 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2014, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet9;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.ModuleElement;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.ArrayType;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.type.TypeVariable;
+import javax.lang.model.util.ElementFilter;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+
+import org.w3c.dom.Document;
+
+import com.sun.source.doctree.DeprecatedTree;
+import com.sun.source.doctree.DocCommentTree;
+import com.sun.source.doctree.DocTree;
+import com.sun.source.doctree.ParamTree;
+import com.sun.source.doctree.ReferenceTree;
+import com.sun.source.doctree.SeeTree;
+import com.sun.source.doctree.UnknownBlockTagTree;
+import com.sun.source.doctree.UnknownInlineTagTree;
+import com.sun.source.util.DocTreePath;
+
+import de.unkrig.commons.io.IoUtil;
+import de.unkrig.commons.lang.AssertionUtil;
+import de.unkrig.commons.lang.protocol.ConsumerWhichThrows;
+import de.unkrig.commons.nullanalysis.Nullable;
+import de.unkrig.commons.text.Notations;
+import de.unkrig.commons.util.CommandLineOptions;
+import de.unkrig.commons.util.annotation.CommandLineOption;
+import de.unkrig.commons.util.annotation.CommandLineOption.Cardinality;
+import de.unkrig.html2txt.Html2Txt;
+import de.unkrig.maindoc.doclet.ArchiveWriter;
+import de.unkrig.maindoc.doclet.DocletStats;
+import de.unkrig.maindoc.doclet.DocletStats.Measurement;
+import de.unkrig.maindoc.doclet.DocletStats.Phase;
+import de.unkrig.maindoc.doclet.DocumentEmitter;
+import de.unkrig.maindoc.doclet.DocumentModel;
+import de.unkrig.maindoc.doclet.HelpClassGenerator;
+import de.unkrig.maindoc.doclet.IndentingWriter;
+import de.unkrig.maindoc.doclet.JsonEmitter;
+import de.unkrig.maindoc.doclet.ManPageEmitter;
+import de.unkrig.maindoc.doclet.MarkdownEmitter;
+import de.unkrig.maindoc.doclet.MethodSelector;
+import de.unkrig.maindoc.doclet.OptionTableGenerator;
+import de.unkrig.maindoc.doclet.OutputFiles;
+import de.unkrig.maindoc.doclet.OutputFormat;
+import de.unkrig.maindoc.doclet.OutputStage;
+import de.unkrig.maindoc.doclet.ReferenceCache;
+import de.unkrig.maindoc.doclet.TypeHierarchy;
+import jdk.javadoc.doclet.Doclet;
+import jdk.javadoc.doclet.DocletEnvironment;
+import jdk.javadoc.doclet.Reporter;
+
+/**
+ * The MAIN doclet, implemented against the {@code jdk.javadoc.doclet} API, which (unlike the {@code com.sun.javadoc}
+ * API) is available on JDK 9 and later.
+ * <p>
+ *   Supports the same command line options, tags and output files as {@link de.unkrig.maindoc.doclet.MainDoclet},
+ *   except that {@code {@link}} tags render as labels, not as hyperlinks.
+ * </p>
+ * <p>
+ *   The doclet environment is walked lazily: Only the methods of the specified types are enumerated, the method
+ *   signature is only computed for methods with a matching name, and doc comments are only parsed for the selected
+ *   methods and for the command line option setters that these reference through {@code {@main.commandLineOptions}}
+ *   tags.
+ * </p>
+ */
+public
+class MainDoclet implements Doclet {
+
+    static { AssertionUtil.enableAssertionsForThisClass(); }
+
+    // Block tag names, without the leading "@".
+    public static final String BT_main_commandLineOptionGroup   = "main.commandLineOptionGroup";
+    public static final String BT_main_commandLineOptionComment = "main.commandLineOptionComment";
+
+    // Inline tag names, without the leading "@".
+    public static final String IT_main_commandLineOptions = "main.commandLineOptions";
+    public static final String IT_main_maindoc            = "main.maindoc";
+
+    // The configuration of this doclet run; set through the command line options.
+    private File                 destinationDirectory  = new File(".");
+    private final MethodSelector methods               = new MethodSelector();
+    private Charset              htmlOutputFileCharset = Charset.defaultCharset();
+    @Nullable private String     charset;
+    @Nullable private String     doctitle;
+    private boolean              quiet;
+    @Nullable private Charset    txtOutputFileCharset;
+    @Nullable private Integer    txtPageLeftMarginWidth;
+    @Nullable private Integer    txtPageRightMarginWidth;
+    @Nullable private Integer    txtPageWidth;
+    private int                  threads = 1;
+    private boolean              printStats;
+    @Nullable private File       statsFile;
+    @Nullable private File       archiveFile;
+    @Nullable private File       helpClassDestination;
+    @Nullable private File       optionTableDestination;
+    private final Set<OutputFormat> formats = EnumSet.noneOf(OutputFormat.class);
+
+    /**
+     * Writes the output files, and leaves those alone that would not change.
+     */
+    private final OutputFiles outputFiles = new OutputFiles();
+
+    /**
+     * The emitters of the {@link #addFormat(String) output formats}; set up when the run starts.
+     */
+    private final Map<OutputFormat, DocumentEmitter> emitters = new EnumMap<>(OutputFormat.class);
+
+    /**
+     * Iff an {@link #setArchive(File) archive} is configured: Receives all documents.
+     */
+    @Nullable private ArchiveWriter archive;
+
+    /**
+     * Iff a {@link #setHelpClassDestination(File) help class destination} is configured: Collects the plain-text
+     * documents.
+     */
+    @Nullable private HelpClassGenerator helpClasses;
+
+    /**
+     * Iff an {@link #setOptionTableDestination(File) option table destination} is configured: Collects the command
+     * line options of the types with documented methods.
+     */
+    @Nullable private OptionTableGenerator optionTables;
+
+    /**
+     * Measures the phases of the doclet run, and emits {@link PhaseEvent}s; see {@link #setStats()}.
+     */
+    private DocletStats stats = new DocletStats(false, PhaseEvent.LISTENER);
+
+    /**
+     * The time and the allocation of all option applications; JAVADOC applies the options before it invokes {@link
+     * #run(DocletEnvironment)}.
+     */
+    private long optionsNanos, optionsAllocatedBytes;
+
+    /**
+     * The destination directories of individual packages; see {@link #addPackageDestination(String, File)}.
+     */
+    private final Map<String, File> packageDestinations = new HashMap<>();
+
+    @Nullable private Reporter reporter;
+
+    /**
+     * The command line options declared by each type (but not by its supertypes); computed lazily, because most
+     * types have no command line options at all.
+     */
+    private final Map<TypeElement, List<CommandLineOptionElement>>
+    declaredCommandLineOptions = new HashMap<>();
+
+    /**
+     * The rendered {@code <dt>} / {@code <dd>} pairs of the command line options declared by each type (but not by
+     * its supertypes), by group name ({@code null} meaning "no group").
+     */
+    private final Map<TypeElement, Map<String, String>>
+    renderedCommandLineOptions = new HashMap<>();
+
+    /**
+     * The models of the command line options declared by each type (but not by its supertypes).
+     */
+    private final Map<TypeElement, List<DocumentModel.Option>>
+    commandLineOptionModels = new HashMap<>();
+
+    /**
+     * The classes and interfaces whose command line options each type documents, in {@link TypeHierarchy C3 order};
+     * memoized for the doclet run, because options are often "mixed in" through deep and wide hierarchies.
+     */
+    private final TypeHierarchy<TypeElement> typeHierarchy = new TypeHierarchy<TypeElement>() {
+
+        @Override protected List<TypeElement>
+        directSupertypesOf(TypeElement te) {
+
+            List<TypeElement> result = new ArrayList<>();
+
+            TypeElement sc = MainDoclet.superclassOf(te);
+            if (sc != null) result.add(sc);
+            for (TypeMirror i : te.getInterfaces()) {
+                if (i.getKind() == TypeKind.DECLARED) result.add((TypeElement) ((DeclaredType) i).asElement());
+            }
+
+            return result;
+        }
+    };
+
+    /**
+     * The command line options that the {@code {@main.commandLineOptions}} tags of the document currently being
+     * rendered expand to.
+     */
+    private Set<DocumentModel.Option> documentedOptions = new LinkedHashSet<>();
+
+    /**
+     * The HTML renderings of the elements that {@code {@main.maindoc}} tags include; an element that is included in
+     * many documents is rendered only once per doclet run.
+     */
+    private final Map<Element, String> includedElements = new HashMap<>();
+
+    /**
+     * The targets of the references in tags like "{@code @see}" and "{@code {@link}}", by the type that contains the
+     * tag and the reference; the unresolvable ones are reported only once.
+     */
+    private final ReferenceCache<TypeElement, Element> references = new ReferenceCache<>();
+
+    /**
+     * The targets of the references in "{@code {@main.maindoc}}" and "{@code {@constantsof}}" tags, by the type that
+     * contains the tag and the reference; the unresolvable ones are reported only once.
+     */
+    private final ReferenceCache<TypeElement, Element> textualReferences = new ReferenceCache<>();
+
+    /**
+     * The {@link #documentedOptions} of each of the {@link #includedElements}.
+     */
+    private final Map<Element, Set<DocumentModel.Option>> includedElementOptions = new HashMap<>();
+
+    /**
+     * The elements that are currently being rendered, for the detection of (direct or indirect) self-inclusion
+     * through {@code {@main.maindoc}} tags.
+     */
+    private final Set<Element> elementsInProgress = new HashSet<>();
+
+    /**
+     * The number of {@code {@main.maindoc}} cycles that were broken so far; renderings that involve a broken cycle
+     * are incomplete and must not be cached.
+     */
+    private int brokenCycles;
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setDestination(File)
+     */
+    @CommandLineOption(name = { "-d", "--destination" }) public void
+    setDestination(File destinationDirectory) { this.destinationDirectory = destinationDirectory; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#addPackageDestination(String, File)
+     */
+    @CommandLineOption(cardinality = Cardinality.ANY) public void
+    addPackageDestination(String packageName, File destinationDirectory) {
+        this.packageDestinations.put(packageName, destinationDirectory);
+    }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setArchive(File)
+     */
+    @CommandLineOption public void
+    setArchive(File file) { this.archiveFile = file; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#addMethod(String)
+     */
+    @CommandLineOption(cardinality = Cardinality.ANY) public void
+    addMethod(String method) { this.methods.add(method); }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#addFormat(String)
+     */
+    @CommandLineOption(cardinality = Cardinality.ANY) public void
+    addFormat(String format) { this.formats.add(OutputFormat.fromName(format)); }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setDocencoding(Charset)
+     */
+    @CommandLineOption public void
+    setDocencoding(Charset charset) { this.htmlOutputFileCharset = charset; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setCharset(String)
+     */
+    @CommandLineOption public void
+    setCharset(String charset) { this.charset = charset; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setDoctitle(String)
+     */
+    @CommandLineOption public void
+    setDoctitle(String title) { this.doctitle = title; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setQuiet()
+     */
+    @CommandLineOption public void
+    setQuiet() { this.quiet = true; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setThreads(int)
+     */
+    @CommandLineOption public void
+    setThreads(int n) {
+        if (n < 1) throw new IllegalArgumentException("Invalid number of threads " + n);
+        this.threads = n;
+    }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setStats()
+     */
+    @CommandLineOption public void
+    setStats() { this.printStats = true; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setStatsFile(File)
+     */
+    @CommandLineOption public void
+    setStatsFile(File file) { this.statsFile = file; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setTxtOutputFileCharset(Charset)
+     */
+    @CommandLineOption public void
+    setTxtOutputFileCharset(Charset charset) { this.txtOutputFileCharset = charset; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setHelpClassDestination(File)
+     */
+    @CommandLineOption public void
+    setHelpClassDestination(File directory) { this.helpClassDestination = directory; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setOptionTableDestination(File)
+     */
+    @CommandLineOption public void
+    setOptionTableDestination(File directory) { this.optionTableDestination = directory; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setTxtPageLeftMarginWidth(int)
+     */
+    @CommandLineOption public void
+    setTxtPageLeftMarginWidth(int n) { this.txtPageLeftMarginWidth = n; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setTxtPageRightMarginWidth(int)
+     */
+    @CommandLineOption public void
+    setTxtPageRightMarginWidth(int n) { this.txtPageRightMarginWidth = n; }
+
+    /**
+     * @see de.unkrig.maindoc.doclet.MainDoclet#setTxtPageWidth(int)
+     */
+    @CommandLineOption public void
+    setTxtPageWidth(int n) { this.txtPageWidth = n; }
+
+    // Compatibility options; ignored.
+    @CommandLineOption public void setBottom(String text) {}
+    @CommandLineOption public void addLink(String extDocUrl) {}
+    @CommandLineOption public void addLinkoffline(String extDocUrl, String packageListLoc) {}
+    @CommandLineOption public void setWindowtitle(String title) {}
+
+    @Override public void
+    init(Locale locale, Reporter reporter) { this.reporter = reporter; }
+
+    @Override public String
+    getName() { return "maindoc"; }
+
+    @Override public SourceVersion
+    getSupportedSourceVersion() { return SourceVersion.latest(); }
+
+    /**
+     * @return An {@link Option} for each {@link CommandLineOption}-annotated method of this class
+     */
+    @Override public Set<? extends Option>
+    getSupportedOptions() {
+
+        Set<Option> result = new HashSet<>();
+        for (final Method m : MainDoclet.class.getMethods()) {
+
+            CommandLineOption clo = m.getAnnotation(CommandLineOption.class);
+            if (clo == null) continue;
+
+            final List<String> names;
+            if (clo.name().length > 0) {
+                names = Arrays.asList(clo.name());
+            } else {
+                String n = m.getName();
+                if (n.startsWith("set") || n.startsWith("add")) n = n.substring(3);
+                n = Notations.fromCamelCase(n).toLowerCaseHyphenated();
+                names = Arrays.asList("-" + n, "--" + n);
+            }
+
+            final StringBuilder parameters = new StringBuilder();
+            for (Class<?> pt : m.getParameterTypes()) {
+                if (parameters.length() > 0) parameters.append(' ');
+                parameters.append('<').append(pt.getSimpleName().toLowerCase()).append('>');
+            }
+
+            result.add(new Option() {
+
+                @Override public int          getArgumentCount() { return m.getParameterTypes().length;   }
+                @Override public String       getDescription()   { return "See the MAINDOC documentation"; }
+                @Override public Option.Kind  getKind()          { return Option.Kind.STANDARD;           }
+                @Override public List<String> getNames()         { return names;                          }
+                @Override public String       getParameters()    { return parameters.toString();          }
+
+                @Override public boolean
+                process(String option, List<String> arguments) {
+
+                    long startNanos          = System.nanoTime();
+                    long startAllocatedBytes = DocletStats.currentThreadAllocatedBytes();
+
+                    String[] args = new String[1 + arguments.size()];
+                    args[0] = option;
+                    for (int i = 0; i < arguments.size(); i++) args[1 + i] = arguments.get(i);
+
+                    try {
+                        CommandLineOptions.applyCommandLineOption(option, m, args, 1, MainDoclet.this);
+                    } catch (Exception e) {
+                        MainDoclet.this.reporter().print(
+                            Diagnostic.Kind.ERROR,
+                            "Parsing command line option \"" + option + "\": " + e
+                        );
+                        return false;
+                    }
+
+                    MainDoclet.this.optionsNanos += System.nanoTime() - startNanos;
+                    if (startAllocatedBytes != -1) {
+                        MainDoclet.this.optionsAllocatedBytes += (
+                            DocletStats.currentThreadAllocatedBytes() - startAllocatedBytes
+                        );
+                    }
+
+                    return true;
+                }
+            });
+        }
+
+        return result;
+    }
+
+    @Override public boolean
+    run(DocletEnvironment env) {
+
+        this.stats = new DocletStats(this.printStats || this.statsFile != null, PhaseEvent.LISTENER);
+        this.stats.record(Phase.OPTIONS, this.optionsNanos, this.optionsAllocatedBytes);
+
+        try {
+            boolean result = this.run2(env);
+
+            this.reportStats();
+
+            return result;
+        } catch (IOException ioe) {
+            this.reporter().print(Diagnostic.Kind.ERROR, String.valueOf(ioe));
+            return false;
+        }
+    }
+
+    private boolean
+    run2(DocletEnvironment env) throws IOException {
+
+        // Enumerate the specified types, without parsing anything. (A set, because a type may be specified both on
+        // its own and as a nested type, e.g. when source files are specified.)
+        Set<TypeElement> allTypes = new LinkedHashSet<>();
+        Measurement      m        = this.stats.begin(Phase.CLASS_COLLECTION, env);
+        try {
+            for (Element e : env.getSpecifiedElements()) {
+                if (e instanceof TypeElement) {
+                    MainDoclet.addTypes((TypeElement) e, env, allTypes);
+                } else
+                if (e instanceof PackageElement) {
+                    for (TypeElement te : ElementFilter.typesIn(e.getEnclosedElements())) {
+                        MainDoclet.addTypes(te, env, allTypes);
+                    }
+                } else
+                if (e instanceof ModuleElement) {
+                    for (PackageElement pe : ElementFilter.packagesIn(e.getEnclosedElements())) {
+                        if (!env.isIncluded(pe)) continue;
+                        for (TypeElement te : ElementFilter.typesIn(pe.getEnclosedElements())) {
+                            MainDoclet.addTypes(te, env, allTypes);
+                        }
+                    }
+                }
+            }
+        } finally {
+            this.stats.end(m);
+        }
+
+        if (allTypes.isEmpty()) {
+            this.reporter().print(Diagnostic.Kind.ERROR, "No classes specified.");
+            return false;
+        }
+
+        if (this.methods.isEmpty()) this.methods.add("main(String[])");
+
+        if (this.formats.isEmpty()) {
+            this.formats.add(OutputFormat.HTML);
+            this.formats.add(OutputFormat.TXT);
+        }
+        for (OutputFormat format : this.formats) this.emitters.put(format, this.emitter(format));
+
+        // The doc comments are rendered on this thread, because the doclet API is not thread-safe; the output files
+        // are written on the writer threads, while this thread renders the next doc comments.
+        File          archiveFile = this.archiveFile;
+        ArchiveWriter archive     = archiveFile == null ? null : new ArchiveWriter(archiveFile, this.outputFiles);
+        this.archive = archive;
+
+        File               helpClassDestination = this.helpClassDestination;
+        HelpClassGenerator helpClasses          = (
+            helpClassDestination == null
+            ? null
+            : new HelpClassGenerator(helpClassDestination, this.outputFiles)
+        );
+        this.helpClasses = helpClasses;
+
+        File                 optionTableDestination = this.optionTableDestination;
+        OptionTableGenerator optionTables           = (
+            optionTableDestination == null
+            ? null
+            : new OptionTableGenerator(optionTableDestination, this.outputFiles)
+        );
+        this.optionTables = optionTables;
+
+        OutputStage outputStage = new OutputStage(this.threads, 2 * this.threads);
+        try {
+            for (TypeElement te : allTypes) {
+                for (ExecutableElement method : this.methodsToDocument(te)) {
+                    outputStage.submit(this.convertDoc(method, te, env));
+                }
+            }
+
+            // Wait until all output files are written, and report the first failure.
+            outputStage.finish();
+
+            if (archive != null) archive.close();
+
+            if (helpClasses != null) helpClasses.generate();
+
+            if (optionTables != null) optionTables.generate();
+        } finally {
+            outputStage.abort();
+            if (archive != null) archive.abort();
+        }
+
+        if (!this.quiet) {
+            this.reporter().print(
+                Diagnostic.Kind.NOTE,
+                this.outputFiles.written() + " output file(s) written, " + this.outputFiles.unchanged() + " unchanged"
+            );
+        }
+
+        return true;
+    }
+
+    /**
+     * @return The methods of the type <var>te</var> that match the {@link #addMethod(String) method patterns}
+     */
+    private List<ExecutableElement>
+    methodsToDocument(TypeElement te) {
+
+        Measurement m = this.stats.begin(Phase.METHOD_MATCHING, te);
+        try {
+            List<ExecutableElement> result = new ArrayList<>();
+
+            // Checking the method name first saves the computation of the signature for nearly all methods.
+            for (ExecutableElement method : ElementFilter.methodsIn(te.getEnclosedElements())) {
+                String name = method.getSimpleName().toString();
+                if (!this.methods.mayMatch(name)) continue;
+                if (this.methods.matches(name, MainDoclet.flatSignature(method))) result.add(method);
+            }
+
+            return result;
+        } finally {
+            this.stats.end(m);
+        }
+    }
+
+    /**
+     * Reports and/or writes the {@link #stats}, as configured through {@link #setStats()} and {@link
+     * #setStatsFile(File)}.
+     */
+    private void
+    reportStats() throws IOException {
+
+        if (this.printStats) {
+            StringWriter sw = new StringWriter();
+            this.stats.printSummary(new PrintWriter(sw));
+            this.reporter().print(Diagnostic.Kind.NOTE, sw.toString());
+        }
+
+        File statsFile = this.statsFile;
+        if (statsFile != null) {
+            IoUtil.outputFilePrintWriter(
+                statsFile,
+                Charset.forName("UTF-8"),
+                new ConsumerWhichThrows<PrintWriter, IOException>() {
+
+                    @Override public void
+                    consume(PrintWriter pw) throws IOException { MainDoclet.this.stats.writeJson(pw); }
+                }
+            );
+        }
+    }
+
+    /**
+     * Adds the type <var>te</var> and the included types nested in it to the <var>result</var>.
+     */
+    private static void
+    addTypes(TypeElement te, DocletEnvironment env, Set<TypeElement> result) {
+
+        if (!env.isIncluded(te) || !result.add(te)) return;
+
+        for (TypeElement nested : ElementFilter.typesIn(te.getEnclosedElements())) {
+            MainDoclet.addTypes(nested, env, result);
+        }
+    }
+
+    /**
+     * Generates HTML from the doc comment of the given <var>method</var>.
+     *
+     * @return A task that emits the document in all {@link #addFormat(String) output formats}, and stores the results
+     *         in files in the {@link #setDestination(File) destination directory} (or in the {@link
+     *         #addPackageDestination(String, File) package's destination directory}, or in the {@link
+     *         #setArchive(File) archive})
+     */
+    private Callable<Void>
+    convertDoc(ExecutableElement method, TypeElement te, DocletEnvironment env) {
+
+        this.documentedOptions = new LinkedHashSet<>();
+
+        final String                     htmlText = this.convertDoc2(method, env);
+        final List<DocumentModel.Option> options  = new ArrayList<>(this.documentedOptions);
+
+        final String packageName   = env.getElementUtils().getPackageOf(te).getQualifiedName().toString();
+        final String className     = MainDoclet.relativeName(te.getQualifiedName().toString(), packageName);
+        final String memberName    = method.getSimpleName().toString();
+        final String flatSignature = MainDoclet.flatSignature(method);
+
+        OptionTableGenerator optionTables = this.optionTables;
+        if (optionTables != null && !optionTables.contains(packageName, className)) {
+            optionTables.add(packageName, className, this.optionTableOptionsOf(te, env));
+        }
+
+        // The path of the output files, relative to the destination directory, without the ".html" / ".txt" / ...
+        final String path = te.getQualifiedName().toString().replace('.', '/') + "." + memberName + flatSignature;
+
+        final File          destinationDirectory = this.destinationDirectory(packageName);
+        final ArchiveWriter archive              = this.archive;
+        final int           documentNumber       = archive == null ? -1 : archive.nextDocumentNumber();
+
+        // Report the output files in a deterministic order, although they may be written concurrently.
+        if (!this.quiet) {
+            for (OutputFormat format : this.emitters.keySet()) {
+                this.reporter().print(
+                    Diagnostic.Kind.NOTE,
+                    archive != null
+                    ? "Adding \"" + path + "." + format.extension + "\" to \"" + this.archiveFile + "\"..."
+                    : "Generating \"" + MainDoclet.outputFile(destinationDirectory, path, format) + "\"..."
+                );
+            }
+        }
+
+        return new Callable<Void>() {
+
+            @Override @Nullable public Void
+            call() throws Exception {
+
+                String htmlDocument;
+
+                Measurement m = MainDoclet.this.stats.begin(Phase.HTML_WRITING, path);
+                try {
+                    htmlDocument = MainDoclet.this.htmlDocument(htmlText);
+                } finally {
+                    MainDoclet.this.stats.end(m);
+                }
+
+                MainDoclet.this.emitDocument(
+                    new DocumentModel(
+                        packageName,
+                        className,
+                        memberName,
+                        flatSignature,
+                        path,
+                        htmlText,
+                        htmlDocument,
+                        options
+                    ),
+                    destinationDirectory,
+                    documentNumber
+                );
+                return null;
+            }
+        };
+    }
+
+    /**
+     * @return The {@link #addPackageDestination(String, File) destination directory of the package}, or, iff none is
+     *         configured, the {@link #setDestination(File) destination directory}
+     */
+    private File
+    destinationDirectory(String packageName) {
+        File result = this.packageDestinations.get(packageName);
+        return result != null ? result : this.destinationDirectory;
+    }
+
+    /**
+     * @param path The '/'-separated path of the output file, relative to the <var>destinationDirectory</var>, without
+     *             the file name extension
+     */
+    private static File
+    outputFile(File destinationDirectory, String path, OutputFormat format) {
+        return new File(destinationDirectory, path.replace('/', File.separatorChar) + "." + format.extension);
+    }
+
+    /**
+     * Emits the <var>document</var> in each of the {@link #addFormat(String) output formats}, and writes the results
+     * to files in the <var>destinationDirectory</var>, or, iff an {@link #setArchive(File) archive} is configured,
+     * puts them into the archive. Also adds the plain-text document to the {@link #setHelpClassDestination(File) help
+     * class}. May be called concurrently.
+     *
+     * @param documentNumber See {@link ArchiveWriter#nextDocumentNumber()}; only relevant iff an archive is configured
+     */
+    private void
+    emitDocument(DocumentModel document, File destinationDirectory, int documentNumber) throws IOException {
+
+        ArchiveWriter       archive = this.archive;
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+
+        if (archive == null) {
+            File parent = MainDoclet.outputFile(destinationDirectory, document.path, OutputFormat.HTML).getParentFile();
+            if (destinationDirectory.exists() && !parent.isDirectory()) parent.mkdirs();
+        }
+
+        String txtDocument = null;
+        for (Map.Entry<OutputFormat, DocumentEmitter> e : this.emitters.entrySet()) {
+            OutputFormat    format  = e.getKey();
+            DocumentEmitter emitter = e.getValue();
+
+            Measurement m = this.stats.begin(format.phase, document.path);
+            try {
+                String content = emitter.emit(document);
+                if (format == OutputFormat.TXT) txtDocument = content;
+
+                if (archive != null) {
+                    entries.put(document.path + "." + format.extension, content.getBytes(emitter.charset()));
+                } else {
+                    this.writeFile(
+                        content,
+                        MainDoclet.outputFile(destinationDirectory, document.path, format),
+                        emitter.charset()
+                    );
+                }
+            } finally {
+                this.stats.end(m);
+            }
+        }
+
+        if (archive != null) archive.put(documentNumber, entries);
+
+        HelpClassGenerator helpClasses = this.helpClasses;
+        if (helpClasses != null) {
+            if (txtDocument == null) {
+                Measurement m = this.stats.begin(Phase.HTML2TXT, document.path);
+                try {
+                    txtDocument = this.emitter(OutputFormat.TXT).emit(document);
+                } finally {
+                    this.stats.end(m);
+                }
+            }
+            helpClasses.add(
+                document.packageName,
+                document.className,
+                document.memberName,
+                document.flatSignature,
+                txtDocument
+            );
+        }
+    }
+
+    /**
+     * @return A new emitter for the given <var>format</var>, configured through the command line options
+     */
+    private DocumentEmitter
+    emitter(OutputFormat format) {
+
+        switch (format) {
+
+        case HTML:
+            return new DocumentEmitter() {
+
+                @Override public Charset
+                charset() { return MainDoclet.this.htmlOutputFileCharset; }
+
+                @Override public String
+                emit(DocumentModel document) { return document.htmlDocument; }
+            };
+
+        case TXT:
+            return new DocumentEmitter() {
+
+                @Override public Charset
+                charset() {
+                    Charset txtOutputFileCharset = MainDoclet.this.txtOutputFileCharset;
+                    return txtOutputFileCharset != null ? txtOutputFileCharset : Charset.defaultCharset();
+                }
+
+                @Override public String
+                emit(DocumentModel document) throws IOException { return MainDoclet.this.html2txt(document.dom()); }
+            };
+
+        case MARKDOWN:
+            return new MarkdownEmitter();
+
+        case MAN:
+            return new ManPageEmitter();
+
+        case JSON:
+            return new JsonEmitter();
+
+        default:
+            throw new AssertionError(format);
+        }
+    }
+
+    /**
+     * @return The <var>qualifiedName</var>, relative to the package, e.g. "{@code Outer.Inner}"
+     */
+    private static String
+    relativeName(String qualifiedName, String packageName) {
+        return packageName.length() == 0 ? qualifiedName : qualifiedName.substring(packageName.length() + 1);
+    }
+
+    /**
+     * @return The <var>htmlText</var>, wrapped in an HTML document
+     */
+    private String
+    htmlDocument(String htmlText) throws IOException {
+
+        StringWriter sw = new StringWriter();
+        PrintWriter  pw = new PrintWriter(sw);
+
+        pw.println("<html>");
+        pw.println("  <head>");
+        if (this.charset != null) {
+            pw.println("    <meta http-equiv=\"Content-Type\" content=\"text/html; charset=" + this.charset + "\" />");
+        }
+        pw.println("  </head>");
+        pw.println("  <body>");
+        if (this.doctitle != null) {
+            pw.println("    <h1>" + this.doctitle + "</h1>");
+        }
+        new IndentingWriter(pw, "    ").write(htmlText);
+        pw.println();
+        pw.println("  </body>");
+        pw.println("</html>");
+
+        pw.flush();
+        return sw.toString();
+    }
+
+    /**
+     * Writes the <var>content</var> to the <var>file</var>, unless the file already has exactly that content.
+     */
+    private void
+    writeFile(String content, File file, Charset charset) throws IOException {
+        this.outputFiles.write(content, file, charset);
+    }
+
+    /**
+     * @return The plain-text equivalent of the (parsed) HTML <var>document</var>
+     */
+    private String
+    html2txt(Document document) throws IOException {
+        try {
+            StringWriter sw = new StringWriter();
+            this.newHtml2Txt().html2txt(document, sw);
+            return sw.toString();
+        } catch (IOException ioe) {
+            throw ioe;
+        } catch (Exception e) {
+            throw new IOException(null, e);
+        }
+    }
+
+    /**
+     * {@link Html2Txt} is not thread-safe, so each conversion uses its own instance.
+     */
+    private Html2Txt
+    newHtml2Txt() {
+
+        Html2Txt result = new Html2Txt();
+
+        Integer txtPageLeftMarginWidth = this.txtPageLeftMarginWidth;
+        if (txtPageLeftMarginWidth != null) result.setPageLeftMarginWidth(txtPageLeftMarginWidth);
+
+        Integer txtPageRightMarginWidth = this.txtPageRightMarginWidth;
+        if (txtPageRightMarginWidth != null) result.setPageRightMarginWidth(txtPageRightMarginWidth);
+
+        Integer txtPageWidth = this.txtPageWidth;
+        if (txtPageWidth != null) result.setPageWidth(txtPageWidth);
+
+        return result;
+    }
+
+    /**
+     * Generates HTML from the doc comment of the given <var>element</var>.
+     *
+     * @return The generated HTML code
+     */
+    private String
+    convertDoc2(Element element, DocletEnvironment env) {
+
+        final TypeElement te = HtmlRenderer.typeOf(element);
+        assert te != null : element;
+
+        HtmlRenderer html = new HtmlRenderer(env, this.reporter(), this.references, this.textualReferences) {
+
+            @Override protected String
+            expandInlineTag(UnknownInlineTagTree tag, DocTreePath commentPath, Element ref) {
+
+                Measurement m = MainDoclet.this.stats.begin(Phase.TAG_EXPANSION, tag);
+                try {
+                    return this.expandInlineTag2(tag, commentPath, ref);
+                } finally {
+                    MainDoclet.this.stats.end(m);
+                }
+            }
+
+            private String
+            expandInlineTag2(UnknownInlineTagTree tag, DocTreePath commentPath, Element ref) {
+
+                String tagName = tag.getTagName();
+
+                // Backwards compatibility.
+                if ("command-line-options".equals(tagName)) {
+                    this.reporter.print(
+                        Diagnostic.Kind.WARNING,
+                        commentPath,
+                        (
+                            "\"@command-line-options\" is deprecated; use \"@"
+                            + MainDoclet.IT_main_commandLineOptions
+                            + "\" instead"
+                        )
+                    );
+                    tagName = MainDoclet.IT_main_commandLineOptions;
+                }
+
+                if (MainDoclet.IT_main_commandLineOptions.equals(tagName)) {
+
+                    // Without a group name, only the options WITHOUT a group appear.
+                    String group = HtmlRenderer.textOf(tag.getContent());
+                    if (group.isEmpty()) group = null;
+
+                    StringBuilder sb = new StringBuilder();
+
+                    // Process the options of this class and all supertypes.
+                    for (TypeElement c : MainDoclet.this.typeHierarchy.linearizationOf(te)) {
+
+                        String dtDds = MainDoclet.this.renderedCommandLineOptionsOf(c, group, this);
+                        if (dtDds.length() == 0) continue;
+
+                        for (DocumentModel.Option o : MainDoclet.this.commandLineOptionModelsOf(c, this)) {
+                            if (o.isInGroup(group)) MainDoclet.this.documentedOptions.add(o);
+                        }
+
+                        if (sb.length() > 0) sb.append('\n');
+                        sb.append(dtDds);
+                    }
+
+                    return sb.toString();
+                } else
+                if (MainDoclet.IT_main_maindoc.equals(tagName)) {
+                    Element target = this.resolveReference(HtmlRenderer.textOf(tag.getContent()), te, commentPath);
+                    if (target == null) return "";
+                    return MainDoclet.this.includedElement(target, commentPath, this.env);
+                }
+
+                return super.expandInlineTag(tag, commentPath, ref);
+            }
+        };
+
+        this.elementsInProgress.add(element);
+        Measurement m = this.stats.begin(Phase.RENDERING, element);
+        try {
+            return html.fromDocComment(element);
+        } finally {
+            this.stats.end(m);
+            this.elementsInProgress.remove(element);
+        }
+    }
+
+    /**
+     * @param commentPath The doc comment with the {@code {@main.maindoc}} tag that includes the <var>target</var>
+     * @return            The HTML rendering of the <var>target</var>, or {@code ""} iff the <var>target</var> (directly
+     *                    or indirectly) includes itself
+     */
+    private String
+    includedElement(Element target, DocTreePath commentPath, DocletEnvironment env) {
+
+        String result = this.includedElements.get(target);
+        if (result != null) {
+            this.documentedOptions.addAll(this.includedElementOptions.get(target));
+            return result;
+        }
+
+        if (this.elementsInProgress.contains(target)) {
+            this.reporter().print(
+                Diagnostic.Kind.WARNING,
+                commentPath,
+                "Cyclic \"@" + MainDoclet.IT_main_maindoc + "\" inclusion of \"" + target + "\"; ignored"
+            );
+            this.brokenCycles++;
+            return "";
+        }
+
+        int brokenCycles = this.brokenCycles;
+
+        // Collect the options that the target documents separately, so that they can be cached with the rendering.
+        Set<DocumentModel.Option> documentedOptions = this.documentedOptions;
+        Set<DocumentModel.Option> targetOptions     = new LinkedHashSet<>();
+        this.documentedOptions = targetOptions;
+        try {
+            result = this.convertDoc2(target, env);
+        } finally {
+            this.documentedOptions = documentedOptions;
+        }
+        documentedOptions.addAll(targetOptions);
+
+        if (this.brokenCycles == brokenCycles) {
+            this.includedElements.put(target, result);
+            this.includedElementOptions.put(target, targetOptions);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The command line options declared by the type <var>te</var> (but not by its supertypes)
+     */
+    private List<CommandLineOptionElement>
+    declaredCommandLineOptionsOf(TypeElement te, HtmlRenderer html) {
+
+        List<CommandLineOptionElement> result = this.declaredCommandLineOptions.get(te);
+        if (result == null) {
+            result = CommandLineOptionElement.declaredBy(te, html);
+            this.declaredCommandLineOptions.put(te, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * @param group {@code null} means "options without a {@value #BT_main_commandLineOptionGroup} block tag"
+     * @return      {@code <dt>} / {@code <dd>} pairs for the command line options of the given <var>group</var> that
+     *              are declared by the type <var>te</var> (but not by its supertypes)
+     */
+    private String
+    renderedCommandLineOptionsOf(TypeElement te, @Nullable String group, HtmlRenderer html) {
+
+        Map<String, String> byGroup = this.renderedCommandLineOptions.get(te);
+        if (byGroup == null) {
+            byGroup = new HashMap<>();
+            this.renderedCommandLineOptions.put(te, byGroup);
+        }
+
+        {
+            String result = byGroup.get(group);
+            if (result != null) return result;
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (DocumentModel.Option option : this.commandLineOptionModelsOf(te, html)) {
+
+            // Check if the command line option GROUP matches.
+            if (!option.isInGroup(group)) continue;
+
+            if (sb.length() > 0) sb.append('\n');
+            sb.append(option.toHtml());
+        }
+
+        String result = sb.toString();
+        byGroup.put(group, result);
+        return result;
+    }
+
+    /**
+     * @return The command line options of the type <var>te</var> and its supertypes, for the {@link
+     *         #setOptionTableDestination(File) option table}
+     */
+    private List<OptionTableGenerator.Option>
+    optionTableOptionsOf(TypeElement te, DocletEnvironment env) {
+
+        HtmlRenderer html  = new HtmlRenderer(env, this.reporter(), this.references, this.textualReferences);
+        Types        types = env.getTypeUtils();
+
+        List<OptionTableGenerator.Option> result = new ArrayList<>();
+        for (TypeElement c : this.typeHierarchy.linearizationOf(te)) {
+            for (CommandLineOptionElement option : this.declaredCommandLineOptionsOf(c, html)) {
+                ExecutableElement method = option.method;
+
+                List<OptionTableGenerator.Parameter> parameters = new ArrayList<>();
+                for (VariableElement p : method.getParameters()) {
+                    TypeMirror t = p.asType();
+                    parameters.add(new OptionTableGenerator.Parameter(
+                        types.erasure(t).toString(),
+                        t.getKind() == TypeKind.DECLARED && types.asElement(t).getKind() == ElementKind.ENUM
+                    ));
+                }
+
+                List<String> thrownTypes = new ArrayList<>();
+                for (TypeMirror t : method.getThrownTypes()) thrownTypes.add(types.erasure(t).toString());
+
+                result.add(new OptionTableGenerator.Option(
+                    Arrays.asList(option.names),
+                    option.cardinality,
+                    method.getSimpleName().toString(),
+                    parameters,
+                    thrownTypes
+                ));
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The models of the command line options declared by the type <var>te</var> (but not by its
+     *         supertypes), except the "companions", which are merged into the options they accompany
+     */
+    private List<DocumentModel.Option>
+    commandLineOptionModelsOf(TypeElement te, HtmlRenderer html) {
+
+        List<DocumentModel.Option> result = this.commandLineOptionModels.get(te);
+        if (result != null) return result;
+
+        result = new ArrayList<>();
+        for (CommandLineOptionElement option : this.declaredCommandLineOptionsOf(te, html)) {
+
+            // Skip options that have NO text and a @see block tag - they are "companions" to other options and will be
+            // documented TOGETHER with these.
+            if (option.isCompanion) continue;
+
+            StringBuilder terms = new StringBuilder();
+            List<String>  names = new ArrayList<>();
+
+            // Render <dt> elements for THIS attribute.
+            MainDoclet.attributeTerm(option, terms, html);
+            for (String name : option.names) names.add(MainDoclet.commandLineOptionName(name));
+
+            // Render <dt> elements for all "companion" attributes (methods that have a bare @see block tag pointing to
+            // THIS attribute).
+            for (CommandLineOptionElement companion : option.companions) {
+                MainDoclet.attributeTerm(companion, terms, html);
+                for (String name : companion.names) names.add(MainDoclet.commandLineOptionName(name));
+            }
+
+            DocCommentTree dct  = option.docComment;
+            DocTreePath    path = option.docCommentPath;
+
+            String dd = "";
+            if (dct != null && path != null) {
+
+                dd = html.fromTrees(dct.getFullBody(), path, option.method);
+
+                // Iff the DOC comment contains a bare "@see" tag, substitute the text from the target of the @see
+                // tag.
+                if (dct.getFullBody().isEmpty()) {
+                    for (SeeTree seeTag : option.blockTags(DocTree.Kind.SEE, SeeTree.class)) {
+                        List<? extends DocTree> reference = seeTag.getReference();
+                        if (reference.isEmpty() || reference.get(0).getKind() != DocTree.Kind.REFERENCE) break;
+
+                        Element target = html.resolve((ReferenceTree) reference.get(0), path);
+                        if (target != null) dd = html.fromDocComment(target);
+                        break;
+                    }
+                }
+
+                for (DeprecatedTree deprecatedTag : option.blockTags(DocTree.Kind.DEPRECATED, DeprecatedTree.class)) {
+                    dd = (
+                        "<i><b>Deprecated</b> - "
+                        + html.fromTrees(deprecatedTag.getBody(), path, option.method)
+                        + "</i> "
+                        + dd
+                    );
+                    break;
+                }
+            }
+
+            result.add(new DocumentModel.Option(names, option.groups, option.cardinality, terms.toString(), dd));
+        }
+
+        this.commandLineOptionModels.put(te, result);
+        return result;
+    }
+
+    /**
+     * Appends zero or more {@code <dt>} elements to <var>out</var>.
+     */
+    private static void
+    attributeTerm(CommandLineOptionElement option, StringBuilder out, HtmlRenderer html) {
+
+        ExecutableElement method = option.method;
+        DocTreePath       path   = option.docCommentPath;
+
+        // Convert the method parameters into command line argument placeholders.
+        String suffix = "";
+        PARAMETERS:
+        for (VariableElement p : method.getParameters()) {
+
+            // If there is an "@param" tag for the parameter, use that.
+            if (path != null) {
+                for (ParamTree paramTag : option.blockTags(DocTree.Kind.PARAM, ParamTree.class)) {
+                    if (!paramTag.isTypeParameter() && paramTag.getName().getName().equals(p.getSimpleName())) {
+                        suffix += " " + html.firstSentence(paramTag.getDescription(), path, method);
+                        continue PARAMETERS;
+                    }
+                }
+            }
+
+            // If it is an enum type, concatenate the constants with "|".
+            TypeMirror parameterType = p.asType();
+            if (
+                parameterType.getKind() == TypeKind.DECLARED
+                && ((DeclaredType) parameterType).asElement().getKind() == ElementKind.ENUM
+            ) {
+                List<String> constants = new ArrayList<>();
+                for (Element e : ((DeclaredType) parameterType).asElement().getEnclosedElements()) {
+                    if (e.getKind() != ElementKind.ENUM_CONSTANT) continue;
+                    constants.add("<code>" + e.getSimpleName() + "</code>");
+                }
+                suffix += " " + String.join("|", constants);
+                continue;
+            }
+
+            // As a last resort, use the parameter name.
+            suffix += (
+                " <var>"
+                + Notations.fromCamelCase(p.getSimpleName().toString()).toLowerCaseHyphenated()
+                + "</var>"
+            );
+        }
+
+        Cardinality cardinality = option.cardinality;
+        switch (cardinality) {
+        case OPTIONAL:     break;
+        case MANDATORY:    suffix += " (mandatory)";           break;
+        case ONCE_OR_MORE: suffix += " (once or multiple)";    break;
+        case ANY:          suffix += " (may appear multiply)"; break;
+        default:           throw new AssertionError(cardinality);
+        }
+
+        if (path != null) {
+            for (UnknownBlockTagTree commentTag : option.customBlockTags(MainDoclet.BT_main_commandLineOptionComment)) {
+                suffix += ' ' + html.firstSentence(commentTag.getContent(), path, method);
+            }
+        }
+
+        for (String name : option.names) {
+            out.append("  <dt><code>" + MainDoclet.commandLineOptionName(name) + "</code>" + suffix + "</dt>\n");
+        }
+    }
+
+    /**
+     * @return The <var>name</var> of a command line option, with a leading "{@code -}" (for a one-letter name) or
+     *         "{@code --}" iff it has none
+     */
+    private static String
+    commandLineOptionName(String name) {
+        return name.startsWith("-") ? name : (name.length() == 1 ? "-" : "--") + name;
+    }
+
+    /**
+     * @return The "flat signature" of the <var>method</var>, e.g. "{@code (String[])}", which is compatible with
+     *         {@code com.sun.javadoc.ExecutableMemberDoc.flatSignature()}
+     */
+    static String
+    flatSignature(ExecutableElement method) {
+
+        StringBuilder sb = new StringBuilder("(");
+
+        List<? extends VariableElement> parameters = method.getParameters();
+        for (int i = 0; i < parameters.size(); i++) {
+            if (i > 0) sb.append(", ");
+
+            TypeMirror type = parameters.get(i).asType();
+            if (method.isVarArgs() && i == parameters.size() - 1 && type.getKind() == TypeKind.ARRAY) {
+                sb.append(MainDoclet.simpleTypeName(((ArrayType) type).getComponentType())).append("...");
+            } else {
+                sb.append(MainDoclet.simpleTypeName(type));
+            }
+        }
+
+        return sb.append(')').toString();
+    }
+
+    /**
+     * @return E.g. "{@code String[]}", "{@code Map.Entry}", "{@code int}" or "{@code T}"
+     */
+    private static String
+    simpleTypeName(TypeMirror type) {
+
+        switch (type.getKind()) {
+
+        case ARRAY:
+            return MainDoclet.simpleTypeName(((ArrayType) type).getComponentType()) + "[]";
+
+        case DECLARED:
+            {
+                // Strip the package name, but not the names of enclosing types, and not the type arguments.
+                Element e = ((DeclaredType) type).asElement();
+                String  n = e.getSimpleName().toString();
+                for (e = e.getEnclosingElement(); e instanceof TypeElement; e = e.getEnclosingElement()) {
+                    n = e.getSimpleName() + "." + n;
+                }
+                return n;
+            }
+
+        case TYPEVAR:
+            return ((TypeVariable) type).asElement().getSimpleName().toString();
+
+        default:
+            return type.toString();
+        }
+    }
+
+    @Nullable private static TypeElement
+    superclassOf(TypeElement te) {
+
+        TypeMirror sc = te.getSuperclass();
+        if (sc.getKind() != TypeKind.DECLARED) return null;
+
+        return (TypeElement) ((DeclaredType) sc).asElement();
+    }
+
+    private Reporter
+    reporter() {
+        Reporter result = this.reporter;
+        assert result != null : "\"init()\" was not called";
+        return result;
+    }
+}
@@ -0,0 +1,77 @@
+
+/*
+ * de.unkrig.doclet.main - A doclet which generates HTML documentation for a Java "main(String[]") method
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.doclet9;
+
+import de.unkrig.commons.nullanalysis.Nullable;
+import de.unkrig.maindoc.doclet.DocletStats;
+import de.unkrig.maindoc.doclet.DocletStats.Phase;
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event that records one {@link Phase} of a doclet run, e.g. the rendering of one doc comment, or the expansion
+ * of one inline tag. The events are only created while a flight recording with these events enabled is running,
+ * e.g. "{@code -J-XX:StartFlightRecording=filename=maindoc.jfr}".
+ */
+@Name("de.unkrig.maindoc.Phase")
+@Label("MAINDOC Phase")
+@Category("MAINDOC")
+@Description("One phase of a MAINDOC doclet run")
+final
+class PhaseEvent extends Event {
+
+    /**
+     * Emits a {@link PhaseEvent} for each measurement of a {@link DocletStats}.
+     */
+    static final DocletStats.Listener LISTENER = new DocletStats.Listener() {
+
+        @Override @Nullable public Object
+        begin(Phase phase, Object subject) {
+
+            PhaseEvent event = new PhaseEvent();
+            if (!event.isEnabled()) return null;
+
+            event.phase   = phase.title;
+            event.subject = String.valueOf(subject);
+            event.begin();
+
+            return event;
+        }
+
+        @Override public void
+        end(@Nullable Object token) {
+            if (token != null) ((PhaseEvent) token).commit();
+        }
+    };
+
+    @Label("Phase") @Nullable String phase;
+
+    @Label("Subject") @Description("The class, method, tag or file that is processed") @Nullable String subject;
+}
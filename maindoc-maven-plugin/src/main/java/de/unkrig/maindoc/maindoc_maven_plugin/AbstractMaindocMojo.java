@@ -0,0 +1,464 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.security.CodeSource;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.project.MavenProject;
+
+import de.unkrig.maindoc.doclet.MethodSelector;
+
+/**
+ * The parameters and the logic that the MAINDOC goals have in common.
+ */
+public abstract
+class AbstractMaindocMojo extends AbstractMojo {
+
+    @Parameter(defaultValue = "${project}", readonly = true, required = true) MavenProject project;
+    @Parameter(defaultValue = "${session}", readonly = true, required = true) MavenSession session;
+    @Parameter                                                                String       method;
+    @Parameter                                                                List<String> methods;
+    @Parameter                                                                String       docEncoding;
+    @Parameter                                                                String       charset;
+    @Parameter                                                                String       doctitle;
+    @Parameter(defaultValue = "false")                                        boolean      quiet;
+
+    /**
+     * Execute JAVADOC even if the input manifest indicates that the output files are up-to-date.
+     */
+    @Parameter(property = "maindoc.force", defaultValue = "false") boolean force;
+
+    /**
+     * The number of threads that write the output files; see the doclet's "{@code -threads}" option.
+     */
+    @Parameter(defaultValue = "1") int threads;
+
+    /**
+     * Whether to determine, from the class files of the documented packages, which classes declare the methods to
+     * document, and have JAVADOC process only their source files (and those of their superclasses and interfaces
+     * that declare command line options), instead of all classes of the packages. If no class declares a method to
+     * document, then JAVADOC is not executed at all.
+     * <p>
+     *   If the class files of a package do not exist (yet), or if any source file of the documented packages is newer
+     *   than its class file (e.g. because the execution is bound to a phase before "{@code compile}", and a class was
+     *   added since the last build), then JAVADOC processes the entire packages.
+     * </p>
+     */
+    @Parameter(property = "maindoc.preScan", defaultValue = "true") boolean preScan;
+
+    /**
+     * Whether to put only those artifacts on JAVADOC's classpath that contain packages which the documented classes
+     * reference (or on which such artifacts depend). Effective only if the {@link #preScan} is.
+     */
+    @Parameter(property = "maindoc.trimClasspath", defaultValue = "true") boolean trimClasspath;
+
+    /**
+     * Where the packages of the classpath archives are recorded, so that {@link #trimClasspath} needs not open
+     * the (unchanged) archives again.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/maindoc-package-index.properties") File packageIndex;
+
+    /**
+     * Where the doclet writes, in JSON format, how much time (and heap memory) the phases of the JAVADOC run took;
+     * see the doclet's "{@code -stats-file}" option. Typically "{@code ${project.build.directory}/maindoc-stats.json}".
+     */
+    @Parameter(property = "maindoc.statsFile") File statsFile;
+
+    /**
+     * If configured, then all output files go into this JAR or ZIP file, instead of into the destination
+     * directories; see the doclet's "{@code -archive}" option. E.g. "{@code
+     * ${project.build.outputDirectory}/maindoc.jar}".
+     */
+    @Parameter(property = "maindoc.archive") File archive;
+
+    /**
+     * If configured, then the doclet also generates, for each class with documented methods, a Java source file
+     * with the plain-text documentation as string constants, in this directory; see the doclet's "{@code
+     * -help-class-destination}" option. E.g. "{@code ${project.build.directory}/generated-sources/maindoc}".
+     * <p>
+     *   The {@code maindoc} goal adds the directory as a compile source root, and thus fails unless its execution is
+     *   bound to a phase before "{@code compile}", e.g. "{@code generate-sources}".
+     * </p>
+     */
+    @Parameter File helpClassDestination;
+
+    /**
+     * If configured, then the doclet also generates, for each class with documented methods, a Java source file
+     * that dispatches the class's command line options to their setter methods without reflection, in this
+     * directory; see the doclet's "{@code -option-table-destination}" option. E.g. "{@code
+     * ${project.build.directory}/generated-sources/maindoc}".
+     * <p>
+     *   Like the {@link #helpClassDestination}, it is added as a compile source root.
+     * </p>
+     */
+    @Parameter File optionTableDestination;
+
+    /**
+     * The output formats to generate for each documented method; any of "{@code html}", "{@code txt}", "{@code
+     * md}", "{@code man}" and "{@code json}". See the doclet's "{@code -format}" option. Defaults to "{@code html}"
+     * and "{@code txt}".
+     */
+    @Parameter List<String> formats;
+
+    public void
+    execute() throws MojoExecutionException {
+        try {
+            this.execute2();
+        } catch (MojoExecutionException mee) {
+            throw mee;
+        } catch (Exception e) {
+            throw new MojoExecutionException("maindoc", e);
+        }
+    }
+
+    protected abstract void
+    execute2() throws Exception;
+
+    /**
+     * Runs JAVADOC with the MAIN doclet on the given packages, unless the <var>inputManifest</var> indicates that the
+     * output files are up-to-date.
+     *
+     * @param artifacts           The artifacts that make up the classpath
+     * @param classesDirectories  Where the compiler put the class files of the documented packages; see {@link
+     *                            #preScan}
+     * @param packageDestinations The names of the packages to document, and, for each, the directory where to create
+     *                            its output files
+     * @param inputManifest       Where the inputs of the last successful run are recorded
+     */
+    protected void
+    maindoc(
+        List<File>           sourcepath,
+        Collection<Artifact> artifacts,
+        List<File>           classesDirectories,
+        Map<String, File>    packageDestinations,
+        File                 inputManifest
+    ) throws Exception {
+
+        List<File> classpath = new ArrayList<>();
+        for (Artifact a : artifacts) classpath.add(a.getFile());
+
+        // Check whether anything changed since the last run.
+        InputManifest previousManifest = InputManifest.load(inputManifest);
+        InputManifest currentManifest  = this.currentManifest(
+            sourcepath,
+            classpath,
+            packageDestinations,
+            previousManifest
+        );
+        if (!this.force && currentManifest.inputsEqual(previousManifest) && previousManifest.outputsExist()) {
+            this.getLog().info("Maindoc is up-to-date");
+            return;
+        }
+
+        MethodSelector ms = new MethodSelector();
+        for (String m : this.methods()) ms.add(m);
+
+        // Find the relevant source files, so that JAVADOC needs not parse and attribute all the other classes.
+        List<File> sourceFiles      = null;
+        List<File> javadocClasspath = classpath;
+        if (this.preScan) {
+            SourcePreScan scan = new SourcePreScan(ms, classesDirectories, sourcepath);
+
+            // The class files are those of the last compilation, e.g. iff this execution runs before "compile", and
+            // would not reflect sources that were added or changed since.
+            if (scan.classFilesUpToDate(packageDestinations.keySet())) {
+                sourceFiles = scan.relevantSourceFiles(packageDestinations.keySet());
+            } else {
+                this.getLog().debug("Some class files are missing or older than their sources; skipping the pre-scan");
+            }
+            if (sourceFiles != null && sourceFiles.isEmpty()) {
+                this.getLog().info("No class declares a method to document; skipping JAVADOC");
+                currentManifest.store(inputManifest);
+                return;
+            }
+
+            // Put only the artifacts on the classpath that the relevant classes reference.
+            if (sourceFiles != null && this.trimClasspath) {
+                PackageIndex pi      = PackageIndex.load(this.packageIndex);
+                List<File>   trimmed = ClasspathTrimmer.trim(artifacts, scan.referencedPackages(), pi);
+                pi.store(this.packageIndex);
+
+                if (trimmed != null) {
+                    this.getLog().debug(
+                        "Trimmed the classpath from "
+                        + classpath.size()
+                        + " to "
+                        + trimmed.size()
+                        + " artifact(s)"
+                    );
+                    javadocClasspath = trimmed;
+                }
+            }
+        }
+
+        List<String> args = this.docletOptions(packageDestinations);
+
+        // Iff the pre-scan is disabled or inconclusive, then JAVADOC processes the entire packages.
+        if (sourceFiles == null) {
+            args.addAll(packageDestinations.keySet());
+            sourceFiles = Collections.emptyList();
+        }
+
+        JavadocEngine engine  = JavadocEngine.of(this.session);
+        boolean       success = engine.run(sourcepath, javadocClasspath, args, sourceFiles);
+
+        // The trimmed classpath may lack an artifact that JAVADOC needs (e.g. one with a supertype of a documented
+        // class), because Maven records only one dependency trail per artifact; see "ClasspathTrimmer".
+        if (!success && javadocClasspath != classpath) {
+            this.getLog().info("Javadoc failed with the trimmed classpath; retrying with the full classpath");
+            success = engine.run(sourcepath, classpath, args, sourceFiles);
+        }
+
+        if (!success) throw new MojoExecutionException("Javadoc failed");
+
+        // Remember the inputs and the outputs of this run.
+        if (this.archive != null) {
+            currentManifest.addOutput(this.archive);
+        } else {
+            for (File destination : new LinkedHashSet<>(packageDestinations.values())) {
+                AbstractMaindocMojo.addOutputs(destination, ms, currentManifest);
+            }
+        }
+        if (this.helpClassDestination != null) {
+            AbstractMaindocMojo.addGeneratedSourceOutputs(this.helpClassDestination, "Help.java", currentManifest);
+        }
+        if (this.optionTableDestination != null) {
+            AbstractMaindocMojo.addGeneratedSourceOutputs(this.optionTableDestination, "Options.java", currentManifest);
+        }
+        currentManifest.store(inputManifest);
+    }
+
+    /**
+     * @return The doclet options that reflect the mojo parameters, and the <var>packageDestinations</var>
+     */
+    protected List<String>
+    docletOptions(Map<String, File> packageDestinations) throws MojoExecutionException {
+
+        List<String> args = new ArrayList<>();
+
+        for (String m : this.methods()) {
+            args.add("-method");
+            args.add(m);
+        }
+
+        if (this.docEncoding != null) {
+            args.add("-docencoding");
+            args.add(this.docEncoding);
+        }
+
+        if (this.charset != null) {
+            args.add("-charset");
+            args.add(this.charset);
+        }
+
+        if (this.doctitle != null) {
+            args.add("-doctitle");
+            args.add(this.doctitle);
+        }
+
+        if (this.quiet) args.add("-quiet");
+
+        if (this.threads != 1) {
+            args.add("-threads");
+            args.add(Integer.toString(this.threads));
+        }
+
+        File statsFile = this.statsFile;
+        if (statsFile != null) {
+            File parent = statsFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new MojoExecutionException("Could not create directory \"" + parent + "\"");
+            }
+            args.add("-stats-file");
+            args.add(statsFile.getAbsolutePath());
+        }
+
+        if (this.helpClassDestination != null) {
+            args.add("-help-class-destination");
+            args.add(this.helpClassDestination.getAbsolutePath());
+        }
+
+        if (this.optionTableDestination != null) {
+            args.add("-option-table-destination");
+            args.add(this.optionTableDestination.getAbsolutePath());
+        }
+
+        if (this.formats != null) {
+            for (String format : this.formats) {
+                args.add("-format");
+                args.add(format);
+            }
+        }
+
+        if (this.archive != null) {
+            args.add("-archive");
+            args.add(this.archive.getAbsolutePath());
+        }
+
+        for (Entry<String, File> e : packageDestinations.entrySet()) {
+            args.add("-package-destination");
+            args.add(e.getKey());
+            args.add(e.getValue().getAbsolutePath());
+        }
+
+        return args;
+    }
+
+    /**
+     * @return A manifest of the mojo parameters and the contents of the sourcepath, of the classpath and of the
+     *         doclet itself
+     */
+    private InputManifest
+    currentManifest(
+        List<File>        sourcepath,
+        List<File>        classpath,
+        Map<String, File> packageDestinations,
+        InputManifest     previousManifest
+    ) throws IOException, URISyntaxException, ClassNotFoundException {
+
+        InputManifest result = new InputManifest();
+
+        result.addParameter("packageDestinations",    new TreeMap<>(packageDestinations));
+        result.addParameter("sourcepath",             sourcepath);
+        result.addParameter("classpath",              classpath);
+        result.addParameter("methods",                this.methods());
+        result.addParameter("docEncoding",            this.docEncoding);
+        result.addParameter("charset",                this.charset);
+        result.addParameter("doctitle",               this.doctitle);
+        result.addParameter("quiet",                  this.quiet);
+        result.addParameter("statsFile",              this.statsFile);
+        result.addParameter("archive",                this.archive);
+        result.addParameter("helpClassDestination",   this.helpClassDestination);
+        result.addParameter("optionTableDestination", this.optionTableDestination);
+        result.addParameter("formats",                this.formats);
+
+        for (File f : sourcepath) result.addInput(f, previousManifest);
+        for (File f : classpath)  result.addInput(f, previousManifest);
+
+        // A new version of the doclet may produce different output.
+        CodeSource cs = JavadocEngine.docletClass().getProtectionDomain().getCodeSource();
+        if (cs != null && "file".equals(cs.getLocation().getProtocol())) {
+            result.addInput(new File(cs.getLocation().toURI()), previousManifest);
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The {@link #method} and the {@link #methods}, or "{@code main(String[])}" iff neither is configured
+     */
+    protected List<String>
+    methods() {
+
+        List<String> result = new ArrayList<>();
+        if (this.method != null) result.add(this.method);
+        if (this.methods != null) result.addAll(this.methods);
+        if (result.isEmpty()) result.add("main(String[])");
+
+        return result;
+    }
+
+    /**
+     * Adds all files under the <var>directory</var> to the <var>manifest</var> which MAINDOC generated for the
+     * methods that the <var>methodSelector</var> matches.
+     */
+    private static void
+    addOutputs(File directory, MethodSelector methodSelector, InputManifest manifest) {
+
+        File[] members = directory.listFiles();
+        if (members == null) return;
+
+        for (File member : members) {
+
+            if (member.isDirectory()) {
+                AbstractMaindocMojo.addOutputs(member, methodSelector, manifest);
+            } else
+            if (AbstractMaindocMojo.isOutputFile(member, methodSelector)) {
+                manifest.addOutput(member);
+            }
+        }
+    }
+
+    /**
+     * @return Whether the <var>file</var> is named like a file that MAINDOC generates for a method that the
+     *         <var>methodSelector</var> matches
+     */
+    static boolean
+    isOutputFile(File file, MethodSelector methodSelector) {
+
+        // Output files are named "<class>.<method-name>(<parameter-types>).<extension>", where the extension
+        // depends on the output format, e.g. ".html", ".txt" or ".md".
+        String name = file.getName();
+        int    rp   = name.lastIndexOf(')');
+        if (rp == -1 || name.indexOf('.', rp) != rp + 1) return false;
+        name = name.substring(0, rp + 1);
+
+        int lp = name.indexOf('(');
+        if (lp == -1) return false;
+
+        int dot = name.lastIndexOf('.', lp);
+        if (dot == -1) return false;
+
+        return methodSelector.matches(name.substring(dot + 1, lp), name.substring(lp));
+    }
+
+    /**
+     * Adds all generated source files under the <var>directory</var> (those with names ending with the
+     * <var>suffix</var>) to the <var>manifest</var>.
+     */
+    private static void
+    addGeneratedSourceOutputs(File directory, String suffix, InputManifest manifest) {
+
+        File[] members = directory.listFiles();
+        if (members == null) return;
+
+        for (File member : members) {
+            if (member.isDirectory()) {
+                AbstractMaindocMojo.addGeneratedSourceOutputs(member, suffix, manifest);
+            } else
+            if (member.getName().endsWith(suffix)) {
+                manifest.addOutput(member);
+            }
+        }
+    }
+}
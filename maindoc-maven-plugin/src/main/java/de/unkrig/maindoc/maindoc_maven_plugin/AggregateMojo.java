@@ -0,0 +1,200 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.descriptor.PluginDescriptor;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Documents the packages of all modules of the reactor in one JAVADOC run, which is much faster than one run per
+ * module, because the sources and the classpath archives that the modules have in common (e.g. base classes that
+ * declare common command line options) are parsed resp. loaded only once.
+ * <p>
+ *   The modules to document, and their packages, destinations and sourcepaths are those configured for their "{@code
+ *   maindoc}" goal; the output files of each package are created in the destination of its module. The methods to
+ *   document and the other parameters, however, are those of this goal, not those of the modules.
+ * </p>
+ */
+@Mojo(
+    name                         = "aggregate",
+    aggregator                   = true,
+    requiresDependencyResolution = ResolutionScope.COMPILE
+) public
+class AggregateMojo extends AbstractMaindocMojo {
+
+    @Parameter(defaultValue = "${plugin}", readonly = true, required = true) PluginDescriptor plugin;
+
+    /**
+     * Where the inputs of the last successful run are recorded. If neither the inputs nor the parameters have
+     * changed since, and the output files of that run still exist, then JAVADOC is not executed at all.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/maindoc-aggregate-inputs.properties") File inputManifest;
+
+    @Override protected void
+    execute2() throws Exception {
+
+        Set<File>             sourcepath          = new LinkedHashSet<>();
+        Map<String, Artifact> artifacts           = new LinkedHashMap<>(); // By ID
+        List<File>            classesDirectories  = new ArrayList<>();
+        Map<String, File>     packageDestinations = new LinkedHashMap<>();
+
+        for (MavenProject module : this.session.getProjects()) {
+
+            Xpp3Dom configuration = this.maindocConfiguration(module);
+            if (configuration == null) continue;
+
+            List<String> packages = AggregateMojo.values(configuration, "packages");
+            if (packages.isEmpty()) continue;
+
+            File destination = AggregateMojo.file(
+                module,
+                AggregateMojo.value(configuration, "destination", "target/classes")
+            );
+            for (String p : packages) {
+                File previous = packageDestinations.put(p, destination);
+                if (previous != null && !previous.equals(destination)) {
+                    throw new MojoExecutionException(
+                        "Package \""
+                        + p
+                        + "\" is documented into both \""
+                        + previous
+                        + "\" and \""
+                        + destination
+                        + "\""
+                    );
+                }
+            }
+
+            List<String> moduleSourcepath = AggregateMojo.values(configuration, "sourcepath");
+            if (moduleSourcepath.isEmpty()) moduleSourcepath.add("src/main/java");
+            for (String f : moduleSourcepath) sourcepath.add(AggregateMojo.file(module, f));
+
+            for (Artifact a : module.getArtifacts()) {
+                if (!artifacts.containsKey(a.getId())) artifacts.put(a.getId(), a);
+            }
+
+            classesDirectories.add(new File(module.getBuild().getOutputDirectory()));
+        }
+
+        if (packageDestinations.isEmpty()) {
+            this.getLog().info("No module of the reactor configures packages for maindoc");
+            return;
+        }
+
+        // An aggregate execution documents all modules at once, so the engine is not needed after it.
+        try {
+            this.maindoc(
+                new ArrayList<>(sourcepath),
+                artifacts.values(),
+                classesDirectories,
+                packageDestinations,
+                this.inputManifest
+            );
+        } finally {
+            JavadocEngine.close(this.session);
+        }
+    }
+
+    /**
+     * @return The configuration of the <var>module</var>'s "{@code maindoc}" goal, merged from the plugin
+     *         configuration and the configurations of the executions that have that goal, or {@code null} iff the
+     *         <var>module</var> does not use the MAINDOC plugin
+     */
+    private Xpp3Dom
+    maindocConfiguration(MavenProject module) {
+
+        Plugin p = module.getPlugin(this.plugin.getPluginLookupKey());
+        if (p == null) return null;
+
+        // Notice: "mergeXpp3Dom()" modifies its first argument, which must thus be a copy.
+        Xpp3Dom result = new Xpp3Dom("configuration");
+        if (p.getConfiguration() != null) result = new Xpp3Dom((Xpp3Dom) p.getConfiguration());
+        for (PluginExecution pe : p.getExecutions()) {
+            if (pe.getGoals().contains("maindoc") && pe.getConfiguration() != null) {
+                result = Xpp3Dom.mergeXpp3Dom(new Xpp3Dom((Xpp3Dom) pe.getConfiguration()), result);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The value of the named child of the <var>configuration</var>, or the <var>defaultValue</var>
+     */
+    private static String
+    value(Xpp3Dom configuration, String name, String defaultValue) {
+
+        Xpp3Dom child = configuration.getChild(name);
+        if (child == null || child.getValue() == null) return defaultValue;
+
+        return child.getValue().trim();
+    }
+
+    /**
+     * @return The values of the children of the named child of the <var>configuration</var>, e.g. the "{@code
+     *         <param>}"s of "{@code <packages>}"
+     */
+    private static List<String>
+    values(Xpp3Dom configuration, String name) {
+
+        List<String> result = new ArrayList<>();
+
+        Xpp3Dom child = configuration.getChild(name);
+        if (child == null) return result;
+
+        for (Xpp3Dom element : child.getChildren()) {
+            if (element.getValue() != null) result.add(element.getValue().trim());
+        }
+
+        return result;
+    }
+
+    /**
+     * @return The <var>path</var>, resolved against the base directory of the <var>module</var>
+     */
+    private static File
+    file(MavenProject module, String path) {
+        File result = new File(path);
+        return result.isAbsolute() ? result : new File(module.getBasedir(), path);
+    }
+}
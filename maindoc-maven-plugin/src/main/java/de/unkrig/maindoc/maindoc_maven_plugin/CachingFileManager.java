@@ -0,0 +1,308 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.SimpleJavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+/**
+ * A file manager that remembers the package listings of the source path and the class path across JAVADOC runs, and
+ * that serves source files that exist only in memory.
+ * <p>
+ *   A listing is re-used as long as the package directories that it was computed from have the same modification
+ *   times. The entries of classpath archives are indexed by the underlying file manager, which never notices when an
+ *   archive is rewritten; thus {@link #archivesChanged(Iterable)} compares the archives' modification times and sizes
+ *   with those at the time they were {@link #setLocation(JavaFileManager.Location, Iterable) put on a path}, so that
+ *   the caller can replace a stale file manager.
+ * </p>
+ * <p>
+ *   Source files that were {@link #putSource(String, CharSequence) put} into the file manager are part of the source
+ *   path, and shadow source files with the same name on disk.
+ * </p>
+ */
+final
+class CachingFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+
+    /** The package listings computed so far. */
+    private final Map<ListingKey, Listing> listings = new HashMap<>();
+
+    /** The modification times and sizes of the archives on the paths, as of {@link #setLocation}. */
+    private final Map<File, List<Long>> archiveStamps = new HashMap<>();
+
+    /** The sources that exist only in memory, by binary name. */
+    private final Map<String, MemorySource> memorySources = new HashMap<>();
+
+    CachingFileManager(StandardJavaFileManager delegate) { super(delegate); }
+
+    /**
+     * Sets the path of the given <var>location</var>, and records the modification times of the archives on it.
+     *
+     * @see StandardJavaFileManager#setLocation(JavaFileManager.Location, Iterable)
+     */
+    void
+    setLocation(Location location, Iterable<File> path) throws IOException {
+
+        this.fileManager.setLocation(location, path);
+
+        for (File entry : path) {
+            if (entry.isFile() && !this.archiveStamps.containsKey(entry)) {
+                this.archiveStamps.put(entry, CachingFileManager.stamp(entry));
+            }
+        }
+    }
+
+    /**
+     * @return Whether any of the archives on the <var>path</var> was modified since it was first {@link
+     *         #setLocation(JavaFileManager.Location, Iterable) put on a path} of this file manager
+     */
+    boolean
+    archivesChanged(Iterable<File> path) {
+
+        for (File entry : path) {
+            List<Long> stamp = this.archiveStamps.get(entry);
+            if (stamp != null && !stamp.equals(CachingFileManager.stamp(entry))) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @see StandardJavaFileManager#getJavaFileObjectsFromFiles(Iterable)
+     */
+    Iterable<? extends JavaFileObject>
+    getJavaFileObjectsFromFiles(Iterable<File> files) {
+        return this.fileManager.getJavaFileObjectsFromFiles(files);
+    }
+
+    /**
+     * Makes the <var>content</var> available as the source file of the class with the given binary name, until it is
+     * {@link #removeSource(String) removed}.
+     *
+     * @return The source file, e.g. for passing it to JAVADOC as a compilation unit
+     */
+    JavaFileObject
+    putSource(String className, CharSequence content) {
+
+        MemorySource result = new MemorySource(className, content);
+        this.memorySources.put(className, result);
+        return result;
+    }
+
+    /**
+     * Undoes {@link #putSource(String, CharSequence)}.
+     */
+    void
+    removeSource(String className) { this.memorySources.remove(className); }
+
+    @Override public Iterable<JavaFileObject>
+    list(Location location, String packageName, Set<Kind> kinds, boolean recurse) throws IOException {
+
+        Iterable<JavaFileObject> result = this.cachedList(location, packageName, kinds, recurse);
+
+        if (location != StandardLocation.SOURCE_PATH || !kinds.contains(Kind.SOURCE) || this.memorySources.isEmpty()) {
+            return result;
+        }
+
+        List<JavaFileObject> result2 = new ArrayList<>();
+        for (MemorySource ms : this.memorySources.values()) {
+            String pn = ms.packageName();
+            if (pn.equals(packageName) || (recurse && pn.startsWith(packageName + '.'))) result2.add(ms);
+        }
+        if (result2.isEmpty()) return result;
+
+        for (JavaFileObject jfo : result) {
+            if (
+                jfo.getKind() != Kind.SOURCE
+                || !this.memorySources.containsKey(this.fileManager.inferBinaryName(location, jfo))
+            ) result2.add(jfo);
+        }
+
+        return result2;
+    }
+
+    @Override public String
+    inferBinaryName(Location location, JavaFileObject file) {
+
+        if (file instanceof MemorySource) return ((MemorySource) file).className;
+
+        return this.fileManager.inferBinaryName(location, file);
+    }
+
+    @Override public boolean
+    isSameFile(FileObject a, FileObject b) {
+
+        if (a instanceof MemorySource || b instanceof MemorySource) return a.equals(b);
+
+        return this.fileManager.isSameFile(a, b);
+    }
+
+    @Override public JavaFileObject
+    getJavaFileForInput(Location location, String className, Kind kind) throws IOException {
+
+        if (location == StandardLocation.SOURCE_PATH && kind == Kind.SOURCE) {
+            MemorySource ms = this.memorySources.get(className);
+            if (ms != null) return ms;
+        }
+
+        return this.fileManager.getJavaFileForInput(location, className, kind);
+    }
+
+    /**
+     * Lists the package through the underlying file manager, or re-uses an earlier listing of the same package of the
+     * same path, if the package's directories on the path were not modified since.
+     */
+    private Iterable<JavaFileObject>
+    cachedList(Location location, String packageName, Set<Kind> kinds, boolean recurse) throws IOException {
+
+        // Recursive listings (for "-subpackages") would have to check all subdirectories; the platform classes are
+        // indexed by the underlying file manager anyway.
+        if (recurse || (location != StandardLocation.SOURCE_PATH && location != StandardLocation.CLASS_PATH)) {
+            return this.fileManager.list(location, packageName, kinds, recurse);
+        }
+
+        Iterable<? extends File> path = this.fileManager.getLocation(location);
+        if (path == null) return this.fileManager.list(location, packageName, kinds, recurse);
+
+        List<File> entries = new ArrayList<>();
+        for (File entry : path) entries.add(entry);
+
+        ListingKey key = new ListingKey(location, entries, packageName, kinds);
+
+        // The modification times of the package directories; the archives are covered by "archivesChanged()".
+        String packagePath = packageName.replace('.', File.separatorChar);
+        long[] stamps      = new long[entries.size()];
+        for (int i = 0; i < stamps.length; i++) {
+            File entry = entries.get(i);
+            if (!entry.isFile()) stamps[i] = new File(entry, packagePath).lastModified();
+        }
+
+        Listing listing = this.listings.get(key);
+        if (listing != null && Arrays.equals(listing.stamps, stamps)) return listing.files;
+
+        List<JavaFileObject> files = new ArrayList<>();
+        for (JavaFileObject jfo : this.fileManager.list(location, packageName, kinds, recurse)) files.add(jfo);
+
+        this.listings.put(key, new Listing(stamps, Collections.unmodifiableList(files)));
+        return files;
+    }
+
+    private static List<Long>
+    stamp(File file) { return Arrays.asList(file.lastModified(), file.length()); }
+
+    private static final
+    class ListingKey {
+
+        private final Location   location;
+        private final List<File> path;
+        private final String     packageName;
+        private final Set<Kind>  kinds;
+
+        ListingKey(Location location, List<File> path, String packageName, Set<Kind> kinds) {
+            this.location    = location;
+            this.path        = path;
+            this.packageName = packageName;
+            this.kinds       = kinds.isEmpty() ? EnumSet.noneOf(Kind.class) : EnumSet.copyOf(kinds);
+        }
+
+        @Override public int
+        hashCode() {
+            return (
+                this.location.hashCode()
+                ^ this.path.hashCode()
+                ^ this.packageName.hashCode()
+                ^ this.kinds.hashCode()
+            );
+        }
+
+        @Override public boolean
+        equals(Object obj) {
+            if (!(obj instanceof ListingKey)) return false;
+            ListingKey that = (ListingKey) obj;
+            return (
+                this.location == that.location
+                && this.path.equals(that.path)
+                && this.packageName.equals(that.packageName)
+                && this.kinds.equals(that.kinds)
+            );
+        }
+    }
+
+    private static final
+    class Listing {
+
+        /** The modification times of the package directories on the path; 0 for archives and missing directories. */
+        final long[] stamps;
+
+        final List<JavaFileObject> files;
+
+        Listing(long[] stamps, List<JavaFileObject> files) {
+            this.stamps = stamps;
+            this.files  = files;
+        }
+    }
+
+    private static final
+    class MemorySource extends SimpleJavaFileObject {
+
+        final String               className;
+        private final CharSequence content;
+
+        MemorySource(String className, CharSequence content) {
+            super(URI.create("string:///" + className.replace('.', '/') + Kind.SOURCE.extension), Kind.SOURCE);
+            this.className = className;
+            this.content   = content;
+        }
+
+        String
+        packageName() {
+            int idx = this.className.lastIndexOf('.');
+            return idx == -1 ? "" : this.className.substring(0, idx);
+        }
+
+        @Override public CharSequence
+        getCharContent(boolean ignoreEncodingErrors) { return this.content; }
+    }
+}
@@ -0,0 +1,404 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The little that MAINDOC's pre-scan needs to know about a compiled class: Its name, its superclass, its source file,
+ * the names, signatures and annotations of its methods, and the other classes that it references.
+ * <p>
+ *   Reading a class file this way is orders of magnitude cheaper than having JAVADOC parse and attribute the
+ *   corresponding source file; everything but the few items listed above is skipped.
+ * </p>
+ */
+final
+class ClassFileInfo {
+
+    private static final int ACC_BRIDGE    = 0x0040;
+    private static final int ACC_VARARGS   = 0x0080;
+    private static final int ACC_SYNTHETIC = 0x1000;
+
+    /**
+     * Matches the class types in descriptors and signatures, e.g. "{@code Ljava/util/List;}" or "{@code
+     * Ljava/util/List<}"; group #1 is the internal name of the class.
+     */
+    private static final Pattern CLASS_TYPE = Pattern.compile("L([^;<>:.\\[]+/[^;<>:.\\[]+)[;<]");
+
+    /** The internal name of the class, e.g. "{@code pkg/Outer$Inner}". */
+    final String name;
+
+    /** The internal name of the superclass, or {@code null} for "{@code java/lang/Object}" and interfaces. */
+    final String superName;
+
+    /** The internal names of the direct superinterfaces, in declaration order. */
+    final List<String> interfaceNames;
+
+    /** The value of the "{@code SourceFile}" attribute, e.g. "{@code Outer.java}", or {@code null}. */
+    final String sourceFile;
+
+    /** The methods that the class declares, except bridge methods and other synthetic methods. */
+    final List<MethodInfo> methods;
+
+    /**
+     * The internal names of the classes that the class references, in its constant pool, or in any descriptor or
+     * signature, e.g. through its supertypes, field types, method signatures and annotations. (Classes in the default
+     * package are not included.)
+     */
+    final Set<String> referencedClasses;
+
+    private
+    ClassFileInfo(
+        String           name,
+        String           superName,
+        List<String>     interfaceNames,
+        String           sourceFile,
+        List<MethodInfo> methods,
+        Set<String>      referencedClasses
+    ) {
+        this.name              = name;
+        this.superName         = superName;
+        this.interfaceNames    = interfaceNames;
+        this.sourceFile        = sourceFile;
+        this.methods           = methods;
+        this.referencedClasses = referencedClasses;
+    }
+
+    /**
+     * A method declared by a class.
+     */
+    static final
+    class MethodInfo {
+
+        /** E.g. "{@code main}". */
+        final String name;
+
+        /**
+         * The flat signature, derived from the erased method descriptor, e.g. "{@code (String[])}" or "{@code
+         * (Map.Entry, int...)}".
+         */
+        final String flatSignature;
+
+        /**
+         * Whether the method has generic parameter types, so that its {@link #flatSignature} (which is derived from
+         * the erasure) may differ from the one that JAVADOC computes.
+         */
+        final boolean generic;
+
+        /** The descriptors of the method's annotations, e.g. "{@code Lpkg/Annotation;}". */
+        final Set<String> annotations;
+
+        MethodInfo(String name, String flatSignature, boolean generic, Set<String> annotations) {
+            this.name          = name;
+            this.flatSignature = flatSignature;
+            this.generic       = generic;
+            this.annotations   = annotations;
+        }
+    }
+
+    /**
+     * Reads the given class file.
+     */
+    static ClassFileInfo
+    read(File classFile) throws IOException {
+        try (InputStream is = new BufferedInputStream(new FileInputStream(classFile))) {
+            return ClassFileInfo.read(is);
+        } catch (IOException ioe) {
+            throw new IOException("Reading \"" + classFile + "\"", ioe);
+        }
+    }
+
+    /**
+     * Reads a class file from the given stream.
+     */
+    static ClassFileInfo
+    read(InputStream is) throws IOException {
+
+        DataInputStream dis = new DataInputStream(is);
+
+        if (dis.readInt() != 0xcafebabe) throw new IOException("Not a class file");
+        dis.readUnsignedShort(); // minor_version
+        dis.readUnsignedShort(); // major_version
+
+        // Of the constant pool, only the UTF8 entries and the class entries are relevant.
+        int      constantPoolCount = dis.readUnsignedShort();
+        String[] utf8s             = new String[constantPoolCount];
+        int[]    classNameIndexes  = new int[constantPoolCount];
+        for (int i = 1; i < constantPoolCount; i++) {
+            int tag = dis.readUnsignedByte();
+            switch (tag) {
+
+            case 1: // UTF8
+                utf8s[i] = dis.readUTF();
+                break;
+
+            case 7: // Class
+                classNameIndexes[i] = dis.readUnsignedShort();
+                break;
+
+            case 8:  // String
+            case 16: // MethodType
+            case 19: // Module
+            case 20: // Package
+                ClassFileInfo.skip(dis, 2);
+                break;
+
+            case 15: // MethodHandle
+                ClassFileInfo.skip(dis, 3);
+                break;
+
+            case 3:  // Integer
+            case 4:  // Float
+            case 9:  // Fieldref
+            case 10: // Methodref
+            case 11: // InterfaceMethodref
+            case 12: // NameAndType
+            case 17: // Dynamic
+            case 18: // InvokeDynamic
+                ClassFileInfo.skip(dis, 4);
+                break;
+
+            case 5: // Long
+            case 6: // Double
+                ClassFileInfo.skip(dis, 8);
+                i++; // Occupies two entries.
+                break;
+
+            default:
+                throw new IOException("Invalid constant pool tag " + tag);
+            }
+        }
+
+        // Any UTF8 entry may be a descriptor or a signature (or a string literal that looks like one, which is
+        // harmless).
+        Set<String> referencedClasses = new HashSet<>();
+        for (int i = 1; i < constantPoolCount; i++) {
+
+            if (classNameIndexes[i] != 0) {
+                String className = utf8s[classNameIndexes[i]];
+                if (className.indexOf('/') != -1 && className.charAt(0) != '[') referencedClasses.add(className);
+            }
+
+            String s = utf8s[i];
+            if (s != null && s.indexOf(';') != -1) {
+                for (Matcher m = ClassFileInfo.CLASS_TYPE.matcher(s); m.find();) referencedClasses.add(m.group(1));
+            }
+        }
+
+        dis.readUnsignedShort(); // access_flags
+        String name = utf8s[classNameIndexes[dis.readUnsignedShort()]];
+        referencedClasses.remove(name);
+
+        int    superClassIndex = dis.readUnsignedShort();
+        String superName       = superClassIndex == 0 ? null : utf8s[classNameIndexes[superClassIndex]];
+        if ("java/lang/Object".equals(superName)) superName = null;
+
+        List<String> interfaceNames = new ArrayList<>();
+        for (int i = dis.readUnsignedShort(); i > 0; i--) {
+            interfaceNames.add(utf8s[classNameIndexes[dis.readUnsignedShort()]]);
+        }
+
+        // Fields.
+        for (int i = dis.readUnsignedShort(); i > 0; i--) {
+            ClassFileInfo.skip(dis, 6);
+            ClassFileInfo.skipAttributes(dis);
+        }
+
+        // Methods.
+        List<MethodInfo> methods = new ArrayList<>();
+        for (int i = dis.readUnsignedShort(); i > 0; i--) {
+
+            int    accessFlags = dis.readUnsignedShort();
+            String methodName  = utf8s[dis.readUnsignedShort()];
+            String descriptor  = utf8s[dis.readUnsignedShort()];
+
+            boolean     generic     = false;
+            Set<String> annotations = new HashSet<>();
+            for (int j = dis.readUnsignedShort(); j > 0; j--) {
+                String attributeName   = utf8s[dis.readUnsignedShort()];
+                int    attributeLength = dis.readInt();
+                if ("Signature".equals(attributeName)) {
+                    generic = true;
+                    ClassFileInfo.skip(dis, attributeLength);
+                } else
+                if (
+                    "RuntimeVisibleAnnotations".equals(attributeName)
+                    || "RuntimeInvisibleAnnotations".equals(attributeName)
+                ) {
+                    for (int k = dis.readUnsignedShort(); k > 0; k--) {
+                        annotations.add(utf8s[dis.readUnsignedShort()]);
+                        ClassFileInfo.skipElementValuePairs(dis);
+                    }
+                } else
+                {
+                    ClassFileInfo.skip(dis, attributeLength);
+                }
+            }
+
+            if ((accessFlags & (ClassFileInfo.ACC_BRIDGE | ClassFileInfo.ACC_SYNTHETIC)) != 0) continue;
+
+            methods.add(new MethodInfo(
+                methodName,
+                ClassFileInfo.flatSignature(descriptor, (accessFlags & ClassFileInfo.ACC_VARARGS) != 0),
+                generic,
+                annotations.isEmpty() ? Collections.<String>emptySet() : annotations
+            ));
+        }
+
+        // Class attributes.
+        String sourceFile = null;
+        for (int i = dis.readUnsignedShort(); i > 0; i--) {
+            String attributeName   = utf8s[dis.readUnsignedShort()];
+            int    attributeLength = dis.readInt();
+            if ("SourceFile".equals(attributeName)) {
+                sourceFile = utf8s[dis.readUnsignedShort()];
+            } else {
+                ClassFileInfo.skip(dis, attributeLength);
+            }
+        }
+
+        return new ClassFileInfo(name, superName, interfaceNames, sourceFile, methods, referencedClasses);
+    }
+
+    /**
+     * @param descriptor E.g. "{@code ([Ljava/lang/String;I)V}"
+     * @return           E.g. "{@code (String[], int)}"
+     */
+    static String
+    flatSignature(String descriptor, boolean varargs) {
+
+        StringBuilder sb = new StringBuilder("(");
+
+        int i = 1; // Skip the "(".
+        while (descriptor.charAt(i) != ')') {
+
+            if (i > 1) sb.append(", ");
+
+            int dimensions = 0;
+            while (descriptor.charAt(i) == '[') {
+                dimensions++;
+                i++;
+            }
+
+            char c = descriptor.charAt(i++);
+            switch (c) {
+            case 'B': sb.append("byte");    break;
+            case 'C': sb.append("char");    break;
+            case 'D': sb.append("double");  break;
+            case 'F': sb.append("float");   break;
+            case 'I': sb.append("int");     break;
+            case 'J': sb.append("long");    break;
+            case 'S': sb.append("short");   break;
+            case 'Z': sb.append("boolean"); break;
+
+            case 'L':
+                {
+                    int    semicolon    = descriptor.indexOf(';', i);
+                    String internalName = descriptor.substring(i, semicolon);
+                    sb.append(internalName.substring(internalName.lastIndexOf('/') + 1).replace('$', '.'));
+                    i = semicolon + 1;
+                }
+                break;
+
+            default:
+                throw new IllegalArgumentException("Invalid method descriptor \"" + descriptor + "\"");
+            }
+
+            boolean lastParameter = descriptor.charAt(i) == ')';
+            for (int d = 0; d < dimensions; d++) {
+                sb.append(varargs && lastParameter && d == dimensions - 1 ? "..." : "[]");
+            }
+        }
+
+        return sb.append(')').toString();
+    }
+
+    private static void
+    skipAttributes(DataInputStream dis) throws IOException {
+        for (int i = dis.readUnsignedShort(); i > 0; i--) {
+            ClassFileInfo.skip(dis, 2);
+            ClassFileInfo.skip(dis, dis.readInt());
+        }
+    }
+
+    private static void
+    skipElementValuePairs(DataInputStream dis) throws IOException {
+        for (int i = dis.readUnsignedShort(); i > 0; i--) {
+            ClassFileInfo.skip(dis, 2); // element_name_index
+            ClassFileInfo.skipElementValue(dis);
+        }
+    }
+
+    private static void
+    skipElementValue(DataInputStream dis) throws IOException {
+
+        int tag = dis.readUnsignedByte();
+        switch (tag) {
+
+        case 'e': // Enum constant
+            ClassFileInfo.skip(dis, 4);
+            break;
+
+        case '@': // Annotation
+            ClassFileInfo.skip(dis, 2);
+            ClassFileInfo.skipElementValuePairs(dis);
+            break;
+
+        case '[': // Array
+            for (int i = dis.readUnsignedShort(); i > 0; i--) ClassFileInfo.skipElementValue(dis);
+            break;
+
+        default: // Constant or class
+            ClassFileInfo.skip(dis, 2);
+            break;
+        }
+    }
+
+    private static void
+    skip(DataInputStream dis, int n) throws IOException {
+        while (n > 0) {
+            int skipped = dis.skipBytes(n);
+            if (skipped <= 0) {
+                dis.readByte(); // Throws an EOFException at end-of-input.
+                skipped = 1;
+            }
+            n -= skipped;
+        }
+    }
+}
@@ -0,0 +1,90 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.artifact.Artifact;
+
+/**
+ * Trims the classpath of a JAVADOC run to the artifacts that JAVADOC actually needs, because opening and indexing
+ * archives is a major part of its startup time.
+ * <p>
+ *   An artifact is needed iff it contains one of the packages that the documented classes reference (as determined
+ *   by the {@link SourcePreScan}), or iff it is a (transitive) dependency of such an artifact (because JAVADOC may
+ *   have to load e.g. the supertypes of the classes that it finds).
+ * </p>
+ * <p>
+ *   Notice: Maven records only one dependency trail per artifact (the nearest one), so a dependency of a needed
+ *   artifact is dropped if its trail leads through an artifact that is <em>not</em> needed. The caller must therefore
+ *   be prepared to re-run JAVADOC with the full classpath.
+ * </p>
+ */
+final
+class ClasspathTrimmer {
+
+    private ClasspathTrimmer() {}
+
+    /**
+     * @param referencedPackages The names of the packages that the documented classes reference
+     * @param packageIndex       Where to look up the packages of each artifact
+     * @return                   The files of the needed <var>artifacts</var>, in their original order, or {@code
+     *                           null} iff the dependency relations between the <var>artifacts</var> are unknown
+     */
+    static List<File>
+    trim(Collection<Artifact> artifacts, Set<String> referencedPackages, PackageIndex packageIndex)
+    throws IOException {
+
+        Set<String> needed = new HashSet<>();
+        for (Artifact a : artifacts) {
+            File file = a.getFile();
+            if (file != null && !Collections.disjoint(packageIndex.packagesOf(file), referencedPackages)) {
+                needed.add(a.getId());
+            }
+        }
+
+        // The "dependency trail" of an artifact is the path from the project to the artifact (inclusive) through
+        // the dependency graph.
+        List<File> result = new ArrayList<>();
+        for (Artifact a : artifacts) {
+
+            List<String> trail = a.getDependencyTrail();
+            if (trail == null) return null;
+
+            if (!Collections.disjoint(trail, needed)) result.add(a.getFile());
+        }
+
+        return result;
+    }
+}
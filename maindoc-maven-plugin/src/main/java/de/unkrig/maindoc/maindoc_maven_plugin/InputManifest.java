@@ -0,0 +1,223 @@
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+
+/**
+ * A persistent record of the inputs of a MAINDOC run (the mojo parameters and the content hashes of all sourcepath
+ * files and classpath artifacts), together with the output files that the run produced.
+ * <p>
+ *   Content hashes are only re-computed for files whose size or modification time changed since the manifest was
+ *   stored, so checking an unchanged tree costs little more than listing it.
+ * </p>
+ */
+class InputManifest {
+
+    private static final String PARAMETER_PREFIX = "parameter.";
+    private static final String INPUT_PREFIX     = "input.";
+    private static final String OUTPUT_PREFIX    = "output.";
+
+    /** Parameter name => value. */
+    private final Map<String, String> parameters = new TreeMap<>();
+
+    /** Absolute file path => "<var>size</var>:<var>lastModified</var>:<var>sha256</var>". */
+    private final Map<String, String> inputs = new TreeMap<>();
+
+    /** Absolute file path => "". */
+    private final Map<String, String> outputs = new TreeMap<>();
+
+    /**
+     * @return The manifest stored in the <var>file</var>, or an empty manifest iff the <var>file</var> does not exist
+     *         or cannot be read
+     */
+    public static InputManifest
+    load(File file) {
+
+        InputManifest result = new InputManifest();
+        if (!file.isFile()) return result;
+
+        Properties properties = new Properties();
+        try (InputStream is = new FileInputStream(file)) {
+            properties.load(is);
+        } catch (IOException ioe) {
+            return result;
+        }
+
+        for (String key : properties.stringPropertyNames()) {
+            String value = properties.getProperty(key);
+            if (key.startsWith(InputManifest.PARAMETER_PREFIX)) {
+                result.parameters.put(key.substring(InputManifest.PARAMETER_PREFIX.length()), value);
+            } else
+            if (key.startsWith(InputManifest.INPUT_PREFIX)) {
+                result.inputs.put(key.substring(InputManifest.INPUT_PREFIX.length()), value);
+            } else
+            if (key.startsWith(InputManifest.OUTPUT_PREFIX)) {
+                result.outputs.put(key.substring(InputManifest.OUTPUT_PREFIX.length()), value);
+            }
+        }
+
+        return result;
+    }
+
+    public void
+    store(File file) throws IOException {
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, String> e : this.parameters.entrySet()) {
+            properties.setProperty(InputManifest.PARAMETER_PREFIX + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, String> e : this.inputs.entrySet()) {
+            properties.setProperty(InputManifest.INPUT_PREFIX + e.getKey(), e.getValue());
+        }
+        for (Map.Entry<String, String> e : this.outputs.entrySet()) {
+            properties.setProperty(InputManifest.OUTPUT_PREFIX + e.getKey(), e.getValue());
+        }
+
+        File parent = file.getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        try (OutputStream os = new FileOutputStream(file)) {
+            properties.store(os, "MAINDOC input manifest - do not edit");
+        }
+    }
+
+    public void
+    addParameter(String name, Object value) {
+        this.parameters.put(name, String.valueOf(value));
+    }
+
+    /**
+     * Records the content hash of the <var>file</var>, or, iff it is a directory, of all files under it. Missing
+     * files are recorded as such, so that their later appearance is noticed.
+     *
+     * @param previous Where to take the hashes of files from that have not changed since
+     */
+    public void
+    addInput(File file, InputManifest previous) throws IOException {
+
+        if (file.isDirectory()) {
+            File[] members = file.listFiles();
+            if (members == null) throw new IOException("Could not list directory \"" + file + "\"");
+            for (File member : members) this.addInput(member, previous);
+            return;
+        }
+
+        String path = file.getAbsolutePath();
+
+        if (!file.isFile()) {
+            this.inputs.put(path, "-");
+            return;
+        }
+
+        String sizeAndLastModified = file.length() + ":" + file.lastModified() + ":";
+
+        String previousState = previous.inputs.get(path);
+        if (previousState != null && previousState.startsWith(sizeAndLastModified)) {
+            this.inputs.put(path, previousState);
+            return;
+        }
+
+        this.inputs.put(path, sizeAndLastModified + InputManifest.sha256(file));
+    }
+
+    public void
+    addOutput(File file) {
+        this.outputs.put(file.getAbsolutePath(), "");
+    }
+
+    /**
+     * @return Whether the parameters and the input file contents of <var>this</var> and <var>that</var> manifest are
+     *         equal; sizes and modification times are <em>not</em> relevant
+     */
+    public boolean
+    inputsEqual(InputManifest that) {
+
+        if (!this.parameters.equals(that.parameters)) return false;
+
+        if (!this.inputs.keySet().equals(that.inputs.keySet())) return false;
+
+        for (Map.Entry<String, String> e : this.inputs.entrySet()) {
+            if (!InputManifest.hashOf(e.getValue()).equals(InputManifest.hashOf(that.inputs.get(e.getKey())))) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return Whether all recorded output files still exist
+     */
+    public boolean
+    outputsExist() {
+        for (String path : this.outputs.keySet()) {
+            if (!new File(path).isFile()) return false;
+        }
+        return true;
+    }
+
+    private static String
+    hashOf(String state) {
+        return state.substring(state.lastIndexOf(':') + 1);
+    }
+
+    private static String
+    sha256(File file) throws IOException {
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new AssertionError(nsae);
+        }
+
+        try (InputStream is = new FileInputStream(file)) {
+            byte[] buffer = new byte[8192];
+            for (;;) {
+                int n = is.read(buffer);
+                if (n == -1) break;
+                md.update(buffer, 0, n);
+            }
+        }
+
+        StringBuilder sb = new StringBuilder();
+        for (byte b : md.digest()) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.tools.DocumentationTool;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.apache.maven.execution.MavenSession;
+import org.eclipse.aether.SessionData;
+
+import de.unkrig.maindoc.doclet.MainDoclet;
+
+/**
+ * The JAVADOC tool, its file manager and the MAIN doclet class, shared by all MAINDOC executions of a MAVEN session.
+ * <p>
+ *   Because the file manager keeps the classpath archives that it has opened (and their indexes), and the package
+ *   listings of the source and class path directories across runs, the executions for the second and all following
+ *   modules of a reactor (and the cycles of the "watch" goal) mostly pay for parsing their own sources. When a
+ *   classpath archive is rewritten (e.g. by the "package" phase of an upstream module), the file manager is replaced.
+ *   The doclet classes are loaded only once.
+ * </p>
+ * <p>
+ *   The engine is not thread-safe; in parallel builds, its {@link #run(List, List, List, List, Map)} executions are
+ *   serialized.
+ * </p>
+ */
+final
+class JavadocEngine {
+
+    /**
+     * Whether the JRE is older than 11, so that the classic "{@code com.sun.javadoc}" doclet API must be used.
+     */
+    private static final boolean CLASSIC_DOCLET_API = JavadocEngine.javaSpecificationVersion() < 11;
+
+    /**
+     * The MAIN doclet for the "{@code jdk.javadoc.doclet}" API, which is compiled for JDK 11, and can thus not be
+     * referenced statically.
+     */
+    private static final String DOCLET9_CLASS_NAME = "de.unkrig.maindoc.doclet9.MainDoclet";
+
+    /**
+     * The key of the engine in the {@link SessionData}.
+     */
+    private static final Object SESSION_DATA_KEY = JavadocEngine.class.getName();
+
+    private final DocumentationTool documentationTool;
+    private CachingFileManager      fileManager;
+    private final Class<?>          docletClass;
+
+    private
+    JavadocEngine(DocumentationTool documentationTool, Class<?> docletClass) {
+        this.documentationTool = documentationTool;
+        this.fileManager       = new CachingFileManager(documentationTool.getStandardFileManager(null, null, null));
+        this.docletClass       = docletClass;
+    }
+
+    /**
+     * @return The engine of the given MAVEN <var>session</var>; created on the first invocation
+     */
+    static JavadocEngine
+    of(MavenSession session) throws IOException, ClassNotFoundException {
+
+        SessionData data = session.getRepositorySession().getData();
+
+        for (;;) {
+            JavadocEngine result = (JavadocEngine) data.get(JavadocEngine.SESSION_DATA_KEY);
+            if (result != null) return result;
+
+            DocumentationTool documentationTool = ToolProvider.getSystemDocumentationTool();
+            if (documentationTool == null) throw new IOException("This JRE has no JAVADOC tool");
+
+            result = new JavadocEngine(documentationTool, JavadocEngine.docletClass());
+
+            // Another thread may have created an engine in the meantime.
+            if (data.set(JavadocEngine.SESSION_DATA_KEY, null, result)) return result;
+
+            result.fileManager.close();
+        }
+    }
+
+    /**
+     * @return The MAIN doclet class that suits the running JRE; either the classic one or the one for the "{@code
+     *         jdk.javadoc.doclet}" API
+     */
+    static Class<?>
+    docletClass() throws ClassNotFoundException {
+
+        // The "com.sun.javadoc" API is deprecated since JDK 9, and gone since JDK 13.
+        if (JavadocEngine.CLASSIC_DOCLET_API) return MainDoclet.class;
+
+        return Class.forName(JavadocEngine.DOCLET9_CLASS_NAME, true, JavadocEngine.class.getClassLoader());
+    }
+
+    /**
+     * Runs JAVADOC with the MAIN doclet.
+     *
+     * @param options     JAVADOC and doclet options, and package names, but not "{@code -sourcepath}", "{@code
+     *                    -classpath}" and "{@code -doclet}"
+     * @param sourceFiles Source files to document (in addition to the packages named in the <var>options</var>)
+     * @return            Whether JAVADOC succeeded
+     */
+    boolean
+    run(List<File> sourcepath, List<File> classpath, List<String> options, List<File> sourceFiles)
+    throws IOException {
+        return this.run(sourcepath, classpath, options, sourceFiles, Collections.<String, CharSequence>emptyMap());
+    }
+
+    /**
+     * Runs JAVADOC with the MAIN doclet, on source files on disk and source files that exist only in memory (e.g.
+     * generated sources).
+     *
+     * @param options       JAVADOC and doclet options, and package names, but not "{@code -sourcepath}", "{@code
+     *                      -classpath}" and "{@code -doclet}"
+     * @param sourceFiles   Source files to document (in addition to the packages named in the <var>options</var>)
+     * @param memorySources The contents of more source files to document, by binary class name; for the duration of
+     *                      the run, these are also on the source path, and shadow source files on disk with the same
+     *                      name
+     * @return              Whether JAVADOC succeeded
+     */
+    synchronized boolean
+    run(
+        List<File>                          sourcepath,
+        List<File>                          classpath,
+        List<String>                        options,
+        List<File>                          sourceFiles,
+        Map<String, ? extends CharSequence> memorySources
+    ) throws IOException {
+
+        if (this.fileManager.archivesChanged(sourcepath) || this.fileManager.archivesChanged(classpath)) {
+            this.fileManager.close();
+            this.fileManager = new CachingFileManager(this.documentationTool.getStandardFileManager(null, null, null));
+        }
+
+        this.fileManager.setLocation(StandardLocation.SOURCE_PATH, sourcepath);
+        this.fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+
+        List<JavaFileObject> compilationUnits = new ArrayList<>();
+        for (JavaFileObject jfo : this.fileManager.getJavaFileObjectsFromFiles(sourceFiles)) {
+            compilationUnits.add(jfo);
+        }
+        for (Map.Entry<String, ? extends CharSequence> e : memorySources.entrySet()) {
+            compilationUnits.add(this.fileManager.putSource(e.getKey(), e.getValue()));
+        }
+
+        try {
+            return this.documentationTool.getTask(
+                null,                                                // out
+                this.fileManager,
+                null,                                                // diagnosticListener
+                this.docletClass,
+                options,
+                compilationUnits
+            ).call();
+        } finally {
+            for (String className : memorySources.keySet()) this.fileManager.removeSource(className);
+        }
+    }
+
+    /**
+     * Releases the resources of the engine of the given MAVEN <var>session</var> (if any), in particular the
+     * classpath archives that its file manager keeps open.
+     */
+    static void
+    close(MavenSession session) throws IOException {
+
+        SessionData data = session.getRepositorySession().getData();
+
+        JavadocEngine engine = (JavadocEngine) data.get(JavadocEngine.SESSION_DATA_KEY);
+        if (engine == null || !data.set(JavadocEngine.SESSION_DATA_KEY, engine, null)) return;
+
+        synchronized (engine) {
+            engine.fileManager.close();
+        }
+    }
+
+    /**
+     * @return E.g. 8 for "1.8", or 17 for "17"
+     */
+    private static int
+    javaSpecificationVersion() {
+        String v = System.getProperty("java.specification.version", "1.8");
+        return Integer.parseInt(v.startsWith("1.") ? v.substring(2) : v);
+    }
+}
@@ -27,13 +27,12 @@
 package de.unkrig.maindoc.maindoc_maven_plugin;
 
 import java.io.File;
-import java.nio.charset.Charset;
-import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.maven.artifact.Artifact;
-import org.apache.maven.plugin.AbstractMojo;
+import org.apache.maven.plugin.MojoExecution;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
@@ -41,101 +40,88 @@ import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.plugins.annotations.ResolutionScope;
 import org.apache.maven.project.MavenProject;
 
-import de.unkrig.maindoc.doclet.MainDoclet;
-
 @Mojo(
     name                         = "maindoc",
     defaultPhase                 = LifecyclePhase.COMPILE,
     requiresDependencyResolution = ResolutionScope.COMPILE
 ) public
-class MaindocMojo extends AbstractMojo {
+class MaindocMojo extends AbstractMaindocMojo {
 
-    @Parameter(defaultValue = "${project}", readonly = true, required = true) MavenProject project;
-    @Parameter(defaultValue = "target/classes")                               File         destination;
-    @Parameter(defaultValue = "src/main/java")                                List<File>   sourcepath;
-    @Parameter(defaultValue = "main(String[])")                               String       method;
-    @Parameter                                                                String       docEncoding;
-    @Parameter                                                                String       charset;
-    @Parameter                                                                String       doctitle;
-    @Parameter(defaultValue = "false")                                        boolean      quiet;
-    @Parameter                                                                String[]     packages;
+    @Parameter(defaultValue = "target/classes") File       destination;
+    @Parameter(defaultValue = "src/main/java")  List<File> sourcepath;
+    @Parameter                                  String[]   packages;
 
-    public void
-    execute() throws MojoExecutionException {
-        try {
-            this.execute2();
-        } catch (MojoExecutionException mee) {
-            throw mee;
-        } catch (Exception e) {
-            throw new MojoExecutionException("maindoc", e);
-        }
-    }
-    
-    public void
-    execute2() throws Exception {
-        
-        String classpath;
-        {
-            List<File> cp = new ArrayList<>();
-            for (Artifact a : this.project.getArtifacts()) cp.add(a.getFile());
-            classpath = makePath(cp);
-        }
-        
-        List<String> args = new ArrayList<>();
+    /**
+     * Where the inputs of the last successful run are recorded. If neither the inputs nor the parameters have
+     * changed since, and the output files of that run still exist, then JAVADOC is not executed at all.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/maindoc-inputs.properties") File inputManifest;
 
-        args.add("-doclet");
-        args.add(MainDoclet.class.getName());
-        
-        args.add("-classpath");
-        args.add(classpath);
+    @Parameter(defaultValue = "${mojoExecution}", readonly = true, required = true) MojoExecution mojoExecution;
 
-        args.add("-d");
-        args.add(this.destination.getAbsolutePath());
+    @Override protected void
+    execute2() throws Exception {
 
-        args.add("-sourcepath");
-        args.add(makePath(this.sourcepath));
-        
-        if (this.method != null) {
-            args.add("-method");
-            args.add(this.method);
-        }
+        Map<String, File> packageDestinations = new LinkedHashMap<>();
+        for (String p : this.packages) packageDestinations.put(p, this.destination);
 
-        if (this.docEncoding != null) {
-            args.add("-docencoding");
-            args.add(this.docEncoding);
+        // The generated help classes and option tables are to be compiled like the other sources, which is only
+        // possible if the compiler runs after this execution.
+        if (
+            (this.helpClassDestination != null || this.optionTableDestination != null)
+            && !MaindocMojo.isBeforeCompile(this.mojoExecution.getLifecyclePhase())
+        ) {
+            throw new MojoExecutionException(
+                "<helpClassDestination> and <optionTableDestination> require that the execution is bound to a phase "
+                + "before \"compile\", e.g. \"generate-sources\", but "
+                + (
+                    this.mojoExecution.getLifecyclePhase() == null
+                    ? "it was invoked directly"
+                    : "it is bound to \"" + this.mojoExecution.getLifecyclePhase() + "\""
+                )
+            );
         }
-        
-        if (this.charset != null) {
-            args.add("-charset");
-            args.add(this.charset);
+        if (this.helpClassDestination != null) {
+            this.project.addCompileSourceRoot(this.helpClassDestination.getAbsolutePath());
         }
-        
-        if (this.doctitle != null) {
-            args.add("-doctitle");
-            args.add(this.doctitle);
+        if (this.optionTableDestination != null) {
+            this.project.addCompileSourceRoot(this.optionTableDestination.getAbsolutePath());
         }
-        
-        if (this.quiet) args.add("-quiet");
-        
-        for (String p : this.packages) args.add(p);
-        
-        int status = com.sun.tools.javadoc.Main.execute(args.toArray(new String[args.size()]));
-        
-        if (status != 0) throw new MojoExecutionException("Javadoc failed with status " + status);
-    }
 
-    private static String
-    makePath(List<File> files) {
-        
-        StringBuilder sb = new StringBuilder();
+        // The engine is shared with the executions for the other modules of the reactor.
+        try {
+            this.maindoc(
+                this.sourcepath,
+                this.project.getArtifacts(),
+                Collections.singletonList(new File(this.project.getBuild().getOutputDirectory())),
+                packageDestinations,
+                this.inputManifest
+            );
+        } finally {
+
+            // In a sequential build, the engine is no longer needed after the last module. (In a parallel build, the
+            // last module is not necessarily the last to execute, so the engine is only released when the JVM
+            // terminates.)
+            List<MavenProject> projects = this.session.getProjects();
+            if (
+                !this.session.isParallel()
+                && !projects.isEmpty()
+                && projects.get(projects.size() - 1) == this.project
+            ) JavadocEngine.close(this.session);
+        }
+    }
 
-        Iterator<File> it = files.iterator();
-        for (;;) {
-            sb.append(it.next().getAbsolutePath());
-            if (!it.hasNext()) break;
-            sb.append(File.pathSeparatorChar);
+    /**
+     * @param phase The ID of a lifecycle phase, or {@code null}
+     * @return      Whether the <var>phase</var> is one of the phases of the default lifecycle that precede "{@code
+     *              compile}"
+     */
+    private static boolean
+    isBeforeCompile(String phase) {
+        for (LifecyclePhase lp : LifecyclePhase.values()) {
+            if (lp == LifecyclePhase.COMPILE) break;
+            if (lp.id().equals(phase)) return true;
         }
-        
-        return sb.toString();
+        return false;
     }
 }
@@ -0,0 +1,177 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * A persistent record of the packages that each classpath archive contains, so that the classpath can be trimmed
+ * without opening the archives again.
+ * <p>
+ *   An archive is re-indexed only if its size or modification time changed since the index was stored. Directories
+ *   (e.g. the output directories of other modules of the reactor) are not recorded, but scanned on each run, because
+ *   their content changes frequently.
+ * </p>
+ */
+class PackageIndex {
+
+    /** Absolute archive path => "<var>size</var>:<var>lastModified</var>:<var>package</var>,<var>package</var>...". */
+    private final Map<String, String> entries = new TreeMap<>();
+
+    /** Whether {@link #entries} changed since the index was loaded. */
+    private boolean modified;
+
+    /**
+     * @return The index stored in the <var>file</var>, or an empty index iff the <var>file</var> does not exist or
+     *         cannot be read
+     */
+    public static PackageIndex
+    load(File file) {
+
+        PackageIndex result = new PackageIndex();
+        if (!file.isFile()) return result;
+
+        Properties properties = new Properties();
+        try (InputStream is = new FileInputStream(file)) {
+            properties.load(is);
+        } catch (IOException ioe) {
+            return result;
+        }
+
+        for (String key : properties.stringPropertyNames()) result.entries.put(key, properties.getProperty(key));
+
+        return result;
+    }
+
+    /**
+     * Stores the index in the <var>file</var>, iff it changed since it was {@link #load(File) loaded}.
+     */
+    public void
+    store(File file) throws IOException {
+
+        if (!this.modified) return;
+
+        Properties properties = new Properties();
+        for (Map.Entry<String, String> e : this.entries.entrySet()) properties.setProperty(e.getKey(), e.getValue());
+
+        File parent = file.getParentFile();
+        if (parent != null) parent.mkdirs();
+
+        try (OutputStream os = new FileOutputStream(file)) {
+            properties.store(os, "MAINDOC package index - do not edit");
+        }
+
+        this.modified = false;
+    }
+
+    /**
+     * @param artifact A JAR file or a directory
+     * @return         The names of the packages that contain at least one class file within the <var>artifact</var>
+     */
+    public Set<String>
+    packagesOf(File artifact) throws IOException {
+
+        if (artifact.isDirectory()) {
+            Set<String> result = new TreeSet<>();
+            PackageIndex.addPackages(artifact, "", result);
+            return result;
+        }
+
+        if (!artifact.isFile()) return Collections.emptySet();
+
+        String key   = artifact.getAbsolutePath();
+        String stamp = artifact.length() + ":" + artifact.lastModified() + ":";
+
+        String entry = this.entries.get(key);
+        if (entry != null && entry.startsWith(stamp)) {
+            String packages = entry.substring(stamp.length());
+            Set<String> result = new TreeSet<>();
+            if (!packages.isEmpty()) Collections.addAll(result, packages.split(","));
+            return result;
+        }
+
+        Set<String> result = new TreeSet<>();
+        try (ZipFile zf = new ZipFile(artifact)) {
+            for (Enumeration<? extends ZipEntry> en = zf.entries(); en.hasMoreElements();) {
+
+                String name = en.nextElement().getName();
+                if (!name.endsWith(".class")) continue;
+
+                // Multi-release JARs have versioned classes under "META-INF/versions/<n>/".
+                if (name.startsWith("META-INF/versions/")) {
+                    int idx = name.indexOf('/', 18);
+                    if (idx == -1) continue;
+                    name = name.substring(idx + 1);
+                }
+
+                int idx = name.lastIndexOf('/');
+                if (idx != -1) result.add(name.substring(0, idx).replace('/', '.'));
+            }
+        }
+
+        StringBuilder sb = new StringBuilder(stamp);
+        for (String p : result) {
+            if (sb.length() > stamp.length()) sb.append(',');
+            sb.append(p);
+        }
+        this.entries.put(key, sb.toString());
+        this.modified = true;
+
+        return result;
+    }
+
+    private static void
+    addPackages(File directory, String packageName, Set<String> result) {
+
+        File[] members = directory.listFiles();
+        if (members == null) return;
+
+        for (File member : members) {
+            String name = member.getName();
+            if (member.isDirectory()) {
+                PackageIndex.addPackages(member, packageName.isEmpty() ? name : packageName + '.' + name, result);
+            } else
+            if (name.endsWith(".class") && !packageName.isEmpty()) {
+                result.add(packageName);
+            }
+        }
+    }
+}
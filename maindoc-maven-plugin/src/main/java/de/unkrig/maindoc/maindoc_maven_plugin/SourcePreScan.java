@@ -0,0 +1,423 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.unkrig.maindoc.doclet.MethodSelector;
+import de.unkrig.maindoc.maindoc_maven_plugin.ClassFileInfo.MethodInfo;
+
+/**
+ * Determines, from the class files that the compiler generated, which source files JAVADOC must process, so that it
+ * needs not parse and attribute all classes of the documented packages.
+ * <p>
+ *   These are the source files of the classes that declare a method to document, plus the source files of their
+ *   superclasses and interfaces that declare command line options (and thus contribute to "{@code
+ *   {@main.commandLineOptions}}").
+ * </p>
+ * <p>
+ *   Also determines which packages these classes reference, so that the classpath can be {@link ClasspathTrimmer
+ *   trimmed} to the artifacts that JAVADOC actually needs.
+ * </p>
+ */
+final
+class SourcePreScan {
+
+    private static final String COMMAND_LINE_OPTION = "Lde/unkrig/commons/util/annotation/CommandLineOption;";
+
+    /**
+     * Matches an import declaration, e.g. "{@code import java.util.List;}" or "{@code import static java.util.*;}";
+     * group #1 is the imported name, without the "{@code .*}".
+     */
+    private static final Pattern
+    IMPORT = Pattern.compile("(?m)^\\s*import\\s+(?:static\\s+)?([\\p{javaJavaIdentifierPart}.]+?)(?:\\.\\*)?\\s*;");
+
+    private final MethodSelector methods;
+    private final List<File>     classesDirectories;
+    private final List<File>     sourcepath;
+
+    /** The classes read so far, by internal name; {@code null} values mean "not in the classes directories". */
+    private final Map<String, ClassFileInfo> classes = new HashMap<>();
+
+    /** The classes whose source files {@link #relevantSourceFiles(Collection)} selected. */
+    private final List<ClassFileInfo> relevantClasses = new ArrayList<>();
+
+    /** See {@link #supertypeSourceFiles()}. */
+    private final Map<File, Set<File>> supertypeSourceFiles = new LinkedHashMap<>();
+
+    /**
+     * @param classesDirectories Where the compiler put the class files of the documented packages
+     */
+    SourcePreScan(MethodSelector methods, List<File> classesDirectories, List<File> sourcepath) {
+        this.methods            = methods;
+        this.classesDirectories = classesDirectories;
+        this.sourcepath         = sourcepath;
+    }
+
+    /**
+     * @return The source files that JAVADOC must process to document the selected methods of the <var>packages</var>
+     *         (possibly none), or {@code null} iff the pre-scan is not conclusive, e.g. because a package was not
+     *         compiled yet, or because the source file of a class cannot be found on the sourcepath
+     */
+    List<File>
+    relevantSourceFiles(Collection<String> packages) throws IOException {
+
+        Set<File> result = new LinkedHashSet<>();
+        for (String packageName : packages) {
+
+            String  packagePath = packageName.replace('.', '/');
+            boolean compiled    = false;
+            for (File classesDirectory : this.classesDirectories) {
+
+                File[] members = new File(classesDirectory, packagePath).listFiles();
+                if (members == null) continue;
+
+                for (File member : members) {
+
+                    String fileName = member.getName();
+                    if (
+                        !fileName.endsWith(".class")
+                        || "package-info.class".equals(fileName)
+                        || "module-info.class".equals(fileName)
+                    ) continue;
+
+                    compiled = true;
+
+                    // JAVADOC does not document anonymous and local classes.
+                    String className = fileName.substring(0, fileName.length() - 6);
+                    if (SourcePreScan.isAnonymousOrLocal(className)) continue;
+
+                    ClassFileInfo cfi = this.classFile(
+                        packagePath.isEmpty() ? className : packagePath + '/' + className
+                    );
+                    if (cfi == null || !this.declaresSelectedMethod(cfi)) continue;
+
+                    File sourceFile = this.sourceFileOf(cfi);
+                    if (sourceFile == null) return null;
+                    result.add(sourceFile);
+                    this.relevantClasses.add(cfi);
+
+                    // (Several classes may be declared in the same source file.)
+                    Set<File> supertypeSourceFiles = this.supertypeSourceFiles.get(sourceFile);
+                    if (supertypeSourceFiles == null) {
+                        supertypeSourceFiles = new LinkedHashSet<>();
+                        this.supertypeSourceFiles.put(sourceFile, supertypeSourceFiles);
+                    }
+
+                    // The superclasses of the class, and the interfaces that it implements, may declare command line
+                    // options.
+                    for (ClassFileInfo sc : this.supertypesOf(cfi)) {
+                        if (!SourcePreScan.declaresCommandLineOptions(sc)) continue;
+
+                        // Iff the source file was deleted after the last compilation, then record where it was, so
+                        // that the deletion can be related to the class.
+                        File f = this.sourceFileOf(sc);
+                        if (f != null) {
+                            supertypeSourceFiles.add(f);
+                        } else {
+                            supertypeSourceFiles.addAll(this.candidateSourceFilesOf(sc));
+                        }
+
+                        // Notice: Including a class with a method to document that is not in one of the documented
+                        // packages would create an additional output file; JAVADOC finds the class on the sourcepath
+                        // anyway.
+                        if (this.declaresSelectedMethod(sc) && !packages.contains(SourcePreScan.packageNameOf(sc))) {
+                            continue;
+                        }
+
+                        if (f != null && result.add(f)) this.relevantClasses.add(sc);
+                    }
+                }
+            }
+
+            if (!compiled) return null;
+        }
+
+        return new ArrayList<>(result);
+    }
+
+    /**
+     * @return Whether each source file of the <var>packages</var> has a class file that is not older than the source
+     *         file; iff not (e.g. because a class was added or changed after the last compilation, and this build did
+     *         not compile it yet), then {@link #relevantSourceFiles(Collection)} would miss classes, and its result
+     *         must not be relied on
+     */
+    boolean
+    classFilesUpToDate(Collection<String> packages) {
+
+        for (String packageName : packages) {
+
+            String packagePath = packageName.replace('.', '/');
+            for (File sourceDirectory : this.sourcepath) {
+
+                File[] members = new File(sourceDirectory, packagePath).listFiles();
+                if (members == null) continue;
+
+                for (File member : members) {
+
+                    String fileName = member.getName();
+                    if (
+                        !fileName.endsWith(".java")
+                        || "package-info.java".equals(fileName)
+                        || "module-info.java".equals(fileName)
+                    ) continue;
+
+                    // Notice: A source file that declares no top-level class of the same name (which is legal for
+                    // non-public classes) always counts as not compiled; so play it safe.
+                    String className = fileName.substring(0, fileName.length() - 5);
+                    File   classFile = this.classFileOf(
+                        packagePath.isEmpty() ? className : packagePath + '/' + className
+                    );
+                    if (classFile == null || classFile.lastModified() < member.lastModified()) return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * @return For each source file that {@link #relevantSourceFiles(Collection)} selected because it declares a
+     *         method to document: The source files of the supertypes that declare command line options, and thus
+     *         contribute to its documentation; for a supertype whose source file does not exist (any more): all the
+     *         locations on the sourcepath where it could have been
+     */
+    Map<File, Set<File>>
+    supertypeSourceFiles() {
+        return Collections.unmodifiableMap(this.supertypeSourceFiles);
+    }
+
+    /**
+     * @return The names of the packages that the classes selected by {@link #relevantSourceFiles(Collection)}
+     *         reference, directly or through other classes in the classes directories, or through the import
+     *         declarations of their source files
+     */
+    Set<String>
+    referencedPackages() throws IOException {
+
+        Set<String> result = new HashSet<>();
+
+        Set<String>          seen        = new HashSet<>();
+        Set<File>            sourceFiles = new HashSet<>();
+        Deque<ClassFileInfo> todo        = new ArrayDeque<>();
+        for (ClassFileInfo cfi : this.relevantClasses) {
+            if (seen.add(cfi.name)) todo.add(cfi);
+        }
+
+        while (!todo.isEmpty()) {
+            ClassFileInfo cfi = todo.removeFirst();
+
+            // JAVADOC reports an error for each import declaration that it cannot resolve, although imports that
+            // are used only in doc comments leave no trace in the class file.
+            File sourceFile = this.sourceFileOf(cfi);
+            if (sourceFile != null && sourceFiles.add(sourceFile)) {
+                SourcePreScan.addImportedPackages(sourceFile, result);
+            }
+
+            for (String rc : cfi.referencedClasses) {
+                result.add(rc.substring(0, rc.lastIndexOf('/')).replace('/', '.'));
+
+                if (seen.add(rc)) {
+                    ClassFileInfo c = this.classFile(rc);
+                    if (c != null) todo.add(c);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Adds the names of the packages that the import declarations of the <var>sourceFile</var> (may) reference to
+     * the <var>result</var>. Because "{@code import a.b.C;}" could as well import the nested class "{@code C}" of
+     * class "{@code a.b}", all prefixes of the imported name are added.
+     */
+    private static void
+    addImportedPackages(File sourceFile, Set<String> result) throws IOException {
+
+        // Decoding as ISO-8859-1 never fails, and leaves (ASCII) import declarations intact.
+        String text = new String(Files.readAllBytes(sourceFile.toPath()), StandardCharsets.ISO_8859_1);
+
+        for (Matcher m = SourcePreScan.IMPORT.matcher(text); m.find();) {
+            String name = m.group(1);
+            for (int idx = name.indexOf('.'); idx != -1; idx = name.indexOf('.', idx + 1)) {
+                result.add(name.substring(0, idx));
+            }
+            result.add(name);
+        }
+    }
+
+    /**
+     * @return The direct and indirect supertypes of the class (each only once) that are in the classes directories
+     */
+    private Collection<ClassFileInfo>
+    supertypesOf(ClassFileInfo cfi) throws IOException {
+
+        Set<ClassFileInfo>   result = new LinkedHashSet<>();
+        Deque<ClassFileInfo> todo   = new ArrayDeque<>();
+        for (ClassFileInfo t = cfi; t != null; t = todo.poll()) {
+
+            List<String> supertypeNames = new ArrayList<>();
+            if (t.superName != null) supertypeNames.add(t.superName);
+            supertypeNames.addAll(t.interfaceNames);
+
+            for (String supertypeName : supertypeNames) {
+                ClassFileInfo st = this.classFile(supertypeName);
+                if (st != null && result.add(st)) todo.add(st);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * @param internalName E.g. "{@code pkg/Outer$Inner}", or {@code null}
+     * @return             The class with that name, or {@code null} iff it is not in the classes directories
+     */
+    private ClassFileInfo
+    classFile(String internalName) throws IOException {
+
+        if (internalName == null) return null;
+
+        if (this.classes.containsKey(internalName)) return this.classes.get(internalName);
+
+        File          classFile = this.classFileOf(internalName);
+        ClassFileInfo result    = classFile == null ? null : ClassFileInfo.read(classFile);
+
+        this.classes.put(internalName, result);
+        return result;
+    }
+
+    /**
+     * @param internalName E.g. "{@code pkg/Outer$Inner}"
+     * @return             The class file with that name in the classes directories, or {@code null} iff there is none
+     */
+    private File
+    classFileOf(String internalName) {
+
+        for (File classesDirectory : this.classesDirectories) {
+            File classFile = new File(classesDirectory, internalName + ".class");
+            if (classFile.isFile()) return classFile;
+        }
+
+        return null;
+    }
+
+    private boolean
+    declaresSelectedMethod(ClassFileInfo cfi) {
+
+        for (MethodInfo mi : cfi.methods) {
+            if (!this.methods.mayMatch(mi.name)) continue;
+
+            // For generic methods, the signature that JAVADOC computes may differ from the erased one, e.g.
+            // "(T)" vs. "(Object)"; so play it safe.
+            if (mi.generic || this.methods.matches(mi.name, mi.flatSignature)) return true;
+        }
+
+        return false;
+    }
+
+    private static boolean
+    declaresCommandLineOptions(ClassFileInfo cfi) {
+
+        for (MethodInfo mi : cfi.methods) {
+            if (mi.annotations.contains(SourcePreScan.COMMAND_LINE_OPTION)) return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * @return The source file (on the sourcepath) that the class was compiled from, or {@code null} iff it cannot be
+     *         found
+     */
+    private File
+    sourceFileOf(ClassFileInfo cfi) {
+
+        for (File result : this.candidateSourceFilesOf(cfi)) {
+            if (result.isFile()) return result;
+        }
+
+        return null;
+    }
+
+    /**
+     * @return The locations on the sourcepath where the source file of the class would be
+     */
+    private List<File>
+    candidateSourceFilesOf(ClassFileInfo cfi) {
+
+        int    slash       = cfi.name.lastIndexOf('/');
+        String packagePath = slash == -1 ? "" : cfi.name.substring(0, slash + 1);
+
+        // Fall back to the name of the top-level class if the class file has no "SourceFile" attribute.
+        String fileName = cfi.sourceFile;
+        if (fileName == null) {
+            String simpleName = cfi.name.substring(slash + 1);
+            int    dollar     = simpleName.indexOf('$');
+            fileName = (dollar == -1 ? simpleName : simpleName.substring(0, dollar)) + ".java";
+        }
+
+        List<File> result = new ArrayList<>();
+        for (File sourceDirectory : this.sourcepath) result.add(new File(sourceDirectory, packagePath + fileName));
+
+        return result;
+    }
+
+    /**
+     * @return Whether the class with the given binary name is anonymous or local, e.g. "{@code Outer$1}" or "{@code
+     *         Outer$1Local}"
+     */
+    private static boolean
+    isAnonymousOrLocal(String className) {
+        int dollar = className.lastIndexOf('$');
+        return dollar != -1 && dollar < className.length() - 1 && Character.isDigit(className.charAt(dollar + 1));
+    }
+
+    private static String
+    packageNameOf(ClassFileInfo cfi) {
+        int slash = cfi.name.lastIndexOf('/');
+        return slash == -1 ? "" : cfi.name.substring(0, slash).replace('/', '.');
+    }
+}
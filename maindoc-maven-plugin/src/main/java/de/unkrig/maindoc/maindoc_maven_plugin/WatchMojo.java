@@ -0,0 +1,457 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.artifact.Artifact;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugins.annotations.Mojo;
+import org.apache.maven.plugins.annotations.Parameter;
+import org.apache.maven.plugins.annotations.ResolutionScope;
+
+import de.unkrig.maindoc.doclet.MethodSelector;
+
+/**
+ * Documents the packages like the "{@code maindoc}" goal, and then watches the sourcepath, and regenerates the
+ * documentation of each class whose source file changes, or the source file of a superclass or interface that
+ * declares command line options; until MAVEN is terminated, e.g. with Ctrl-C.
+ * <p>
+ *   JAVADOC, its file manager (with the classpath archives) and the doclet stay loaded, and JAVADOC processes only
+ *   the changed classes, so the documentation is up-to-date a fraction of a second after a doc comment was saved,
+ *   without a "{@code mvn compile}".
+ * </p>
+ * <p>
+ *   The classes to document, and their supertypes, are determined from the class files of the last compilation.
+ *   A class that was not compiled yet is documented when its source file changes.
+ * </p>
+ * <p>
+ *   When a source file is deleted (or renamed), then the documents, help classes and option tables of its class are
+ *   deleted, and the documentation of the classes that inherit command line options from it is regenerated.
+ * </p>
+ */
+@Mojo(
+    name                         = "watch",
+    requiresDependencyResolution = ResolutionScope.COMPILE
+) public
+class WatchMojo extends AbstractMaindocMojo {
+
+    @Parameter(defaultValue = "target/classes") File       destination;
+    @Parameter(defaultValue = "src/main/java")  List<File> sourcepath;
+    @Parameter                                  String[]   packages;
+
+    /**
+     * Where the inputs of the last successful run are recorded. If neither the inputs nor the parameters have
+     * changed since, and the output files of that run still exist, then the documentation is not regenerated when
+     * the goal starts.
+     */
+    @Parameter(defaultValue = "${project.build.directory}/maindoc-inputs.properties") File inputManifest;
+
+    /**
+     * How long to wait (in milliseconds) after a change of the sourcepath for further changes, before the
+     * documentation is regenerated; editors often save a file in several steps.
+     */
+    @Parameter(property = "maindoc.watchDelay", defaultValue = "100") long delay;
+
+    @Override protected void
+    execute2() throws Exception {
+
+        Map<String, File> packageDestinations = new LinkedHashMap<>();
+        for (String p : this.packages) packageDestinations.put(p, this.destination);
+
+        List<File> classesDirectories = Collections.singletonList(
+            new File(this.project.getBuild().getOutputDirectory())
+        );
+
+        List<File> classpath = new ArrayList<>();
+        for (Artifact a : this.project.getArtifacts()) classpath.add(a.getFile());
+
+        try (WatchService watchService = FileSystems.getDefault().newWatchService()) {
+
+            // Watch before the initial run, so that no change gets lost.
+            Map<WatchKey, Path> directories = new HashMap<>();
+            for (File d : this.sourcepath) {
+                if (d.isDirectory()) WatchMojo.register(d.toPath(), watchService, directories, null);
+            }
+
+            // A failure (e.g. a syntax error in a source file) must not prevent the watch.
+            try {
+                this.maindoc(
+                    this.sourcepath,
+                    this.project.getArtifacts(),
+                    classesDirectories,
+                    packageDestinations,
+                    this.inputManifest
+                );
+            } catch (MojoExecutionException mee) {
+                this.getLog().error(mee.getMessage());
+            }
+
+            this.getLog().info("Watching " + this.sourcepath + " for changes; press Ctrl-C to stop");
+
+            for (;;) {
+                Set<File> changed = new LinkedHashSet<>();
+                Set<File> deleted = new LinkedHashSet<>();
+                boolean   all     = WatchMojo.awaitChanges(watchService, directories, this.delay, changed, deleted);
+
+                // Likewise, a failure must not end the watch.
+                try {
+                    this.regenerate(changed, deleted, all, packageDestinations, classesDirectories, classpath);
+                } catch (Exception e) {
+                    this.getLog().error("Regenerating the documentation failed", e);
+                }
+            }
+        } catch (InterruptedException ie) {
+
+            // The regular end of the watch.
+        } finally {
+            JavadocEngine.close(this.session);
+        }
+    }
+
+    /**
+     * Deletes the output files of the classes of the <var>deleted</var> source files, and runs JAVADOC on the source
+     * files of the classes whose documentation depends on the <var>changed</var> or <var>deleted</var> source files.
+     *
+     * @param all Whether to regenerate the documentation of all classes, e.g. because the changes are unknown
+     */
+    private void
+    regenerate(
+        Set<File>         changed,
+        Set<File>         deleted,
+        boolean           all,
+        Map<String, File> packageDestinations,
+        List<File>        classesDirectories,
+        List<File>        classpath
+    ) throws Exception {
+
+        long startNanos = System.nanoTime();
+
+        MethodSelector ms = new MethodSelector();
+        for (String m : this.methods()) ms.add(m);
+
+        for (File f : deleted) this.deleteOutputs(f, packageDestinations, ms);
+
+        // Re-read the class files, because the classes may have been compiled in the meantime.
+        SourcePreScan scan     = new SourcePreScan(ms, classesDirectories, this.sourcepath);
+        List<File>    relevant = scan.relevantSourceFiles(packageDestinations.keySet());
+
+        List<String> args        = this.docletOptions(packageDestinations);
+        Set<File>    sourceFiles = new LinkedHashSet<>();
+        if (relevant == null) {
+
+            // The pre-scan is inconclusive, so JAVADOC processes the entire packages.
+            args.addAll(packageDestinations.keySet());
+        } else
+        if (all || this.archive != null) {
+
+            // An archive is always written as a whole.
+            sourceFiles.addAll(relevant);
+        } else
+        {
+            Set<File> changedOrDeleted = new HashSet<>(changed);
+            changedOrDeleted.addAll(deleted);
+
+            Set<File> relevantSet = new HashSet<>(relevant);
+            for (Entry<File, Set<File>> e : scan.supertypeSourceFiles().entrySet()) {
+                File      documented           = e.getKey();
+                Set<File> supertypeSourceFiles = e.getValue();
+
+                if (
+                    !changed.contains(documented)
+                    && Collections.disjoint(changedOrDeleted, supertypeSourceFiles)
+                ) continue;
+
+                sourceFiles.add(documented);
+                for (File f : supertypeSourceFiles) {
+                    if (relevantSet.contains(f)) sourceFiles.add(f);
+                }
+            }
+
+            // Classes that did not declare a method to document when they were compiled may declare one now.
+            for (File f : changed) {
+                if (packageDestinations.containsKey(this.packageNameOf(f))) sourceFiles.add(f);
+            }
+
+            if (sourceFiles.isEmpty()) {
+                this.getLog().debug("No documented class depends on " + changedOrDeleted);
+                return;
+            }
+        }
+
+        if (!JavadocEngine.of(this.session).run(this.sourcepath, classpath, args, new ArrayList<>(sourceFiles))) {
+            this.getLog().error("Javadoc failed");
+            return;
+        }
+
+        this.getLog().info(
+            "Regenerated the documentation of "
+            + (relevant == null ? "the packages" : sourceFiles.size() + " source file(s)")
+            + " in "
+            + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos)
+            + " ms"
+        );
+    }
+
+    /**
+     * Deletes the documents, help classes and option tables of the top-level class that the <var>sourceFile</var>
+     * was named after, and of its nested classes. (The documentation of other top-level classes that the source file
+     * declared remains, until the next full build.)
+     */
+    private void
+    deleteOutputs(File sourceFile, Map<String, File> packageDestinations, MethodSelector methodSelector) {
+
+        String packageName = this.packageNameOf(sourceFile);
+        if (packageName == null || !packageDestinations.containsKey(packageName)) return;
+
+        String packagePath = packageName.replace('.', File.separatorChar);
+        String fileName    = sourceFile.getName();
+        String className   = fileName.substring(0, fileName.length() - 5);
+
+        // An archive is always written as a whole, and thus loses the documents of the class anyway.
+        if (this.archive == null) {
+            File directory = new File(packageDestinations.get(packageName), packagePath);
+
+            // Documents are named "<class>.<method-name>(<parameter-types>).<extension>"; those of nested classes
+            // are in the subdirectory "<class>".
+            File[] members = directory.listFiles();
+            if (members != null) {
+                for (File member : members) {
+                    if (
+                        member.getName().startsWith(className + ".")
+                        && AbstractMaindocMojo.isOutputFile(member, methodSelector)
+                    ) this.delete(member);
+                }
+            }
+            this.deleteAll(new File(directory, className), methodSelector);
+        }
+
+        if (this.helpClassDestination != null) {
+            this.deleteGeneratedSources(
+                new File(this.helpClassDestination, packagePath),
+                className,
+                "Help.java"
+            );
+        }
+        if (this.optionTableDestination != null) {
+            this.deleteGeneratedSources(
+                new File(this.optionTableDestination, packagePath),
+                className,
+                "Options.java"
+            );
+        }
+    }
+
+    /**
+     * Deletes the documents in the <var>directory</var> and its subdirectories.
+     */
+    private void
+    deleteAll(File directory, MethodSelector methodSelector) {
+
+        File[] members = directory.listFiles();
+        if (members == null) return;
+
+        for (File member : members) {
+            if (member.isDirectory()) {
+                this.deleteAll(member, methodSelector);
+            } else
+            if (AbstractMaindocMojo.isOutputFile(member, methodSelector)) {
+                this.delete(member);
+            }
+        }
+    }
+
+    /**
+     * Deletes the generated source files for the class <var>className</var> and its nested classes in the
+     * <var>directory</var>, e.g. "{@code ToolHelp.java}" and "{@code Tool_InnerHelp.java}" for the <var>suffix</var>
+     * "{@code Help.java}".
+     */
+    private void
+    deleteGeneratedSources(File directory, String className, String suffix) {
+
+        File[] members = directory.listFiles();
+        if (members == null) return;
+
+        for (File member : members) {
+            String name = member.getName();
+            if (name.equals(className + suffix) || (name.startsWith(className + "_") && name.endsWith(suffix))) {
+                this.delete(member);
+            }
+        }
+    }
+
+    private void
+    delete(File file) {
+        if (file.delete()) {
+            this.getLog().info("Deleted \"" + file + "\"");
+        } else {
+            this.getLog().warn("Could not delete \"" + file + "\"");
+        }
+    }
+
+    /**
+     * @return The name of the package of the given <var>sourceFile</var>, as determined by its location on the
+     *         sourcepath, or {@code null} iff it is not on the sourcepath
+     */
+    private String
+    packageNameOf(File sourceFile) {
+
+        Path path = sourceFile.toPath();
+        for (File sourceDirectory : this.sourcepath) {
+            Path sd = sourceDirectory.toPath();
+            if (!path.startsWith(sd)) continue;
+
+            Path relativeDirectory = sd.relativize(path).getParent();
+            return relativeDirectory == null ? "" : relativeDirectory.toString().replace(File.separatorChar, '.');
+        }
+
+        return null;
+    }
+
+    /**
+     * Waits until a watched directory changes, and then until the <var>delay</var> passes without further changes.
+     * Also starts watching directories that were created in the meantime.
+     *
+     * @param changed Receives the Java source files that were created or modified
+     * @param deleted Receives the Java source files that were deleted (and not re-created)
+     * @return        Whether change events were lost, so that not all changes are in <var>changed</var> and
+     *                <var>deleted</var>
+     */
+    private static boolean
+    awaitChanges(
+        WatchService        watchService,
+        Map<WatchKey, Path> directories,
+        long                delay,
+        Set<File>           changed,
+        Set<File>           deleted
+    ) throws IOException, InterruptedException {
+
+        boolean overflow = false;
+        for (
+            WatchKey key = watchService.take();
+            key != null;
+            key = watchService.poll(delay, TimeUnit.MILLISECONDS)
+        ) {
+            Path directory = directories.get(key);
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                WatchEvent.Kind<?> kind = event.kind();
+
+                if (kind == StandardWatchEventKinds.OVERFLOW) {
+                    overflow = true;
+                    continue;
+                }
+
+                if (directory == null) continue;
+
+                Path path = directory.resolve((Path) event.context());
+                if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+
+                    // (Editors often save a file by deleting and re-creating it.)
+                    if (path.getFileName().toString().endsWith(".java")) {
+                        changed.remove(path.toFile());
+                        deleted.add(path.toFile());
+                    }
+                } else
+                if (Files.isDirectory(path)) {
+
+                    // The files in a new directory may have been created before it was watched.
+                    if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                        WatchMojo.register(path, watchService, directories, changed);
+                    }
+                } else
+                if (path.getFileName().toString().endsWith(".java")) {
+                    deleted.remove(path.toFile());
+                    changed.add(path.toFile());
+                }
+            }
+
+            if (!key.reset()) directories.remove(key);
+        }
+
+        return overflow;
+    }
+
+    /**
+     * Watches the <var>directory</var> and its subdirectories for created, modified and deleted files.
+     *
+     * @param sourceFiles Iff not {@code null}, then the Java source files in these directories are added to it
+     */
+    private static void
+    register(
+        Path                      directory,
+        final WatchService        watchService,
+        final Map<WatchKey, Path> directories,
+        final Set<File>           sourceFiles
+    ) throws IOException {
+
+        Files.walkFileTree(directory, new SimpleFileVisitor<Path>() {
+
+            @Override public FileVisitResult
+            preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
+                WatchKey key = dir.register(
+                    watchService,
+                    StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY,
+                    StandardWatchEventKinds.ENTRY_DELETE
+                );
+                directories.put(key, dir);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override public FileVisitResult
+            visitFile(Path file, BasicFileAttributes attrs) {
+                if (sourceFiles != null && file.getFileName().toString().endsWith(".java")) {
+                    sourceFiles.add(file.toFile());
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+}
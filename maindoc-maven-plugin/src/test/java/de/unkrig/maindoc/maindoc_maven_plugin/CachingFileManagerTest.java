@@ -0,0 +1,148 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardLocation;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+public
+class CachingFileManagerTest {
+
+    private File               dir;
+    private CachingFileManager fileManager;
+
+    @Before public void
+    setUp() throws IOException {
+        this.dir         = Files.createTempDirectory("cfm").toFile();
+        this.fileManager = new CachingFileManager(
+            ToolProvider.getSystemJavaCompiler().getStandardFileManager(null, null, null)
+        );
+        this.fileManager.setLocation(StandardLocation.SOURCE_PATH, Collections.singletonList(this.dir));
+    }
+
+    @After public void
+    tearDown() throws IOException {
+        this.fileManager.close();
+        CachingFileManagerTest.delete(this.dir);
+    }
+
+    @Test public void
+    testListingIsCachedUntilDirectoryChanges() throws IOException {
+
+        File pkg = new File(this.dir, "p");
+        CachingFileManagerTest.write(new File(pkg, "A.java"), "package p; class A {}");
+
+        Assert.assertEquals(Collections.singletonList("p.A"), this.list("p"));
+        Assert.assertSame(this.fileManager.list(StandardLocation.SOURCE_PATH, "p", EnumSet.of(Kind.SOURCE), false),
+            this.fileManager.list(StandardLocation.SOURCE_PATH, "p", EnumSet.of(Kind.SOURCE), false));
+
+        CachingFileManagerTest.write(new File(pkg, "B.java"), "package p; class B {}");
+        Assert.assertTrue(pkg.setLastModified(pkg.lastModified() + 2000)); // In case of coarse timestamps
+
+        Assert.assertEquals(2, this.list("p").size());
+    }
+
+    @Test public void
+    testMemorySources() throws IOException {
+
+        CachingFileManagerTest.write(new File(this.dir, "p/A.java"), "package p; class A {}");
+
+        JavaFileObject a = this.fileManager.putSource("p.A", "package p; class A { int i; }");
+        this.fileManager.putSource("p.q.B", "package p.q; class B {}");
+
+        Assert.assertEquals(Collections.singletonList("p.A"), this.list("p"));
+        Assert.assertSame(a, this.fileManager.list(StandardLocation.SOURCE_PATH, "p", EnumSet.of(Kind.SOURCE), false)
+            .iterator().next());
+        Assert.assertSame(a, this.fileManager.getJavaFileForInput(StandardLocation.SOURCE_PATH, "p.A", Kind.SOURCE));
+        Assert.assertEquals("package p; class A { int i; }", a.getCharContent(true).toString());
+        Assert.assertEquals(Collections.singletonList("p.q.B"), this.list("p.q"));
+
+        this.fileManager.removeSource("p.A");
+        JavaFileObject a2 = this.fileManager.getJavaFileForInput(StandardLocation.SOURCE_PATH, "p.A", Kind.SOURCE);
+        Assert.assertEquals("package p; class A {}", a2.getCharContent(true).toString());
+    }
+
+    @Test public void
+    testArchivesChanged() throws IOException {
+
+        File jar = new File(this.dir, "lib.jar");
+        CachingFileManagerTest.write(jar, "not really a JAR");
+
+        List<File> classpath = Collections.singletonList(jar);
+        this.fileManager.setLocation(StandardLocation.CLASS_PATH, classpath);
+        Assert.assertFalse(this.fileManager.archivesChanged(classpath));
+
+        CachingFileManagerTest.write(jar, "still not a JAR");
+        Assert.assertTrue(this.fileManager.archivesChanged(classpath));
+    }
+
+    private List<String>
+    list(String packageName) throws IOException {
+
+        List<String> result = new ArrayList<>();
+        for (JavaFileObject jfo : this.fileManager.list(
+            StandardLocation.SOURCE_PATH,
+            packageName,
+            EnumSet.of(Kind.SOURCE),
+            false
+        )) result.add(this.fileManager.inferBinaryName(StandardLocation.SOURCE_PATH, jfo));
+
+        Collections.sort(result);
+        return result;
+    }
+
+    private static void
+    write(File file, String content) throws IOException {
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static void
+    delete(File file) {
+        File[] members = file.listFiles();
+        if (members != null) {
+            for (File member : members) CachingFileManagerTest.delete(member);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,123 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import de.unkrig.maindoc.maindoc_maven_plugin.ClassFileInfo.MethodInfo;
+
+public
+class ClassFileInfoTest {
+
+    @Test public void
+    testFlatSignature() {
+        Assert.assertEquals("()",                      ClassFileInfo.flatSignature("()V", false));
+        Assert.assertEquals("(String[])",              ClassFileInfo.flatSignature("([Ljava/lang/String;)V", false));
+        Assert.assertEquals("(int, long[][], boolean)", ClassFileInfo.flatSignature("(I[[JZ)I", false));
+        Assert.assertEquals("(Map.Entry, String...)",  ClassFileInfo.flatSignature(
+            "(Ljava/util/Map$Entry;[Ljava/lang/String;)V",
+            true
+        ));
+    }
+
+    @Test public void
+    testRead() throws IOException {
+
+        ClassFileInfo cfi;
+        try (InputStream is = ClassFileInfoTest.class.getResourceAsStream("ClassFileInfoTest$Sample.class")) {
+            cfi = ClassFileInfo.read(is);
+        }
+
+        Assert.assertEquals("de/unkrig/maindoc/maindoc_maven_plugin/ClassFileInfoTest$Sample", cfi.name);
+        Assert.assertEquals("de/unkrig/maindoc/maindoc_maven_plugin/ClassFileInfoTest$Base", cfi.superName);
+        Assert.assertEquals(Collections.singletonList("java/util/RandomAccess"), cfi.interfaceNames);
+        Assert.assertEquals("ClassFileInfoTest.java", cfi.sourceFile);
+
+        MethodInfo main = ClassFileInfoTest.method(cfi.methods, "main");
+        Assert.assertEquals("(String[])", main.flatSignature);
+        Assert.assertFalse(main.generic);
+        Assert.assertTrue(main.annotations.contains("Ljava/lang/Deprecated;"));
+
+        MethodInfo generic = ClassFileInfoTest.method(cfi.methods, "generic");
+        Assert.assertEquals("(List, Object...)", generic.flatSignature);
+        Assert.assertTrue(generic.generic);
+
+        Assert.assertTrue(cfi.referencedClasses.contains(cfi.superName));
+        Assert.assertTrue(cfi.referencedClasses.contains("java/util/List"));
+        Assert.assertTrue(cfi.referencedClasses.contains("java/util/Map"));
+        Assert.assertTrue(cfi.referencedClasses.contains("java/lang/Long")); // Only in a signature
+        Assert.assertTrue(cfi.referencedClasses.contains("java/lang/Deprecated"));
+        Assert.assertFalse(cfi.referencedClasses.contains(cfi.name));
+    }
+
+    @Test public void
+    testObjectSuperclass() throws IOException {
+
+        ClassFileInfo cfi;
+        try (InputStream is = ClassFileInfoTest.class.getResourceAsStream("ClassFileInfoTest$Base.class")) {
+            cfi = ClassFileInfo.read(is);
+        }
+
+        Assert.assertNull(cfi.superName);
+        Assert.assertTrue(cfi.interfaceNames.isEmpty());
+    }
+
+    private static MethodInfo
+    method(List<MethodInfo> methods, String name) {
+        for (MethodInfo mi : methods) {
+            if (mi.name.equals(name)) return mi;
+        }
+        throw new AssertionError(name);
+    }
+
+    static
+    class Base {}
+
+    static
+    class Sample extends Base implements RandomAccess {
+
+        // Exercise the constant pool entries that the reader must skip.
+        static final long   LONG   = 0x123456789L;
+        static final double DOUBLE = 3.14;
+
+        @Deprecated @SuppressWarnings({ "unused", "rawtypes" }) public static void
+        main(String[] args) {}
+
+        @SafeVarargs final <T> void
+        generic(List<T> list, T... values) {}
+
+        Map<String, Long> map() { return null; }
+    }
+}
@@ -0,0 +1,149 @@
+
+/*
+ * maindoc - A tool for generating documentation for a single Java method from doc comments, similar to JAVADOC
+ *
+ * Copyright (c) 2020, Arno Unkrig
+ * All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package de.unkrig.maindoc.maindoc_maven_plugin;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.unkrig.maindoc.doclet.MethodSelector;
+
+public
+class SourcePreScanTest {
+
+    private File sourceDirectory;
+    private File classesDirectory;
+
+    @Before public void
+    setUp() throws IOException {
+        File directory = Files.createTempDirectory("prescan").toFile();
+
+        this.sourceDirectory  = new File(directory, "src");
+        this.classesDirectory = new File(directory, "classes");
+        Assert.assertTrue(new File(this.sourceDirectory, "pkg").mkdirs());
+        Assert.assertTrue(this.classesDirectory.mkdir());
+    }
+
+    @After public void
+    tearDown() {
+        SourcePreScanTest.delete(this.sourceDirectory.getParentFile());
+    }
+
+    @Test public void
+    testCompiled() throws IOException {
+        File tool = this.source("Tool", "public class Tool { public static void main(String[] args) {} }");
+        File util = this.source("Util", "class Util {}");
+        this.compile(tool, util);
+
+        SourcePreScan scan = this.scan();
+        Assert.assertTrue(scan.classFilesUpToDate(Collections.singleton("pkg")));
+        Assert.assertEquals(Collections.singletonList(tool), scan.relevantSourceFiles(Collections.singleton("pkg")));
+    }
+
+    /**
+     * A class that was added after the last compilation (e.g. when the execution runs before "compile") must not be
+     * missed.
+     */
+    @Test public void
+    testAddedClass() throws IOException {
+        this.compile(this.source("Tool", "public class Tool { public static void main(String[] args) {} }"));
+        this.source("Tool2", "public class Tool2 { public static void main(String[] args) {} }");
+
+        Assert.assertFalse(this.scan().classFilesUpToDate(Collections.singleton("pkg")));
+    }
+
+    @Test public void
+    testChangedClass() throws IOException {
+        File tool = this.source("Tool", "public class Tool {}");
+        this.compile(tool);
+
+        // Now the class declares a method to document, but its class file does not (yet).
+        this.source("Tool", "public class Tool { public static void main(String[] args) {} }");
+        File classFile = new File(this.classesDirectory, "pkg/Tool.class");
+        Assert.assertTrue(tool.setLastModified(classFile.lastModified() + 2000));
+
+        Assert.assertFalse(this.scan().classFilesUpToDate(Collections.singleton("pkg")));
+    }
+
+    private SourcePreScan
+    scan() {
+        MethodSelector ms = new MethodSelector();
+        ms.add("main(String[])");
+
+        return new SourcePreScan(
+            ms,
+            Collections.singletonList(this.classesDirectory),
+            Collections.singletonList(this.sourceDirectory)
+        );
+    }
+
+    private File
+    source(String className, String body) throws IOException {
+        File result = new File(this.sourceDirectory, "pkg/" + className + ".java");
+        Files.write(result.toPath(), ("package pkg; " + body).getBytes(StandardCharsets.UTF_8));
+        return result;
+    }
+
+    /**
+     * Compiles the <var>sourceFiles</var>, and makes sure that their class files are newer than them, even on file
+     * systems with a coarse timestamp granularity.
+     */
+    private void
+    compile(File... sourceFiles) {
+
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        Assert.assertNotNull("No system Java compiler", compiler);
+
+        List<String> args = new ArrayList<>(Arrays.asList("-d", this.classesDirectory.getPath()));
+        for (File f : sourceFiles) args.add(f.getPath());
+        Assert.assertEquals(0, compiler.run(null, null, null, args.toArray(new String[args.size()])));
+
+        for (File f : sourceFiles) Assert.assertTrue(f.setLastModified(f.lastModified() - 2000));
+    }
+
+    private static void
+    delete(File file) {
+        File[] members = file.listFiles();
+        if (members != null) {
+            for (File member : members) SourcePreScanTest.delete(member);
+        }
+        file.delete();
+    }
+}